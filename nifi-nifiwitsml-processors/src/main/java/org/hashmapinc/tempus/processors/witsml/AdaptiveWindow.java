@@ -0,0 +1,59 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+/**
+ * Works out the size of the next query window of a log from the number of points the last window
+ * returned and how long the server took to answer it. The window is steered towards a target number
+ * of points per response, shrunk when responses take longer than allowed, and never changes by more
+ * than a factor of four from one query to the next.
+ */
+public class AdaptiveWindow {
+
+    public static final String WINDOW_ATTRIBUTE = "query.window";
+
+    // Time windows are in seconds, depth windows in the unit of the log index
+    public static final double INITIAL_TIME_WINDOW = 3600;
+    public static final double INITIAL_DEPTH_WINDOW = 100;
+
+    private static final double MIN_SCALE = 0.25;
+    private static final double MAX_SCALE = 4.0;
+
+    private final long targetPoints;
+    private final long maxLatencyMillis;
+    private final double minWindow;
+    private final double maxWindow;
+
+    public AdaptiveWindow(long targetPoints, long maxLatencyMillis, double minWindow, double maxWindow) {
+        this.targetPoints = targetPoints;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+    }
+
+    /**
+     * Sizing for time windows, between a minute and thirty days.
+     */
+    public static AdaptiveWindow forTime(long targetPoints, long maxLatencyMillis) {
+        return new AdaptiveWindow(targetPoints, maxLatencyMillis, 60, 30 * 24 * 3600);
+    }
+
+    /**
+     * Sizing for depth windows, between 1 and 100000 index units.
+     */
+    public static AdaptiveWindow forDepth(long targetPoints, long maxLatencyMillis) {
+        return new AdaptiveWindow(targetPoints, maxLatencyMillis, 1, 100000);
+    }
+
+    /**
+     * @param window the size of the window that was just queried
+     * @param points the number of values (rows times curves) it returned
+     * @param latencyMillis how long the query took
+     * @return the size of the next window
+     */
+    public double next(double window, long points, long latencyMillis) {
+        double scale = points <= 0 ? MAX_SCALE : (double) targetPoints / points;
+        if (latencyMillis > maxLatencyMillis)
+            scale = Math.min(scale, (double) maxLatencyMillis / latencyMillis);
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        return Math.max(minWindow, Math.min(maxWindow, window * scale));
+    }
+}
@@ -1,5 +1,5 @@
 package org.hashmapinc.tempus.processors.witsml;
 
 public enum BatchDuration {
-    DAY, STREAMING
+    DAY, STREAMING, ADAPTIVE
 }
@@ -0,0 +1,260 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes an object as flattened JSON while it is being serialized, in the same layout JsonFlattener
+ * produces: nested fields become dotted keys, array elements are indexed as key[0], keys holding a
+ * dot are quoted as key["a.b"] and empty objects and arrays are kept as {} and []. Every value goes
+ * straight to the underlying generator under its full key, so neither the nested JSON nor a parsed
+ * copy of it is ever held in memory.
+ */
+public class FlatteningJsonGenerator extends JsonGeneratorDelegate {
+
+    private static class Level {
+        final String key;
+        final boolean array;
+        int index = 0;
+        boolean empty = true;
+
+        Level(String key, boolean array) {
+            this.key = key;
+            this.array = array;
+        }
+    }
+
+    private final Deque<Level> levels = new ArrayDeque<>();
+    private String fieldName;
+
+    public FlatteningJsonGenerator(JsonGenerator generator) {
+        // Not copying objects and trees through the delegate, so they are serialized through this generator
+        super(generator, false);
+    }
+
+    /**
+     * Serializes the value as flattened JSON into the stream, the stream is left open.
+     */
+    public static void write(ObjectWriter writer, Object value, OutputStream out) throws IOException {
+        try (JsonGenerator generator = new FlatteningJsonGenerator(
+                writer.getFactory().createGenerator(out, JsonEncoding.UTF8))) {
+            writer.writeValue(generator, value);
+        }
+    }
+
+    private String childKey() {
+        Level parent = levels.peek();
+        if (parent.array)
+            return parent.key + "[" + parent.index++ + "]";
+        if (fieldName.indexOf('.') >= 0)
+            return parent.key + "[\"" + fieldName + "\"]";
+        return parent.key.isEmpty() ? fieldName : parent.key + "." + fieldName;
+    }
+
+    /**
+     * Writes the key of the next value, unless the value is the whole document.
+     */
+    private void beforeValue() throws IOException {
+        Level parent = levels.peek();
+        if (parent == null)
+            return;
+        parent.empty = false;
+        delegate.writeFieldName(childKey());
+    }
+
+    private void startLevel(boolean array) throws IOException {
+        Level parent = levels.peek();
+        if (parent == null) {
+            delegate.writeStartObject();
+            levels.push(new Level("", array));
+            return;
+        }
+        parent.empty = false;
+        levels.push(new Level(childKey(), array));
+    }
+
+    private void endLevel() throws IOException {
+        Level level = levels.pop();
+        if (levels.isEmpty()) {
+            delegate.writeEndObject();
+            return;
+        }
+        if (level.empty) {
+            delegate.writeFieldName(level.key);
+            if (level.array) {
+                delegate.writeStartArray();
+                delegate.writeEndArray();
+            } else {
+                delegate.writeStartObject();
+                delegate.writeEndObject();
+            }
+        }
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        startLevel(false);
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        endLevel();
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        startLevel(true);
+    }
+
+    @Override
+    public void writeStartArray(int size) throws IOException {
+        startLevel(true);
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        endLevel();
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        fieldName = name;
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+        fieldName = name.getValue();
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        beforeValue();
+        delegate.writeString(text);
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int len) throws IOException {
+        beforeValue();
+        delegate.writeString(text, offset, len);
+    }
+
+    @Override
+    public void writeString(SerializableString text) throws IOException {
+        beforeValue();
+        delegate.writeString(text);
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        beforeValue();
+        delegate.writeRawUTF8String(text, offset, length);
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        beforeValue();
+        delegate.writeUTF8String(text, offset, length);
+    }
+
+    @Override
+    public void writeRawValue(String text) throws IOException {
+        beforeValue();
+        delegate.writeRawValue(text);
+    }
+
+    @Override
+    public void writeRawValue(String text, int offset, int len) throws IOException {
+        beforeValue();
+        delegate.writeRawValue(text, offset, len);
+    }
+
+    @Override
+    public void writeRawValue(char[] text, int offset, int len) throws IOException {
+        beforeValue();
+        delegate.writeRawValue(text, offset, len);
+    }
+
+    @Override
+    public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len) throws IOException {
+        beforeValue();
+        delegate.writeBinary(b64variant, data, offset, len);
+    }
+
+    @Override
+    public int writeBinary(Base64Variant b64variant, InputStream data, int dataLength) throws IOException {
+        beforeValue();
+        return delegate.writeBinary(b64variant, data, dataLength);
+    }
+
+    @Override
+    public void writeNumber(short v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(int v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        beforeValue();
+        delegate.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        beforeValue();
+        delegate.writeNumber(encodedValue);
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        beforeValue();
+        delegate.writeBoolean(state);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        beforeValue();
+        delegate.writeNull();
+    }
+}
@@ -1,10 +1,10 @@
 package org.hashmapinc.tempus.processors.witsml;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.hashmapinc.tempus.WitsmlObjects.Util.log.ColumnarDataTrace;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.hashmapinc.tempus.WitsmlObjects.Util.log.LogDataHelper;
 import com.hashmapinc.tempus.WitsmlObjects.v1411.*;
 
@@ -17,21 +17,39 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.components.Validator;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.processor.*;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.schema.access.SchemaNotFoundException;
+import org.apache.nifi.serialization.RecordSetWriter;
+import org.apache.nifi.serialization.RecordSetWriterFactory;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.WriteResult;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
 import org.apache.nifi.util.StopWatch;
 
 import javax.xml.datatype.XMLGregorianCalendar;
-import java.text.SimpleDateFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Created by Chris on 6/2/17.
@@ -44,10 +62,12 @@ import java.util.concurrent.TimeUnit;
         @WritesAttribute(attribute="object.type", description="The WITSML type of the object being returned"),
         @WritesAttribute(attribute="next.query.depth", description="The depth to start the next query"),
         @WritesAttribute(attribute="next.query.time", description="The time to start the next query"),
+        @WritesAttribute(attribute="log.watermark", description="The highest index emitted for the log, when the Row Watermark is used"),
         @WritesAttribute(attribute = "batch.order", description = "The monotonically increasing id that orders the data")})
 public class GetData extends AbstractProcessor {
 
-    private static ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectWriter jsonWriter = JsonWriters.nonAbsent(WitsmlConstants.TIMEZONE_FORMAT);
+    private static final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator(null);
 
     public static final PropertyDescriptor WITSML_SERVICE = new PropertyDescriptor
             .Builder().name("WITSML SERVICE")
@@ -138,8 +158,9 @@ public class GetData extends AbstractProcessor {
     public static final PropertyDescriptor LOG_DATA_FORMAT = new PropertyDescriptor
             .Builder().name("LOG DATA FORMAT")
             .displayName("Log Data Format")
-            .description("The format to return log data in, either CSV, or Columnar JSON (will result in one flowfile per mneumonic")
-            .allowableValues("CSV", "JSON")
+            .description("The format to return log data in, either CSV, Columnar JSON (will result in one flowfile per mneumonic" +
+                    " or RECORD (will result in one flowfile per query window, written with the Record Writer)")
+            .allowableValues("CSV", "JSON", "RECORD")
             .required(true)
             .defaultValue("JSON")
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
@@ -172,6 +193,109 @@ public class GetData extends AbstractProcessor {
             .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor PREFETCH_NEXT_WINDOW = new PropertyDescriptor
+            .Builder().name("PREFETCH NEXT WINDOW")
+            .displayName("Prefetch Next Window")
+            .description("When a log is requeried, ask the WITSML service to start querying the next window while this one " +
+                    "is still being emitted. The number of windows queried ahead is bounded by the service.")
+            .required(true)
+            .allowableValues("true", "false")
+            .defaultValue("false")
+            .build();
+
+    public static final PropertyDescriptor BATCH_SIZE = new PropertyDescriptor
+            .Builder().name("BATCH SIZE")
+            .displayName("Batch Size")
+            .description("The number of incoming log flowfiles taken on each run and queried in parallel through the WITSML " +
+                    "service, bounded by the concurrency limit of the service. Used to backfill the batches of a log's " +
+                    "history; each batch is still emitted separately with its own attributes. Not used with the CSV format.")
+            .required(true)
+            .defaultValue("1")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    // Every entry of the list has to be a valid regular expression, checked once expression language is evaluated
+    private static final Validator MNEMONICS_VALIDATOR = (subject, input, context) -> {
+        if (context.isExpressionLanguageSupported(subject) && context.isExpressionLanguagePresent(input))
+            return new ValidationResult.Builder().subject(subject).input(input).valid(true)
+                    .explanation("Expression Language Present").build();
+        for (String mnemonic : LogDataRequest.splitMnemonics(input)) {
+            try {
+                Pattern.compile(mnemonic);
+            } catch (PatternSyntaxException ex) {
+                return new ValidationResult.Builder().subject(subject).input(input).valid(false)
+                        .explanation("'" + mnemonic + "' is not a valid regular expression: " + ex.getDescription()).build();
+            }
+        }
+        return new ValidationResult.Builder().subject(subject).input(input).valid(true).build();
+    };
+
+    public static final PropertyDescriptor MNEMONICS = new PropertyDescriptor
+            .Builder().name("MNEMONICS")
+            .displayName("Mnemonics")
+            .description("A comma separated list of the curves to query. Each entry is a regular expression matched " +
+                    "against the whole mnemonic, so a plain mnemonic selects just that curve. Commas inside {m,n} or " +
+                    "[...] are part of the expression, any other comma in an expression has to be escaped as \\,. The " +
+                    "index curve is always included. When empty every curve is queried. Not used with the CSV format.")
+            .required(false)
+            .expressionLanguageSupported(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .addValidator(MNEMONICS_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor ADAPTIVE_WINDOW = new PropertyDescriptor
+            .Builder().name("ADAPTIVE WINDOW")
+            .displayName("Adaptive Window")
+            .description("When true each log query only covers a window after its start index, and the size of the " +
+                    "window is adjusted from query to query towards the Adaptive Target Points. The query is requeried " +
+                    "from the end of the window until the end of the batch is reached. Flowfiles carrying a query.window " +
+                    "attribute, such as those from GetObjectMetadata with the ADAPTIVE batch type, are always windowed. " +
+                    "Not used with the CSV format.")
+            .required(true)
+            .allowableValues("true", "false")
+            .defaultValue("false")
+            .build();
+
+    public static final PropertyDescriptor ADAPTIVE_TARGET_POINTS = new PropertyDescriptor
+            .Builder().name("ADAPTIVE TARGET POINTS")
+            .displayName("Adaptive Target Points")
+            .description("The number of values (rows times curves) an adaptive window should aim to return.")
+            .required(true)
+            .defaultValue("100000")
+            .addValidator(StandardValidators.POSITIVE_LONG_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor ADAPTIVE_MAX_QUERY_TIME = new PropertyDescriptor
+            .Builder().name("ADAPTIVE MAX QUERY TIME")
+            .displayName("Adaptive Max Query Time")
+            .description("Adaptive windows are shrunk when the server takes longer than this to answer.")
+            .required(true)
+            .defaultValue("30 sec")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor ROW_WATERMARK = new PropertyDescriptor
+            .Builder().name("ROW WATERMARK")
+            .displayName("Row Watermark")
+            .description("When true the highest index emitted for a log is carried to its next query in the log.watermark " +
+                    "attribute, and rows at or below it are dropped as the response is read. The next query then starts " +
+                    "where the last one ended rather than a second after it, so rows sharing that second are not lost " +
+                    "and rows the server returns again are not emitted twice. Adaptive windows always carry a watermark. " +
+                    "Not used with the CSV format.")
+            .required(true)
+            .allowableValues("true", "false")
+            .defaultValue("false")
+            .build();
+
+    public static final PropertyDescriptor RECORD_WRITER = new PropertyDescriptor
+            .Builder().name("RECORD WRITER")
+            .displayName("Record Writer")
+            .description("The Record Writer used to write log data when the Log Data Format is RECORD. The record schema " +
+                    "is derived from the logCurveInfo of the log, with one field per mnemonic.")
+            .identifiesControllerService(RecordSetWriterFactory.class)
+            .required(false)
+            .build();
+
     public static final Relationship TRAJECTORY = new Relationship.Builder()
             .name("Trajectory")
             .description("Trajectory Data successfully received from the server")
@@ -216,6 +340,7 @@ public class GetData extends AbstractProcessor {
         descriptors.add(WELLBORE_ID);
         descriptors.add(OBJECT_ID);
         descriptors.add(LOG_DATA_FORMAT);
+        descriptors.add(RECORD_WRITER);
         descriptors.add(OBJECT_TYPE);
         descriptors.add(REQUERY_INDICATOR);
         descriptors.add(QUERY_START_TIME);
@@ -225,6 +350,13 @@ public class GetData extends AbstractProcessor {
         descriptors.add(INDEX_TYPE);
         descriptors.add(REPORTING_SERVICE);
         descriptors.add(LOG_INDEX_TYPE_CONVERT_FILTER);
+        descriptors.add(PREFETCH_NEXT_WINDOW);
+        descriptors.add(BATCH_SIZE);
+        descriptors.add(MNEMONICS);
+        descriptors.add(ADAPTIVE_WINDOW);
+        descriptors.add(ADAPTIVE_TARGET_POINTS);
+        descriptors.add(ADAPTIVE_MAX_QUERY_TIME);
+        descriptors.add(ROW_WATERMARK);
         this.descriptors = Collections.unmodifiableList(descriptors);
 
         final Set<Relationship> relationships = new HashSet<>();
@@ -234,7 +366,6 @@ public class GetData extends AbstractProcessor {
         relationships.add(TIME_INDEXED);
         relationships.add(DEPTH_INDEXED);
         this.relationships = Collections.unmodifiableSet(relationships);
-        setMapper();
     }
 
     @Override
@@ -247,6 +378,20 @@ public class GetData extends AbstractProcessor {
         return descriptors;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext validationContext) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (validationContext.getProperty(LOG_DATA_FORMAT).getValue().equals("RECORD")
+                && !validationContext.getProperty(RECORD_WRITER).isSet()) {
+            results.add(new ValidationResult.Builder()
+                    .subject(RECORD_WRITER.getDisplayName())
+                    .valid(false)
+                    .explanation("a Record Writer is required when the Log Data Format is RECORD")
+                    .build());
+        }
+        return results;
+    }
+
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
 
@@ -276,6 +421,26 @@ public class GetData extends AbstractProcessor {
             reporting = false;
         }
 
+        // Log flowfiles can be taken several at a time and queried in parallel
+        int batchSize = context.getProperty(BATCH_SIZE).asInteger();
+        if (batchSize > 1 && !context.getProperty(LOG_DATA_FORMAT).getValue().equals("CSV")) {
+            List<FlowFile> flowFiles = session.get(batchSize);
+            if (!flowFiles.isEmpty()) {
+                List<FlowFile> logFlowFiles = new ArrayList<>();
+                for (FlowFile batchFlowFile : flowFiles) {
+                    String queryType = context.getProperty(OBJECT_TYPE).evaluateAttributeExpressions(batchFlowFile).getValue();
+                    if ("log".equals(queryType)) {
+                        logFlowFiles.add(batchFlowFile);
+                    } else if (!processData(context, session, witsmlServiceApi, batchFlowFile, reporting, reportingService)) {
+                        session.remove(batchFlowFile);
+                    }
+                }
+                if (!logFlowFiles.isEmpty())
+                    getLogDataBatch(context, session, witsmlServiceApi, logFlowFiles, reportingService);
+                return;
+            }
+        }
+
         // Gets the incoming flowfile
         FlowFile flowFile = session.get();
 
@@ -316,7 +481,6 @@ public class GetData extends AbstractProcessor {
         String startDepth = context.getProperty(QUERY_START_DEPTH).evaluateAttributeExpressions(flowFile).getValue();
         String endDepth = context.getProperty(QUERY_END_DEPTH).evaluateAttributeExpressions(flowFile).getValue();
         String endTime = context.getProperty(QUERY_END_TIME).evaluateAttributeExpressions(flowFile).getValue();
-        String typeConvertFilter = context.getProperty(LOG_INDEX_TYPE_CONVERT_FILTER).evaluateAttributeExpressions(flowFile).getValue();
         String timeZone = flowFile.getAttribute("timeZone");
         String logMax = flowFile.getAttribute("log.max");
         String logMin = flowFile.getAttribute("log.min");
@@ -328,16 +492,34 @@ public class GetData extends AbstractProcessor {
         StopWatch watch = new StopWatch();
         watch.start();
 
+        String logDataFormat = context.getProperty(LOG_DATA_FORMAT).getValue();
+        if (!logDataFormat.equals("CSV")) {
+            // With adaptive windowing the request ends at the end of the window rather than the end of the batch
+            LogDataRequest request = getLogDataRequest(context, flowFile);
+            LogDataEmitter emitter;
+            LogDataHeader header;
+            if (logDataFormat.equals("RECORD")) {
+                // The window is read into primitive columns and written as one record set
+                LogRecordEmitter recordEmitter = new LogRecordEmitter(session, flowFile, startTime, startDepth,
+                        getWatermark(context, flowFile), context.getProperty(RECORD_WRITER).asControllerService(RecordSetWriterFactory.class));
+                header = recordEmitter.write(witsmlServiceApi.getLogDataBlock(request, timeZone));
+                emitter = recordEmitter;
+            } else {
+                // Rows are written out as they are parsed, the log is never built up in memory
+                LogRowEmitter rowEmitter = new LogRowEmitter(session, flowFile, startTime, startDepth, getWatermark(context, flowFile));
+                header = witsmlServiceApi.streamLogData(request, timeZone, rowEmitter);
+                emitter = rowEmitter;
+            }
+            watch.stop();
+            recordQuery(reportingController, watch);
 
-        ObjLogs logs = witsmlServiceApi.getLogData(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth, timeZone);
-        watch.stop();
-
-        if (reportingController != null){
-            reportingController.incrementQueryCounter();
-            reportingController.recordWitsmlQueryTime((int)watch.getDuration(TimeUnit.SECONDS));
+            routeLogData(context, session, witsmlServiceApi, flowFile, emitter, header, request, watch.getDuration(TimeUnit.MILLISECONDS));
+            return true;
         }
 
-
+        ObjLogs logs = witsmlServiceApi.getLogData(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth, timeZone);
+        watch.stop();
+        recordQuery(reportingController, watch);
 
         if (logs == null){
             session.transfer(flowFile, FAILURE);
@@ -359,171 +541,291 @@ public class GetData extends AbstractProcessor {
         }
 
         boolean isTime = logs.getLog().get(0).getIndexType().value().toLowerCase().contains("time");
-        boolean noTimeDataRequery = false;
 
         ObjLog targetLog = logs.getLog().get(0);
 
         String result;
 
-        if (context.getProperty(LOG_DATA_FORMAT).getValue().equals("CSV")) {
-            // Get the CSV data
-            if (targetLog.getLogData().size() == 0){
-                session.remove(flowFile);
-                return true;
-            }
-            if(reportingController != null) {
-                reportingController.recordNumberOfPointsReceived(
-                        targetLog.getLogData().get(0).getData().size() * targetLog.getLogCurveInfo().size());
-                String startRange = getISODate(targetLog.getStartDateTimeIndex(), timeZone);
-                long start = iso8601toMillis(startRange);
-                String endRange = getISODate(targetLog.getEndDateTimeIndex(), timeZone);
-                long end = iso8601toMillis(endRange);
-                reportingController.recordTimeSpanPerQuery((int)((end-start)/1000)/60);
-                if (logMax != null && !logMax.equals("") && logMin != null && !logMin.equals("")){
-                    long max = iso8601toMillis(logMax);
-                    long min = iso8601toMillis(logMin);
-                    long range = max - min;
-                    long current = end - min;
-                    long complete = (current/range)*100;
-                    reportingController.recordPercentToDone((int)complete);
-                    reportingController.recordLastTimeProcessed(end);
-                }
+        // Get the CSV data
+        if (targetLog.getLogData().size() == 0){
+            session.remove(flowFile);
+            return true;
+        }
+        if(reportingController != null) {
+            reportingController.recordNumberOfPointsReceived(
+                    targetLog.getLogData().get(0).getData().size() * targetLog.getLogCurveInfo().size());
+            String startRange = getISODate(targetLog.getStartDateTimeIndex(), timeZone);
+            long start = iso8601toMillis(startRange);
+            String endRange = getISODate(targetLog.getEndDateTimeIndex(), timeZone);
+            long end = iso8601toMillis(endRange);
+            reportingController.recordTimeSpanPerQuery((int)((end-start)/1000)/60);
+            if (logMax != null && !logMax.equals("") && logMin != null && !logMin.equals("")){
+                long max = iso8601toMillis(logMax);
+                long min = iso8601toMillis(logMin);
+                long range = max - min;
+                long current = end - min;
+                long complete = (current/range)*100;
+                reportingController.recordPercentToDone((int)complete);
+                reportingController.recordLastTimeProcessed(end);
             }
-            result = LogDataHelper.getCSV(targetLog, true);
-            // Create the new flowfile
-            if (!result.equals("")) {
-                FlowFile logDataFlowfile = session.create(flowFile);
-                String finalResult = result;
-                logDataFlowfile = session.write(logDataFlowfile, out -> out.write(finalResult.getBytes()));
+        }
+        result = LogDataHelper.getCSV(targetLog, true);
+        // Create the new flowfile
+        if (!result.equals("")) {
+            FlowFile logDataFlowfile = session.create(flowFile);
+            String finalResult = result;
+            logDataFlowfile = session.write(logDataFlowfile, out -> out.write(finalResult.getBytes()));
+            if (isTime)
+                session.transfer(logDataFlowfile, TIME_INDEXED);
+            else
+                session.transfer(logDataFlowfile, DEPTH_INDEXED);
+        }
+
+        Double endIndex = null;
+        if (targetLog.getEndIndex() != null)
+            endIndex = targetLog.getEndIndex().getValue();
+        routeRequery(context, session, witsmlServiceApi, flowFile, targetLog.isObjectGrowing(), isTime, endIndex,
+                getISODate(targetLog.getEndDateTimeIndex(), timeZone), endTime, null);
+        return true;
+    }
+
+    // Routes the flowfiles made from a streamed log response and the query flowfile itself
+    private void routeLogData(ProcessContext context, ProcessSession session, IWitsmlServiceApi witsmlServiceApi, FlowFile flowFile,
+                              LogDataEmitter emitter, LogDataHeader header, LogDataRequest request, long latencyMillis) {
+        if (header == null) {
+            emitter.discard();
+            session.transfer(flowFile, FAILURE);
+            return;
+        }
+
+        String endTime = context.getProperty(QUERY_END_TIME).evaluateAttributeExpressions(flowFile).getValue();
+        String endDepth = context.getProperty(QUERY_END_DEPTH).evaluateAttributeExpressions(flowFile).getValue();
+        if (isAdaptive(context, flowFile)) {
+            boolean isTime = header.isTimeIndexed();
+            long points = (long) emitter.getRowCount() * header.getMnemonics().length;
+
+            AdaptiveWindow sizing = isTime ?
+                    AdaptiveWindow.forTime(context.getProperty(ADAPTIVE_TARGET_POINTS).asLong(),
+                            context.getProperty(ADAPTIVE_MAX_QUERY_TIME).asTimePeriod(TimeUnit.MILLISECONDS)) :
+                    AdaptiveWindow.forDepth(context.getProperty(ADAPTIVE_TARGET_POINTS).asLong(),
+                            context.getProperty(ADAPTIVE_MAX_QUERY_TIME).asTimePeriod(TimeUnit.MILLISECONDS));
+            double window = sizing.next(getWindow(flowFile, isTime), points, latencyMillis);
+            flowFile = session.putAttribute(flowFile, AdaptiveWindow.WINDOW_ATTRIBUTE,
+                    isTime ? Long.toString((long) window) : Double.toString(window));
+
+            // The window stopped short of the end of the batch, carry on from where it ended
+            boolean windowed = isTime ? !request.getEndTime().equals(endTime == null ? "" : endTime)
+                    : !request.getEndDepth().equals(endDepth == null ? "" : endDepth);
+            if (windowed) {
+                emitter.transfer(isTime);
+                flowFile = putWatermark(session, flowFile, emitter.watermark);
                 if (isTime)
-                    session.transfer(logDataFlowfile, TIME_INDEXED);
+                    flowFile = session.putAttribute(flowFile, NEXT_QUERY_TIME_ATTRIBUTE,
+                            getNextQuery(request.getEndTime(), emitter.watermark != null));
+                else if (emitter.watermark != null)
+                    flowFile = session.putAttribute(flowFile, NEXT_QUERY_DEPTH_ATTRIBUTE, request.getEndDepth());
                 else
-                    session.transfer(logDataFlowfile, DEPTH_INDEXED);
+                    flowFile = session.putAttribute(flowFile, NEXT_QUERY_DEPTH_ATTRIBUTE,
+                            Double.toString(Math.nextUp(Double.parseDouble(request.getEndDepth()))));
+                flowFile = session.putAttribute(flowFile, FLOWFILE_PRIORITY, "2");
+                if (context.getProperty(PREFETCH_NEXT_WINDOW).asBoolean())
+                    witsmlServiceApi.prefetchLogData(getLogDataRequest(context, flowFile));
+                session.transfer(flowFile, REQUERY);
+                return;
             }
-        } else {
-            // Get data as columnar json
-            if (targetLog.getLogData().size() == 0 && targetLog.isObjectGrowing()) {
+        }
 
-                flowFile = session.putAttribute(flowFile,
-                        FLOWFILE_PRIORITY, "3");
+        // Rows the server sent again that are at or below the watermark do not count, the log is idle
+        if (emitter.getNewRowCount() == 0 && Boolean.TRUE.equals(header.isObjectGrowing())) {
+            emitter.discard();
+            flowFile = putWatermark(session, flowFile, emitter.watermark);
+            flowFile = session.putAttribute(flowFile,
+                    FLOWFILE_PRIORITY, "3");
 
-                session.transfer(flowFile, REQUERY);
-                return true;
-            }
+            session.transfer(flowFile, REQUERY);
+            return;
+        }
 
-            List<ColumnarDataTrace> data = LogDataHelper.getColumnarDataPoints(logs, true,typeConvertFilter);
-            List<FlowFile> logDataFlowFiles = new ArrayList<>();
-            if (isTime) {
-
-            	if (getISODate(targetLog.getEndDateTimeIndex(), timeZone).compareToIgnoreCase(startTime)>0) {
-                    String[] mnemonics = targetLog.getLogData().get(0).getMnemonicList().split(",");
-                    List<String> rows = targetLog.getLogData().get(0).getData();
-                    for (String row : rows) {
-                        if (row==null || row.isEmpty())
-                            continue;
-                        try {
-                            result = getStringizedJson(mnemonics, row);
-                            if (result == null)
-                                continue;
-                            String finalResult = result;
-                            FlowFile logDataFlowfile = session.create(flowFile);
-                            logDataFlowfile = session.write(logDataFlowfile, out -> out.write(finalResult.getBytes()));
-                            logDataFlowFiles.add(logDataFlowfile);
-                        } catch (JsonProcessingException e) {
-                            getLogger().error("Could not process row: "+row);
-                        }
-                    }
-            	}
-            } else {
-                double startDepthValue = 0.0;
-                try {startDepthValue = Double.parseDouble(startDepth);} catch(Exception de) {}
-                double endDepthValue = 1.0;
-                try {endDepthValue = targetLog.getEndIndex().getValue();} catch(Exception de) {}
-	            if (endDepthValue >= startDepthValue) {
-                    String[] mnemonics = targetLog.getLogData().get(0).getMnemonicList().split(",");
-                    List<String> rows = targetLog.getLogData().get(0).getData();
-                    for (String row : rows) {
-                        if (row==null || row.isEmpty())
-                            continue;
-                        try {
-                            result = getStringizedJson(mnemonics, row);
-                            if (result == null)
-                                continue;
-                            String finalResult = result;
-                            FlowFile logDataFlowfile = session.create(flowFile);
-                            logDataFlowfile = session.write(logDataFlowfile, out -> out.write(finalResult.getBytes()));
-                            logDataFlowFiles.add(logDataFlowfile);
-                        } catch (JsonProcessingException e) {
-                            getLogger().error("Could not process row: "+row);
-                        }
-                    }
-	            }
-            }
+        //transfer all the flowfiles to success
+        emitter.transfer(header.isTimeIndexed());
 
-            //transfer all the flowfiles to success
-            if (logDataFlowFiles.size() > 0) {
-                if (isTime) {
-                    session.transfer(logDataFlowFiles, TIME_INDEXED);
+        routeRequery(context, session, witsmlServiceApi, flowFile, header.isObjectGrowing(), header.isTimeIndexed(),
+                header.getEndIndex(), header.getEndDateTimeIndex(), endTime, emitter.watermark);
+    }
+
+    /**
+     * Queries the windows of a set of log flowfiles (typically the day batches of a backfill) in parallel
+     * through the service. Each response is emitted as it arrives, the output keeps the batch attributes of
+     * the flowfile it came from.
+     */
+    private void getLogDataBatch(ProcessContext context, ProcessSession session, IWitsmlServiceApi witsmlServiceApi,
+                                 List<FlowFile> flowFiles, IStatsDReportingController reportingController) {
+        boolean records = context.getProperty(LOG_DATA_FORMAT).getValue().equals("RECORD");
+        RecordSetWriterFactory writerFactory = records ?
+                context.getProperty(RECORD_WRITER).asControllerService(RecordSetWriterFactory.class) : null;
+
+        // Keyed by identity, the service hands back the same request instances it was given
+        Map<LogDataRequest, FlowFile> flowFilesByRequest = new IdentityHashMap<>();
+        List<LogDataRequest> requests = new ArrayList<>();
+        for (FlowFile flowFile : flowFiles) {
+            LogDataRequest request = getLogDataRequest(context, flowFile);
+            flowFilesByRequest.put(request, flowFile);
+            requests.add(request);
+        }
+
+        StopWatch watch = new StopWatch();
+        watch.start();
+        witsmlServiceApi.fetchLogDataBatch(requests, new ILogDataBatchHandler() {
+
+            private final Map<LogDataRequest, LogDataEmitter> emitters = new IdentityHashMap<>();
+            private final Map<LogDataRequest, LogDataBlock.Builder> blocks = new IdentityHashMap<>();
+
+            @Override
+            public ILogDataHandler onResponse(LogDataRequest request) {
+                FlowFile flowFile = flowFilesByRequest.get(request);
+                if (records) {
+                    LogDataBlock.Builder builder = new LogDataBlock.Builder();
+                    blocks.put(request, builder);
+                    return builder;
                 }
-                else {
-                    session.transfer(logDataFlowFiles, DEPTH_INDEXED);
+                LogRowEmitter emitter = new LogRowEmitter(session, flowFile, request.getStartTime(), request.getStartDepth(),
+                        getWatermark(context, flowFile));
+                emitters.put(request, emitter);
+                return emitter;
+            }
+
+            @Override
+            public void onComplete(LogDataRequest request, LogDataHeader header, long queryMillis) {
+                FlowFile flowFile = flowFilesByRequest.get(request);
+                LogDataEmitter emitter = emitters.remove(request);
+                LogDataBlock.Builder builder = blocks.remove(request);
+                if (records) {
+                    LogRecordEmitter recordEmitter = new LogRecordEmitter(session, flowFile, request.getStartTime(),
+                            request.getStartDepth(), getWatermark(context, flowFile), writerFactory);
+                    if (header != null && builder != null)
+                        header = recordEmitter.write(builder.build());
+                    emitter = recordEmitter;
+                } else if (emitter == null) {
+                    emitter = new LogRowEmitter(session, flowFile, request.getStartTime(), request.getStartDepth(),
+                            getWatermark(context, flowFile));
                 }
+                routeLogData(context, session, witsmlServiceApi, flowFile, emitter, header, request, queryMillis);
             }
-        }
+        });
+        watch.stop();
+        recordQuery(reportingController, watch);
+    }
 
-        // Check for requery
-        //return false to signal to caller that the original flowfile still needs to be handled
-        String requeryIndicator = context.getProperty(REQUERY_INDICATOR).getValue();
-        String objectType = "depth";
-        if (isTime){
-            objectType = "date time";
+    private void recordQuery(IStatsDReportingController reportingController, StopWatch watch){
+        if (reportingController != null){
+            reportingController.incrementQueryCounter();
+            reportingController.recordWitsmlQueryTime((int)watch.getDuration(TimeUnit.SECONDS));
         }
-        if (isLogGrowing(targetLog, requeryIndicator, getISODate(logs.getLog().get(0).getEndDateTimeIndex(), timeZone), endTime, timeZone)){
-            if (objectType.equals("depth")) {
+    }
 
-                if (targetLog.getEndIndex()!=null) {
-                    String endIndex = Double.toString(targetLog.getEndIndex().getValue());
+    // Check for requery
+    private void routeRequery(ProcessContext context, ProcessSession session, IWitsmlServiceApi witsmlServiceApi, FlowFile flowFile,
+                              Boolean objectGrowing, boolean isTime, Double endIndex, String logResponseMax, String endTime,
+                              LogWatermark watermark){
+        String requeryIndicator = context.getProperty(REQUERY_INDICATOR).getValue();
+        if (isLogGrowing(objectGrowing, isTime, endIndex, requeryIndicator, logResponseMax, endTime)){
+            flowFile = putWatermark(session, flowFile, watermark);
+            if (!isTime) {
+                if (endIndex != null && watermark != null) {
+                    // Rows at the end index are dropped by the watermark when the server returns them again
+                    flowFile = session.putAttribute(flowFile,
+                            NEXT_QUERY_DEPTH_ATTRIBUTE, Double.toString(endIndex));
+                } else if (endIndex != null) {
                     flowFile = session.putAttribute(flowFile,
-                            NEXT_QUERY_DEPTH_ATTRIBUTE, endIndex+1);
+                            NEXT_QUERY_DEPTH_ATTRIBUTE, Double.toString(endIndex) + 1);
                 }
             }
             else {
-                String currentTime = getISODate(targetLog.getEndDateTimeIndex(), timeZone);
-                String nextQueryTime = getNextQuery(currentTime);
+                String nextQueryTime = getNextQuery(logResponseMax, watermark != null);
                 flowFile = session.putAttribute(flowFile,
                         NEXT_QUERY_TIME_ATTRIBUTE, nextQueryTime);
             }
 
-            if(!noTimeDataRequery){
+            flowFile = session.putAttribute(flowFile,
+                    FLOWFILE_PRIORITY, "2");
 
-                flowFile = session.putAttribute(flowFile,
-                        FLOWFILE_PRIORITY, "2");
-            }
-
-            else{
-                flowFile = session.putAttribute(flowFile,
-                        FLOWFILE_PRIORITY, "3");
-            }
+            // The next window is whatever the query properties evaluate to against the requeried flowfile
+            if (context.getProperty(PREFETCH_NEXT_WINDOW).asBoolean())
+                witsmlServiceApi.prefetchLogData(getLogDataRequest(context, flowFile));
 
             session.transfer(flowFile, REQUERY);
         }
         else
             session.remove(flowFile);
-        return true;
     }
 
-    private boolean isLogGrowing(ObjLog targetLog, String requeryIndicator, String logResponseMax, String endBatchIndex, String timeZone){
+    private LogDataRequest getLogDataRequest(ProcessContext context, FlowFile flowFile) {
+        String wellId = context.getProperty(WELL_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", "");
+        String wellboreId = context.getProperty(WELLBORE_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", "");
+        String logId = context.getProperty(OBJECT_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", "");
+        String startDepth = context.getProperty(QUERY_START_DEPTH).evaluateAttributeExpressions(flowFile).getValue();
+        String startTime = context.getProperty(QUERY_START_TIME).evaluateAttributeExpressions(flowFile).getValue();
+        String endTime = context.getProperty(QUERY_END_TIME).evaluateAttributeExpressions(flowFile).getValue();
+        String endDepth = context.getProperty(QUERY_END_DEPTH).evaluateAttributeExpressions(flowFile).getValue();
+        if (isAdaptive(context, flowFile)) {
+            if (startTime != null && !startTime.isEmpty())
+                endTime = limitTimeWindow(startTime, endTime, getWindow(flowFile, true));
+            else if (startDepth != null && !startDepth.isEmpty())
+                endDepth = limitDepthWindow(startDepth, endDepth, getWindow(flowFile, false));
+        }
+        String mnemonics = context.getProperty(MNEMONICS).evaluateAttributeExpressions(flowFile).getValue();
+        return new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth, mnemonics);
+    }
+
+    private boolean isAdaptive(ProcessContext context, FlowFile flowFile) {
+        if (context.getProperty(LOG_DATA_FORMAT).getValue().equals("CSV"))
+            return false;
+        return context.getProperty(ADAPTIVE_WINDOW).asBoolean() || flowFile.getAttribute(AdaptiveWindow.WINDOW_ATTRIBUTE) != null;
+    }
+
+    private double getWindow(FlowFile flowFile, boolean isTime) {
+        try {
+            return Double.parseDouble(flowFile.getAttribute(AdaptiveWindow.WINDOW_ATTRIBUTE));
+        } catch (NullPointerException | NumberFormatException ex) {
+            return isTime ? AdaptiveWindow.INITIAL_TIME_WINDOW : AdaptiveWindow.INITIAL_DEPTH_WINDOW;
+        }
+    }
+
+    // Returns the end of the window starting at startTime, or endTime if that comes first
+    private String limitTimeWindow(String startTime, String endTime, double windowSeconds) {
+        try {
+            ZonedDateTime windowEnd = ZonedDateTime.parse(startTime, DateTimeFormatter.ISO_DATE_TIME).plusSeconds((long) windowSeconds);
+            if (endTime != null && !endTime.isEmpty()
+                    && !windowEnd.isBefore(ZonedDateTime.parse(endTime, DateTimeFormatter.ISO_DATE_TIME)))
+                return endTime;
+            return windowEnd.withZoneSameInstant(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern(WitsmlConstants.TIMEZONE_FORMAT));
+        } catch (DateTimeParseException ex) {
+            return endTime;
+        }
+    }
+
+    private String limitDepthWindow(String startDepth, String endDepth, double window) {
+        try {
+            double windowEnd = Double.parseDouble(startDepth) + window;
+            if (endDepth != null && !endDepth.isEmpty() && windowEnd >= Double.parseDouble(endDepth))
+                return endDepth;
+            return Double.toString(windowEnd);
+        } catch (NumberFormatException ex) {
+            return endDepth;
+        }
+    }
+
+    private boolean isLogGrowing(Boolean objectGrowing, boolean isTime, Double endIndex, String requeryIndicator, String logResponseMax, String endBatchIndex){
         switch (requeryIndicator) {
             case "OBJECT_GROWING":
-                return targetLog.isObjectGrowing();
+                return Boolean.TRUE.equals(objectGrowing);
             case "MAX_INDEX":
-                LogIndexType logType = targetLog.getIndexType();
-                if (logType == LogIndexType.DATE_TIME || logType == LogIndexType.ELAPSED_TIME) {
+                if (isTime) {
                     long logMaxMilli = iso8601toMillis(endBatchIndex);
                     long currentLogMax = iso8601toMillis(logResponseMax);
                     return (!(logMaxMilli <= currentLogMax));
                 } else {
-                    return (!logResponseMax.equals(Double.toString(targetLog.getEndIndex().getValue())));
+                    return (!logResponseMax.equals(Double.toString(endIndex)));
                 }
             case "BATCH_INDEX":
                 long logMaxMilli = iso8601toMillis(endBatchIndex);
@@ -579,7 +881,7 @@ public class GetData extends AbstractProcessor {
         	
         	for(CsTrajectoryStation trajStation:trajectoryStations){
         		try{
-        			String jasonTrajStation = mapper.writeValueAsString(trajStation);
+        			String jasonTrajStation = jsonWriter.writeValueAsString(trajStation);
             		FlowFile trajectoryStnFlowfile = session.create(flowFile);
             		
             		trajectoryStnFlowfile = session.write(trajectoryStnFlowfile, outputStream -> outputStream.write(jasonTrajStation.getBytes()));
@@ -606,17 +908,30 @@ public class GetData extends AbstractProcessor {
     }
 
 
-    private void setMapper() {
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
-        mapper.setDateFormat(new SimpleDateFormat(WitsmlConstants.TIMEZONE_FORMAT));
-    }
-
-    private String getNextQuery(String timeStamp){
+    // With a watermark the next query starts at the end of this one, the rows already emitted are dropped as they are read
+    private String getNextQuery(String timeStamp, boolean watermarked){
         ZonedDateTime currentTime = ZonedDateTime.parse(timeStamp, DateTimeFormatter.ISO_DATE_TIME);
-        currentTime = currentTime.plusSeconds(1);
+        if (!watermarked)
+            currentTime = currentTime.plusSeconds(1);
         return currentTime.format(DateTimeFormatter.ofPattern(WitsmlConstants.TIMEZONE_FORMAT));
     }
 
+    // Adaptive windows end on a whole second, the next one has to start on it without emitting its rows twice
+    private LogWatermark getWatermark(ProcessContext context, FlowFile flowFile) {
+        if (!context.getProperty(ROW_WATERMARK).asBoolean() && !isAdaptive(context, flowFile))
+            return null;
+        return new LogWatermark(flowFile.getAttribute(LogWatermark.WATERMARK_ATTRIBUTE));
+    }
+
+    private FlowFile putWatermark(ProcessSession session, FlowFile flowFile, LogWatermark watermark) {
+        if (watermark == null)
+            return flowFile;
+        String next = watermark.next();
+        if (next == null)
+            return flowFile;
+        return session.putAttribute(flowFile, LogWatermark.WATERMARK_ATTRIBUTE, next);
+    }
+
     private String getISODate(XMLGregorianCalendar date, String timeZone){
     	try {
             return date.toString();
@@ -624,52 +939,295 @@ public class GetData extends AbstractProcessor {
     	return "";
     }
 
-    private String getStringizedJson(String[] mnemonics, String row) throws JsonProcessingException {
-        row = row.trim();
-        String[] rowFields=row.split(",");
-        List<String> rfl = new ArrayList<>();
-        int k=0;
-        for (int i=0; i<rowFields.length; i++) {
-            if (i<k) continue;
-            if (rowFields[i].trim().startsWith("\"") && !rowFields[i].trim().endsWith("\"")) {
-                k = getIndexPositionOfEndingQuote(rowFields, i+1);
-                rfl.add(consolidate(rowFields, i, k++));
+    /**
+     * Collects the flowfiles made from a log response and decides, from the header, whether its rows should be emitted.
+     */
+    private abstract class LogDataEmitter {
+
+        protected final ProcessSession session;
+        protected final FlowFile parent;
+        private final String startTime;
+        private final String startDepth;
+        protected final LogWatermark watermark;
+        protected LogDataHeader header;
+        protected boolean emit;
+        protected int rowCount;
+        protected int newRowCount;
+
+        LogDataEmitter(ProcessSession session, FlowFile parent, String startTime, String startDepth, LogWatermark watermark) {
+            this.session = session;
+            this.parent = parent;
+            this.startTime = startTime;
+            this.startDepth = startDepth;
+            this.watermark = watermark;
+        }
+
+        protected void accept(LogDataHeader header) {
+            this.header = header;
+            if (watermark != null)
+                watermark.setTimeIndexed(header.isTimeIndexed());
+            if (header.isTimeIndexed()) {
+                String endDateTimeIndex = header.getEndDateTimeIndex();
+                emit = endDateTimeIndex != null && (startTime == null || endDateTimeIndex.compareToIgnoreCase(startTime) > 0);
             } else {
-                rfl.add(rowFields[k++]);
+                double startDepthValue = 0.0;
+                try {startDepthValue = Double.parseDouble(startDepth);} catch(Exception de) {}
+                double endDepthValue = 1.0;
+                if (header.getEndIndex() != null)
+                    endDepthValue = header.getEndIndex();
+                emit = endDepthValue >= startDepthValue;
             }
         }
-        int shortFall = mnemonics.length-rfl.size();
-        for (int i=0; i<shortFall; i++) {
-            rfl.add("");
+
+        /**
+         * @return the number of rows in the response, used to size the next window
+         */
+        int getRowCount() {
+            return rowCount;
         }
 
-        String[] fields = rfl.toArray(new String[rfl.size()]);
-        ObjectNode json = mapper.createObjectNode();
-        for (int i=0; i<mnemonics.length; i++) {
-            if (fields[i]==null || fields[i].isEmpty()) {
-                //Don't publish the field
-                //json.put(mnemonics[i], "");
-            } else {
-                json.put(mnemonics[i], fields[i]);
-            }
+        /**
+         * @return the number of rows that are emitted, leaving out those at or below the watermark
+         */
+        int getNewRowCount() {
+            return newRowCount;
         }
-        return mapper.writeValueAsString(json);
+
+        abstract void transfer(boolean isTime);
+
+        abstract void discard();
     }
 
-    private String consolidate(String[] rowFields, int startPosition, int endPosition) {
-        StringBuilder sb=new StringBuilder();
-        for (int i=startPosition; i<=endPosition; i++) {
-            sb.append(rowFields[i]);
+    /**
+     * Turns each streamed log row into its own JSON flowfile.
+     */
+    private class LogRowEmitter extends LogDataEmitter implements ILogDataHandler {
+
+        private final List<FlowFile> logDataFlowFiles = new ArrayList<>();
+        private final LogRowTokenizer tokenizer = new LogRowTokenizer();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private JsonGenerator generator;
+        private SerializedString[] keys;
+        private int indexField;
+
+        LogRowEmitter(ProcessSession session, FlowFile parent, String startTime, String startDepth, LogWatermark watermark) {
+            super(session, parent, startTime, startDepth, watermark);
+        }
+
+        @Override
+        public void onHeader(LogDataHeader header) {
+            accept(header);
+            String[] mnemonics = header.getMnemonics();
+            keys = new SerializedString[mnemonics.length];
+            indexField = 0;
+            for (int i = 0; i < mnemonics.length; i++) {
+                keys[i] = new SerializedString(mnemonics[i]);
+                if (mnemonics[i].equals(header.getIndexCurve()))
+                    indexField = i;
+            }
+        }
+
+        @Override
+        public void onRow(String row) {
+            rowCount++;
+            if (!emit || row == null || row.isEmpty())
+                return;
+            int count = tokenizer.tokenize(row);
+            if (watermark != null && indexField < count &&
+                    !watermark.accept(tokenizer.getChars(), tokenizer.getStart(indexField), tokenizer.getLength(indexField)))
+                return;
+            newRowCount++;
+            try {
+                writeRow(count);
+                FlowFile logDataFlowfile = session.create(parent);
+                logDataFlowfile = session.write(logDataFlowfile, out -> buffer.writeTo(out));
+                logDataFlowFiles.add(logDataFlowfile);
+            } catch (IOException e) {
+                getLogger().error("Could not process row: "+row);
+            }
+        }
+
+        // Writes the tokenized row as a JSON object into the buffer, empty fields are not published
+        private void writeRow(int fields) throws IOException {
+            if (generator == null)
+                generator = jsonFactory.createGenerator(buffer);
+            buffer.reset();
+            int count = Math.min(fields, keys.length);
+            char[] chars = tokenizer.getChars();
+            generator.writeStartObject();
+            for (int i = 0; i < count; i++) {
+                int length = tokenizer.getLength(i);
+                if (length == 0)
+                    continue;
+                generator.writeFieldName(keys[i]);
+                generator.writeString(chars, tokenizer.getStart(i), length);
+            }
+            generator.writeEndObject();
+            generator.flush();
+        }
+
+        @Override
+        void transfer(boolean isTime) {
+            if (logDataFlowFiles.size() > 0) {
+                if (isTime) {
+                    session.transfer(logDataFlowFiles, TIME_INDEXED);
+                }
+                else {
+                    session.transfer(logDataFlowFiles, DEPTH_INDEXED);
+                }
+            }
+        }
+
+        @Override
+        void discard() {
+            session.remove(logDataFlowFiles);
+            logDataFlowFiles.clear();
         }
-        return sb.toString();
     }
 
-    private int getIndexPositionOfEndingQuote(String[] rowFields, int position) {
-        int i=0;
-        for (i=position; i<rowFields.length; i++) {
-            if (rowFields[i].trim().endsWith("\""))
-                break;
+    /**
+     * Writes all of the rows of a query window into a single flowfile through the configured record writer.
+     * The record schema is derived from the columns of the block, the index first.
+     */
+    private class LogRecordEmitter extends LogDataEmitter {
+
+        private final RecordSetWriterFactory writerFactory;
+        private FlowFile windowFlowFile;
+        private WriteResult writeResult;
+        private String mimeType;
+
+        LogRecordEmitter(ProcessSession session, FlowFile parent, String startTime, String startDepth, LogWatermark watermark,
+                         RecordSetWriterFactory writerFactory) {
+            super(session, parent, startTime, startDepth, watermark);
+            this.writerFactory = writerFactory;
+        }
+
+        LogDataHeader write(LogDataBlock block) {
+            if (block == null)
+                return null;
+            accept(block.getHeader());
+            rowCount = block.getRowCount();
+            if (!emit || rowCount == 0)
+                return header;
+
+            RecordSchema schema = getSchema(block);
+            windowFlowFile = session.create(parent);
+            try {
+                windowFlowFile = session.write(windowFlowFile, out -> {
+                    try {
+                        RecordSchema writeSchema = writerFactory.getSchema(parent.getAttributes(), schema);
+                        try (RecordSetWriter writer = writerFactory.createWriter(getLogger(), writeSchema, out)) {
+                            writer.beginRecordSet();
+                            for (int row = 0; row < block.getRowCount(); row++) {
+                                Map<String, Object> values = getValues(block, schema, row);
+                                if (values != null) {
+                                    writer.write(new MapRecord(schema, values));
+                                    newRowCount++;
+                                }
+                            }
+                            writeResult = writer.finishRecordSet();
+                            mimeType = writer.getMimeType();
+                        }
+                    } catch (SchemaNotFoundException ex) {
+                        throw new ProcessException("Could not determine the schema to write log data with", ex);
+                    }
+                });
+            } catch (ProcessException ex) {
+                getLogger().error("Could not write log data records: " + ex.getMessage());
+                discard();
+                return null;
+            }
+            return header;
+        }
+
+        private RecordSchema getSchema(LogDataBlock block) {
+            Map<String, LogDataHeader.Curve> curvesByMnemonic = new HashMap<>();
+            for (LogDataHeader.Curve curve : block.getHeader().getCurves()) {
+                curvesByMnemonic.put(curve.getMnemonic(), curve);
+            }
+            List<RecordField> fields = new ArrayList<>();
+            if (block.isTimeIndexed())
+                fields.add(new RecordField(block.getIndexMnemonic(), RecordFieldType.TIMESTAMP.getDataType(), false));
+            else
+                fields.add(new RecordField(block.getIndexMnemonic(), RecordFieldType.DOUBLE.getDataType(), false));
+            for (int i = 0; i < block.getCurveCount(); i++) {
+                RecordFieldType type = RecordFieldType.STRING;
+                if (block.isNumeric(i))
+                    type = isIntegral(curvesByMnemonic.get(block.getMnemonic(i))) ? RecordFieldType.LONG : RecordFieldType.DOUBLE;
+                fields.add(new RecordField(block.getMnemonic(i), type.getDataType(), true));
+            }
+            return new SimpleRecordSchema(fields);
+        }
+
+        private boolean isIntegral(LogDataHeader.Curve curve) {
+            if (curve == null || curve.getTypeLogData() == null)
+                return false;
+            switch (curve.getTypeLogData().toLowerCase()) {
+                case "long":
+                case "int":
+                case "integer":
+                case "short":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        // Returns null for rows whose index could not be read or that are not past the watermark
+        private Map<String, Object> getValues(LogDataBlock block, RecordSchema schema, int row) {
+            Map<String, Object> values = new HashMap<>();
+            if (block.isTimeIndexed()) {
+                long time = block.getTimeIndex()[row];
+                if (time == Long.MIN_VALUE)
+                    return null;
+                if (watermark != null && !watermark.acceptTime(time * 1000))
+                    return null;
+                values.put(block.getIndexMnemonic(), new Timestamp(time));
+            } else {
+                double depth = block.getDepthIndex()[row];
+                if (Double.isNaN(depth))
+                    return null;
+                if (watermark != null && !watermark.acceptDepth(depth))
+                    return null;
+                values.put(block.getIndexMnemonic(), depth);
+            }
+            for (int i = 0; i < block.getCurveCount(); i++) {
+                if (block.isNull(i, row))
+                    continue;
+                if (!block.isNumeric(i))
+                    values.put(block.getMnemonic(i), block.getString(i, row));
+                else if (schema.getField(i + 1).getDataType().getFieldType() == RecordFieldType.LONG)
+                    values.put(block.getMnemonic(i), (long) block.getDouble(i, row));
+                else
+                    values.put(block.getMnemonic(i), block.getDouble(i, row));
+            }
+            return values;
+        }
+
+        @Override
+        void transfer(boolean isTime) {
+            if (windowFlowFile == null)
+                return;
+            if (writeResult == null || writeResult.getRecordCount() == 0) {
+                discard();
+                return;
+            }
+            Map<String, String> attributes = new HashMap<>(writeResult.getAttributes());
+            attributes.put("record.count", String.valueOf(writeResult.getRecordCount()));
+            attributes.put(CoreAttributes.MIME_TYPE.key(), mimeType);
+            windowFlowFile = session.putAllAttributes(windowFlowFile, attributes);
+            if (isTime)
+                session.transfer(windowFlowFile, TIME_INDEXED);
+            else
+                session.transfer(windowFlowFile, DEPTH_INDEXED);
+            windowFlowFile = null;
+        }
+
+        @Override
+        void discard() {
+            if (windowFlowFile != null)
+                session.remove(windowFlowFile);
+            windowFlowFile = null;
         }
-        return i;
     }
 }
@@ -95,7 +95,9 @@ public class GetObjectMetadata extends AbstractProcessor {
     public static final PropertyDescriptor BATCH_TYPE = new PropertyDescriptor
             .Builder().name("BATCH TYPE")
             .displayName("Batch Type")
-            .description("The Object type to get the query for")
+            .description("How the time range of a log is split into queries. DAY emits one flowfile per day, STREAMING " +
+                    "one flowfile for the whole range, and ADAPTIVE one flowfile for the whole range that GetData then " +
+                    "queries in windows sized from the rows returned and the time the server takes")
             .required(true)
             .allowableValues(BatchDuration.values())
             .defaultValue(BatchDuration.DAY.toString())
@@ -206,7 +208,7 @@ public class GetObjectMetadata extends AbstractProcessor {
             List<BatchInfo> batches = computeTimeBatches(startTime, endTime,duration, results.timeZone);
             for (BatchInfo batch : batches){
                 createLogBatchFlowFile(session, wellId, wellboreId, logId, results, indexType, batch, wellName,
-                        endTime, startTime);
+                        endTime, startTime, duration);
             }
         } else {
             session.putAttribute(flowFile, "endIndex", JsonPath.read(log, "$.log[0].endIndex"));
@@ -216,7 +218,7 @@ public class GetObjectMetadata extends AbstractProcessor {
 
     private void createLogBatchFlowFile(ProcessSession session, String wellId, String wellboreID, String logId,
                                         LogMetadataInfo results, String indexType, BatchInfo info, String wellName,
-                                        String endTime, String startTime){
+                                        String endTime, String startTime, BatchDuration duration){
         FlowFile flowFile = session.create();
         session.putAttribute(flowFile, "wellboreUid", wellboreID);
         session.putAttribute(flowFile, "wellUid", wellId);
@@ -231,6 +233,9 @@ public class GetObjectMetadata extends AbstractProcessor {
         session.putAttribute(flowFile, "log.min", startTime);
         session.putAttribute(flowFile,"timeZone", results.timeZone);
         session.putAttribute(flowFile, "batchId", info.batchId);
+        // GetData sizes the queries for the whole range itself, starting from an hour
+        if (duration == BatchDuration.ADAPTIVE)
+            session.putAttribute(flowFile, AdaptiveWindow.WINDOW_ATTRIBUTE, Long.toString((long) AdaptiveWindow.INITIAL_TIME_WINDOW));
         flowFile = session.write(flowFile, out -> out.write(results.metadata.getBytes()));
         session.transfer(flowFile, SUCCESS);
     }
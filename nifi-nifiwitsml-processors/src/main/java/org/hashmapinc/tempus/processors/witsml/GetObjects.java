@@ -16,10 +16,7 @@
  */
 package org.hashmapinc.tempus.processors.witsml;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.wnameless.json.flattener.JsonFlattener;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjWellbores;
 import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjWells;
 import org.apache.nifi.components.PropertyDescriptor;
@@ -29,6 +26,7 @@ import org.apache.nifi.annotation.behavior.ReadsAttributes;
 import org.apache.nifi.annotation.behavior.WritesAttribute;
 import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
@@ -44,8 +42,9 @@ import org.apache.nifi.processor.util.StandardValidators;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Tags({"WITSML", "WitsmlObjects"})
 @CapabilityDescription("Get Objects from Witsml Server. Supported Objects : bharuns, cementjob, drillreport," +
@@ -56,7 +55,7 @@ import java.util.*;
 @WritesAttributes({@WritesAttribute(attribute="", description="")})
 public class GetObjects extends AbstractProcessor {
 
-    private static ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectWriter jsonWriter = JsonWriters.nonAbsent("yyyy-MM-dd HH:mm:ss.SSS");
 
     public static final PropertyDescriptor WITSML_SERVICE = new PropertyDescriptor
             .Builder().name("WITSML SERVICE")
@@ -102,6 +101,17 @@ public class GetObjects extends AbstractProcessor {
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor MAX_CONCURRENT_FETCHES = new PropertyDescriptor
+            .Builder().name("MAX CONCURRENT FETCHES")
+            .displayName("Max Concurrent Fetches")
+            .description("The number of objects requested from the server at the same time. Each object is written " +
+                    "out as soon as it arrives. The WITSML service's client pool size also limits how many requests " +
+                    "are actually in flight. Set to 1 to request the objects one after another.")
+            .required(true)
+            .defaultValue("4")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
     public static final Relationship SUCCESS = new Relationship.Builder()
             .name("Success")
             .description("Data successfully received from the server")
@@ -116,6 +126,8 @@ public class GetObjects extends AbstractProcessor {
 
     private Set<Relationship> relationships;
 
+    private ExecutorService fetchExecutor;
+
     @Override
     protected void init(final ProcessorInitializationContext context) {
         final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
@@ -124,6 +136,7 @@ public class GetObjects extends AbstractProcessor {
         descriptors.add(WELLBORE_ID);
         descriptors.add(OBJECT_LIST);
         descriptors.add(OUTPUT_FORMAT);
+        descriptors.add(MAX_CONCURRENT_FETCHES);
         this.descriptors = Collections.unmodifiableList(descriptors);
 
         final Set<Relationship> relationships = new HashSet<Relationship>();
@@ -131,7 +144,6 @@ public class GetObjects extends AbstractProcessor {
         this.relationships = Collections.unmodifiableSet(relationships);
         relationships.add(FAILURE);
         this.relationships = Collections.unmodifiableSet(relationships);
-        setMapper();
     }
 
     @Override
@@ -146,7 +158,22 @@ public class GetObjects extends AbstractProcessor {
 
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
+        int maxFetches = context.getProperty(MAX_CONCURRENT_FETCHES).asInteger();
+        if (maxFetches > 1) {
+            fetchExecutor = Executors.newFixedThreadPool(maxFetches, runnable -> {
+                Thread thread = new Thread(runnable, "GetObjects fetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 
+    @OnStopped
+    public void onStopped() {
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+            fetchExecutor = null;
+        }
     }
 
     @Override
@@ -180,77 +207,60 @@ public class GetObjects extends AbstractProcessor {
 
         Boolean wellboreRequested = Arrays.asList(objectArray).contains("WELLBORE");
 
-        String data = null;
         FlowFile dataFlowFile = session.create(flowFile);
         session.putAttribute(dataFlowFile, "mime.type", "application/json");
 
         if (wellRequested) {
             com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells wells = null;
             wells = witsmlServiceApi.getWell1311(context.getProperty(WELL_ID).evaluateAttributeExpressions(flowFile).getValue(), "");
-            try {
-                data = mapper.writeValueAsString(wells);
-                if (flatten){
-                    data = JsonFlattener.flatten(data);
-                }
-
-            } catch (JsonProcessingException ex) {
-                getLogger().error("Error in converting Wells Object to Json" + ex);
-            }
-            final String outData = data;
-            dataFlowFile = session.write(dataFlowFile, out -> out.write(outData.getBytes()));
-            session.transfer(dataFlowFile, SUCCESS);
+            dataFlowFile = writeObject(session, dataFlowFile, wells, flatten);
+            if (dataFlowFile != null)
+                session.transfer(dataFlowFile, SUCCESS);
 
         } else if (wellboreRequested) {
             com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores wellbores = null;
             wellbores = witsmlServiceApi.getWellbore1311(context.getProperty(WELL_ID).evaluateAttributeExpressions(flowFile).getValue(),
                                                      context.getProperty(WELLBORE_ID).evaluateAttributeExpressions(flowFile).getValue());
-            try {
-                data = mapper.writeValueAsString(wellbores);
-                if (flatten){
-                    data = JsonFlattener.flatten(data);
-                }
-            } catch (JsonProcessingException ex) {
-                getLogger().error("Error in converting Wellbores Object to Json" + ex);
-            }
-            final String outData = data;
-
-            dataFlowFile = session.write(dataFlowFile, out -> out.write(outData.getBytes()));
-            session.transfer(dataFlowFile, SUCCESS);
+            dataFlowFile = writeObject(session, dataFlowFile, wellbores, flatten);
+            if (dataFlowFile != null)
+                session.transfer(dataFlowFile, SUCCESS);
         } else {
-            for (String object : objectArray) {
-                data = null;
-                FlowFile dataFile = session.create(flowFile);
-                Object objData = witsmlServiceApi.getObject(context.getProperty(WELL_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", ""),
-                        context.getProperty(WELLBORE_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", ""),
-                        object.toUpperCase());
-                if (objData == null){
-                    session.remove(dataFile);
-                    continue;
-                }
-                try {
-                    data = mapper.writeValueAsString(objData);
-                    if (flatten){
-                        data = JsonFlattener.flatten(data);
-                    }
-                } catch (JsonProcessingException ex) {
-                    getLogger().error("Error in converting Object to Json" + ex);
-                }
-                dataFile = session.putAttribute(dataFile, "objectType", object.toLowerCase());
-                if (data == null) {
-                    session.remove(dataFile);
-                    continue;
-                }
-                final String outData = data;
-                dataFile = session.write(dataFile, out -> out.write(outData.getBytes()));
-                session.transfer(dataFile, SUCCESS);
+            final String wellId = context.getProperty(WELL_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", "");
+            final String wellboreId = context.getProperty(WELLBORE_ID).evaluateAttributeExpressions(flowFile).getValue().replaceAll("[;\\s\t]", "");
+            final FlowFile parent = flowFile;
+            final boolean flattenObjects = flatten;
+            try {
+                ObjectFetches.run(fetchExecutor, Arrays.asList(objectArray),
+                        object -> witsmlServiceApi.getObject(wellId, wellboreId, object),
+                        (object, objData) -> {
+                            FlowFile dataFile = session.create(parent);
+                            dataFile = session.putAttribute(dataFile, "objectType", object.toLowerCase());
+                            dataFile = writeObject(session, dataFile, objData, flattenObjects);
+                            if (dataFile != null)
+                                session.transfer(dataFile, SUCCESS);
+                        }, getLogger());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                getLogger().error("Interrupted while getting objects from WITSML server");
             }
             session.remove(dataFlowFile);
         }
         session.remove(flowFile);
     }
 
-    private void setMapper() {
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
-        mapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS"));
+    /**
+     * Serializes the object straight into the flow file, flattened or as nested JSON. Returns null
+     * once the flow file has been removed because the object could not be written.
+     */
+    private FlowFile writeObject(ProcessSession session, FlowFile flowFile, Object object, boolean flatten) {
+        try {
+            if (flatten)
+                return session.write(flowFile, out -> FlatteningJsonGenerator.write(jsonWriter, object, out));
+            return session.write(flowFile, out -> jsonWriter.writeValue(out, object));
+        } catch (ProcessException ex) {
+            getLogger().error("Error in converting Object to Json" + ex);
+            session.remove(flowFile);
+            return null;
+        }
     }
 }
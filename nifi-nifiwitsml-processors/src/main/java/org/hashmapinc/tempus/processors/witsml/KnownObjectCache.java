@@ -0,0 +1,141 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The object URIs a processor has already seen recorded as known in the distributed cache, so
+ * listings that keep returning the same objects can answer from memory instead of asking the cache
+ * server about every one of them on every run. A bounded, least recently used set holds the URIs
+ * themselves. A Bloom filter in front of it answers the common case of a URI that has never been
+ * seen without touching the set. A URI only counts as known locally when the set has it, so a false
+ * positive from the filter costs a remote lookup, never a wrong answer.
+ */
+public class KnownObjectCache {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final int maxEntries;
+    private final Map<String, Boolean> uris;
+    private BloomFilter filter;
+    private int filterInsertions = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxEntries the number of URIs kept, 0 turns the cache off
+     */
+    public KnownObjectCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.uris = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > KnownObjectCache.this.maxEntries;
+            }
+        };
+        this.filter = new BloomFilter(Math.max(maxEntries, 1), FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * True if the URI is known without asking the distributed cache. False means it may or may not
+     * be known there.
+     */
+    public synchronized boolean isKnown(String uri) {
+        if (maxEntries > 0 && filter.mightContain(uri) && uris.get(uri) != null) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Records a URI the distributed cache has confirmed as known, or that has just been written to it.
+     */
+    public synchronized void markKnown(String uri) {
+        if (maxEntries <= 0 || uris.put(uri, Boolean.TRUE) != null)
+            return;
+        // The filter cannot forget URIs the set has dropped, rebuild it before it fills up with them
+        if (++filterInsertions > 2 * maxEntries) {
+            filter = new BloomFilter(maxEntries, FALSE_POSITIVE_RATE);
+            for (String known : uris.keySet()) {
+                filter.put(known);
+            }
+            filterInsertions = uris.size();
+            return;
+        }
+        filter.put(uri);
+    }
+
+    public synchronized void clear() {
+        uris.clear();
+        filter = new BloomFilter(Math.max(maxEntries, 1), FALSE_POSITIVE_RATE);
+        filterInsertions = 0;
+    }
+
+    public synchronized int size() {
+        return uris.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * A fixed size Bloom filter over strings, sized for an expected number of insertions and a
+     * false positive rate. The bit positions come from two 32 bit hashes combined as in Kirsch and
+     * Mitzenmacher's double hashing.
+     */
+    static class BloomFilter {
+
+        private final BitSet bits;
+        private final int size;
+        private final int hashes;
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long bitCount = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.size = (int) Math.max(64, Math.min(bitCount, Integer.MAX_VALUE - 64));
+            this.hashes = Math.max(1, (int) Math.round((double) size / expectedInsertions * ln2));
+            this.bits = new BitSet(size);
+        }
+
+        void put(String value) {
+            int h1 = value.hashCode();
+            int h2 = secondHash(value);
+            for (int i = 0; i < hashes; i++) {
+                bits.set(index(h1 + i * h2));
+            }
+        }
+
+        boolean mightContain(String value) {
+            int h1 = value.hashCode();
+            int h2 = secondHash(value);
+            for (int i = 0; i < hashes; i++) {
+                if (!bits.get(index(h1 + i * h2)))
+                    return false;
+            }
+            return true;
+        }
+
+        private int index(int hash) {
+            return (hash & Integer.MAX_VALUE) % size;
+        }
+
+        // FNV-1a, so it is independent of String.hashCode
+        private static int secondHash(String value) {
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x01000193;
+            }
+            return hash | 1;
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package org.hashmapinc.tempus.processors.witsml;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.nifi.annotation.behavior.ReadsAttribute;
 import org.apache.nifi.annotation.behavior.ReadsAttributes;
+import org.apache.nifi.annotation.behavior.Stateful;
 import org.apache.nifi.annotation.behavior.WritesAttribute;
 import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
@@ -12,6 +11,9 @@ import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.Validator;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.components.state.StateMap;
 import org.apache.nifi.distributed.cache.client.Deserializer;
 import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
 
@@ -27,7 +29,6 @@ import org.apache.nifi.processor.util.StandardValidators;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -41,10 +42,10 @@ import java.util.*;
         @WritesAttribute(attribute="uri", description="The URI of the object."),
         @WritesAttribute(attribute="wmlObjectType", description="The WITSML object type that was found")
 })
+@Stateful(scopes = Scope.CLUSTER, description = "With Emit Changes Only set, the change time of every object " +
+        "still listed under a parent URI is kept in cluster state, so unchanged objects are not emitted again.")
 public class ListObjects extends AbstractProcessor {
 
-    private static ObjectMapper mapper = new ObjectMapper();
-
     public static final PropertyDescriptor WITSML_SERVICE = new PropertyDescriptor
             .Builder().name("WITSML SERVICE")
             .displayName("WITSML Service")
@@ -99,6 +100,32 @@ public class ListObjects extends AbstractProcessor {
             .required(true)
             .build();
 
+    public static final PropertyDescriptor EMIT_CHANGES_ONLY = new PropertyDescriptor
+            .Builder().name("EMIT CHANGES ONLY")
+            .displayName("Emit Changes Only")
+            .description("Only emit objects that are new or whose dTimLastChange has moved since they were last " +
+                    "emitted. The change times are kept in cluster state for each parent URI, and only for the objects " +
+                    "its last listing returned. Objects the server reports no change time for are only emitted the " +
+                    "first time they are listed. Cluster state holds the change times " +
+                    "of about a quarter of a million objects across all parent URIs; a parent whose objects would go " +
+                    "past that is logged and emitted in full on every listing.")
+            .allowableValues("true", "false")
+            .defaultValue("false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor NEAR_CACHE_SIZE = new PropertyDescriptor
+            .Builder().name("NEAR CACHE SIZE")
+            .displayName("Near Cache Size")
+            .description("The number of known object URIs remembered locally while the processor runs. Objects found " +
+                    "here are reported as known without a call to the distributed cache. Newly known objects are " +
+                    "written to the distributed cache together once their flow files have been committed. Set to 0 " +
+                    "to look up every object in the distributed cache.")
+            .defaultValue("10000")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
 
 
 
@@ -130,6 +157,8 @@ public class ListObjects extends AbstractProcessor {
         descriptors.add(WELL_STATUS_FILTER);
         descriptors.add(DISTRIBUTED_CACHE_SERVICE);
         descriptors.add(MAINTAIN_QUERY_STATE);
+        descriptors.add(NEAR_CACHE_SIZE);
+        descriptors.add(EMIT_CHANGES_ONLY);
 
 
         this.descriptors = Collections.unmodifiableList(descriptors);
@@ -139,7 +168,6 @@ public class ListObjects extends AbstractProcessor {
         relationships.add(FAILURE);
         relationships.add(ORIGINAL);
         this.relationships = Collections.unmodifiableSet(relationships);
-        setMapper();
     }
 
     @Override
@@ -156,10 +184,17 @@ public class ListObjects extends AbstractProcessor {
 
     private DistributedMapCacheClient logCacheClient = null;
 
+    private KnownObjectCache knownObjects = new KnownObjectCache(0);
+
+    // Cluster state key prefix, followed by the parent URI the change state belongs to
+    private static final String CHANGE_STATE_PREFIX = "object.changes.";
+    // Cluster state is limited to 1 MB, leave room for the keys and the serialization around the values
+    static final int MAX_CHANGE_STATE_CHARS = 900 * 1024;
+
 
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
-
+        knownObjects = new KnownObjectCache(context.getProperty(NEAR_CACHE_SIZE).asInteger());
     }
 
     @Override
@@ -168,6 +203,7 @@ public class ListObjects extends AbstractProcessor {
         FlowFile inputFile = session.get();
 
         boolean trackObjects = context.getProperty(MAINTAIN_QUERY_STATE).asBoolean();
+        boolean changesOnly = context.getProperty(EMIT_CHANGES_ONLY).asBoolean();
 
         try {
             final ComponentLog logger = getLogger();
@@ -203,9 +239,24 @@ public class ListObjects extends AbstractProcessor {
 
             List<WitsmlObjectId> objects = witsmlServiceApi.getAvailableObjects(uri, Arrays.asList(objectTypes), context.getProperty(WELL_STATUS_FILTER).getValue());
             List<FlowFile> outputFiles = new ArrayList<>();
+            Map<String, WitsmlObjectId> newlyKnown = new LinkedHashMap<>();
+
+            StateMap stateMap = null;
+            ObjectChangeState changes = null;
+            ObjectChangeState listed = null;
+            if (changesOnly) {
+                stateMap = context.getStateManager().getState(Scope.CLUSTER);
+                changes = readObjectChanges(stateMap, uri);
+                listed = new ObjectChangeState();
+            }
+            boolean changed = false;
 
             if(!objects.isEmpty()){
                 for (WitsmlObjectId wmlObj : objects) {
+                    if (changes != null && !changes.isChanged(wmlObj.getUri(), wmlObj.getLastModified())) {
+                        listed.carry(changes, wmlObj.getUri(), wmlObj.getLastModified());
+                        continue;
+                    }
                     FlowFile outputFile = session.create();
                     try {
                         session.putAttribute(outputFile, "mime.type", "application/json");
@@ -214,18 +265,24 @@ public class ListObjects extends AbstractProcessor {
                         session.putAttribute(outputFile, "wmlObjectType", wmlObj.getType());
 
                        if (trackObjects){
-                            String cacheUri = wmlObj.getUri();
-                            boolean known = checkIfObjectKnown(wmlObj.getUri(),wmlObj.getType());
-
-                            if (!known){
-                                setObjectKnown(wmlObj.getUri(), wmlObj.getName(),wmlObj.getType());
+                            boolean known = knownObjects.isKnown(wmlObj.getUri());
+                            if (!known) {
+                                known = checkIfObjectKnown(wmlObj.getUri(), wmlObj.getType());
+                                if (known)
+                                    knownObjects.markKnown(wmlObj.getUri());
+                                else
+                                    newlyKnown.put(wmlObj.getUri(), wmlObj);
                             }
 
                             session.putAttribute(outputFile, "object.known", String.valueOf(known));
                         }
 
-                        outputFile = session.write(outputFile, out -> out.write(wmlObj.getData().getBytes()));
+                        outputFile = session.write(outputFile, wmlObj::writeData);
                         outputFiles.add(outputFile);
+                        if (listed != null) {
+                            listed.record(wmlObj.getUri(), wmlObj.getLastModified());
+                            changed = true;
+                        }
                     } catch (Exception ex) {
                         ex.printStackTrace();
                         getLogger().error("Error processing data for witsml object: " + ex.getMessage());
@@ -235,8 +292,20 @@ public class ListObjects extends AbstractProcessor {
 
                 session.transfer(outputFiles, SUCCESS);
 
+                // Objects that were not listed again are dropped from the state
+                if (listed != null && listed.size() != changes.size())
+                    changed = true;
+
                 if (inputFile != null)
                     session.transfer(inputFile, ORIGINAL);
+
+                // Only objects whose flow files made it out are recorded as known or emitted
+                if (!newlyKnown.isEmpty() || changed) {
+                    session.commit();
+                    setObjectsKnown(newlyKnown.values());
+                    if (changed)
+                        writeObjectChanges(context.getStateManager(), stateMap, uri, listed);
+                }
             }else{
               if (inputFile != null)
                     session.transfer(inputFile, ORIGINAL);
@@ -261,6 +330,52 @@ public class ListObjects extends AbstractProcessor {
         }
     }
 
+    private ObjectChangeState readObjectChanges(StateMap stateMap, String parentUri) {
+        try {
+            return ObjectChangeState.decode(stateMap.get(CHANGE_STATE_PREFIX + parentUri));
+        } catch (IOException ex) {
+            getLogger().warn("Could not read the object change state, every object will be emitted: " + ex.getMessage());
+            return new ObjectChangeState();
+        }
+    }
+
+    private void writeObjectChanges(StateManager stateManager, StateMap previous, String parentUri, ObjectChangeState changes) {
+        try {
+            Map<String, String> state = new HashMap<>(previous.toMap());
+            String key = CHANGE_STATE_PREFIX + parentUri;
+            state.put(key, changes.encode());
+            long size = 0;
+            for (Map.Entry<String, String> entry : state.entrySet())
+                size += entry.getKey().length() + entry.getValue().length();
+            if (size > MAX_CHANGE_STATE_CHARS) {
+                getLogger().warn("Keeping the change times of the " + changes.size() + " objects under " + parentUri +
+                        " would take the object change state to " + size + " characters, over the " +
+                        MAX_CHANGE_STATE_CHARS + " that fit in cluster state. Their change times are not kept, so " +
+                        "every object under " + parentUri + " will be emitted on each listing.");
+                state.remove(key);
+                if (!previous.toMap().containsKey(key))
+                    return;
+            }
+            if (previous.getVersion() == -1)
+                stateManager.setState(state, Scope.CLUSTER);
+            else if (!stateManager.replace(previous, state, Scope.CLUSTER))
+                getLogger().warn("Object change state was updated elsewhere, objects emitted by this run may be emitted again");
+        } catch (IOException ex) {
+            getLogger().error("Error saving the object change state: " + ex.getMessage());
+        }
+    }
+
+    private void setObjectsKnown(Collection<WitsmlObjectId> objects) {
+        for (WitsmlObjectId wmlObj : objects) {
+            try {
+                setObjectKnown(wmlObj.getUri(), wmlObj.getName(), wmlObj.getType());
+                knownObjects.markKnown(wmlObj.getUri());
+            } catch (IOException ex) {
+                getLogger().error("Error recording " + wmlObj.getUri() + " as known: " + ex.getMessage());
+            }
+        }
+    }
+
     private  boolean checkIfObjectKnown(String uri,String objectType) throws IOException {
         boolean isObjectknown = false;
         if("log".equalsIgnoreCase(objectType)){
@@ -278,11 +393,6 @@ public class ListObjects extends AbstractProcessor {
         return isObjectknown;
     }
 
-    private void setMapper() {
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
-        mapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS"));
-    }
-
     public static class StringSerializer implements Serializer<String> {
         @Override
         public void serialize(final String value, final OutputStream out) throws SerializationException, IOException {
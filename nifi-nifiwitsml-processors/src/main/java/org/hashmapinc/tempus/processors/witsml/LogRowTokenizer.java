@@ -0,0 +1,88 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.util.Arrays;
+
+/**
+ * Splits log data rows on commas in a single pass, keeping a quoted value together when it contains
+ * commas. The fields are exposed as offsets into a character buffer that is reused from row to row,
+ * so no Strings are created for them.
+ */
+class LogRowTokenizer {
+
+    private char[] chars = new char[256];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    /**
+     * Tokenizes the row, replacing the fields of the previous row.
+     * @return the number of fields in the row
+     */
+    int tokenize(String row) {
+        int length = row.length();
+        if (chars.length < length)
+            chars = new char[Math.max(length, chars.length * 2)];
+        row.getChars(0, length, chars, 0);
+
+        // trim the row as a whole, the fields themselves are left as they are
+        int begin = 0;
+        while (begin < length && chars[begin] <= ' ')
+            begin++;
+        while (length > begin && chars[length - 1] <= ' ')
+            length--;
+
+        count = 0;
+        if (begin == length)
+            return count;
+
+        int fieldStart = begin;
+        int openQuote = -1;
+        int lastNonSpace = -1;
+        for (int i = begin; i < length; i++) {
+            char c = chars[i];
+            if (c == ',') {
+                // inside a quoted value a comma only ends the field once the closing quote has been seen
+                if (openQuote < 0 || (lastNonSpace > openQuote && chars[lastNonSpace] == '"')) {
+                    addField(fieldStart, i);
+                    fieldStart = i + 1;
+                    openQuote = -1;
+                    lastNonSpace = -1;
+                }
+                continue;
+            }
+            if (c > ' ') {
+                if (lastNonSpace < fieldStart && c == '"')
+                    openQuote = i;
+                lastNonSpace = i;
+            }
+        }
+        addField(fieldStart, length);
+        return count;
+    }
+
+    char[] getChars() {
+        return chars;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getStart(int field) {
+        return starts[field];
+    }
+
+    int getLength(int field) {
+        return ends[field] - starts[field];
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+}
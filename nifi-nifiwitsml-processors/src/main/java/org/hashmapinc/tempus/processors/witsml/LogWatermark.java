@@ -0,0 +1,226 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+/**
+ * The highest index of a log that has been emitted so far, carried from one requery of the log to the
+ * next. Time indexes are held as epoch microseconds and depths as doubles, and every row is compared
+ * against the watermark from before the response as its index is read, so a row is only emitted once
+ * even when the server's bounds are inclusive or the next query starts inside the last second. The
+ * watermark only moves once a response has been read, rows within one response can come in any order.
+ */
+class LogWatermark {
+
+    static final String WATERMARK_ATTRIBUTE = "log.watermark";
+
+    private static final long MICROS_PER_SECOND = 1000000L;
+    private static final long SECONDS_PER_DAY = 86400L;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final String previous;
+    private boolean timeIndexed;
+    private boolean hasFloor;
+    private long floorMicros;
+    private double floorDepth;
+    private boolean hasHigh;
+    private long highMicros;
+    private double highDepth;
+
+    /**
+     * @param previous the watermark attribute of the query, null the first time a log is queried
+     */
+    LogWatermark(String previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the previous watermark once the index type of the log is known.
+     */
+    void setTimeIndexed(boolean timeIndexed) {
+        this.timeIndexed = timeIndexed;
+        hasFloor = false;
+        if (previous == null || previous.isEmpty())
+            return;
+        try {
+            if (timeIndexed)
+                floorMicros = Long.parseLong(previous);
+            else
+                floorDepth = Double.parseDouble(previous);
+            hasFloor = true;
+        } catch (NumberFormatException ex) {
+            // Not a watermark this version wrote, everything is emitted
+        }
+    }
+
+    /**
+     * @return whether the row whose index field is given is past the watermark and should be emitted,
+     * rows whose index cannot be read are always emitted
+     */
+    boolean accept(char[] chars, int start, int length) {
+        if (timeIndexed) {
+            long micros = parseEpochMicros(chars, start, length);
+            return micros == Long.MIN_VALUE || acceptTime(micros);
+        }
+        double depth = parseDepth(chars, start, length);
+        return Double.isNaN(depth) || acceptDepth(depth);
+    }
+
+    boolean acceptTime(long micros) {
+        if (!hasHigh || micros > highMicros)
+            highMicros = micros;
+        hasHigh = true;
+        return !hasFloor || micros > floorMicros;
+    }
+
+    boolean acceptDepth(double depth) {
+        if (!hasHigh || depth > highDepth)
+            highDepth = depth;
+        hasHigh = true;
+        return !hasFloor || depth > floorDepth;
+    }
+
+    /**
+     * @return the watermark to carry to the next query of the log, null when no index has been seen yet
+     */
+    String next() {
+        if (timeIndexed) {
+            if (hasHigh && (!hasFloor || highMicros > floorMicros))
+                return Long.toString(highMicros);
+        } else if (hasHigh && (!hasFloor || highDepth > floorDepth)) {
+            return Double.toString(highDepth);
+        }
+        return hasFloor ? previous : null;
+    }
+
+    /**
+     * Reads an ISO 8601 date time such as 2017-06-02T10:00:00.123456-05:00 as microseconds since the
+     * epoch, without creating any objects. A time without an offset is taken as UTC.
+     * @return Long.MIN_VALUE when the text is not a date time
+     */
+    static long parseEpochMicros(char[] chars, int start, int length) {
+        int end = start + length;
+        while (start < end && (chars[start] <= ' ' || chars[start] == '"'))
+            start++;
+        while (end > start && (chars[end - 1] <= ' ' || chars[end - 1] == '"'))
+            end--;
+        if (end - start < 19 || chars[start + 4] != '-' || chars[start + 7] != '-' ||
+                (chars[start + 10] != 'T' && chars[start + 10] != ' ') || chars[start + 13] != ':' || chars[start + 16] != ':')
+            return Long.MIN_VALUE;
+
+        int year = digits(chars, start, 4);
+        int month = digits(chars, start + 5, 2);
+        int day = digits(chars, start + 8, 2);
+        int hour = digits(chars, start + 11, 2);
+        int minute = digits(chars, start + 14, 2);
+        int second = digits(chars, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 ||
+                minute < 0 || minute > 59 || second < 0 || second > 60)
+            return Long.MIN_VALUE;
+
+        int i = start + 19;
+        long micros = 0;
+        if (i < end && chars[i] == '.') {
+            i++;
+            int fractionStart = i;
+            long scale = 100000;
+            while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+                micros += (chars[i] - '0') * scale;
+                scale /= 10;
+                i++;
+            }
+            if (i == fractionStart)
+                return Long.MIN_VALUE;
+        }
+
+        int offsetSeconds = 0;
+        if (i < end) {
+            char sign = chars[i];
+            if (sign == 'Z' || sign == 'z') {
+                i++;
+            } else if (sign == '+' || sign == '-') {
+                if (i + 3 > end)
+                    return Long.MIN_VALUE;
+                int offsetHours = digits(chars, i + 1, 2);
+                int minutesAt = i + 3 < end && chars[i + 3] == ':' ? i + 4 : i + 3;
+                int offsetMinutes = minutesAt + 2 <= end ? digits(chars, minutesAt, 2) : -1;
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59)
+                    return Long.MIN_VALUE;
+                offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+                i = minutesAt + 2;
+            }
+            if (i != end)
+                return Long.MIN_VALUE;
+        }
+
+        long seconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second
+                - offsetSeconds;
+        return seconds * MICROS_PER_SECOND + micros;
+    }
+
+    /**
+     * Reads a depth, plain decimals are read directly and anything else, such as an exponent, is left
+     * to Double.parseDouble.
+     * @return NaN when the text is not a number
+     */
+    static double parseDepth(char[] chars, int start, int length) {
+        int end = start + length;
+        while (start < end && (chars[start] <= ' ' || chars[start] == '"'))
+            start++;
+        while (end > start && (chars[end - 1] <= ' ' || chars[end - 1] == '"'))
+            end--;
+        if (start == end)
+            return Double.NaN;
+
+        int i = start;
+        boolean negative = chars[i] == '-';
+        if (negative || chars[i] == '+')
+            i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c == '.' && !point) {
+                point = true;
+            } else if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (point)
+                    scale++;
+            } else {
+                break;
+            }
+        }
+        // Exact as long as the mantissa and the power of ten both fit in a double
+        if (i == end && digits > 0 && digits <= 15 && scale < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(chars, start, end - start));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private static int digits(char[] chars, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
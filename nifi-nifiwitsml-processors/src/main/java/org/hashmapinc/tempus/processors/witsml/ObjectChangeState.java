@@ -0,0 +1,233 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The last change time of every object a listing has emitted, kept small enough to live in cluster
+ * state. Each listing builds a new state from the objects it saw, so objects that are no longer
+ * listed are forgotten. An object is held as a single 32 bit fingerprint of its URI together with its
+ * change time, so a changed object no longer matches what was recorded for it; with a hundred
+ * thousand objects under a parent a change goes unseen about once in forty thousand. The encoded form
+ * writes the sorted fingerprints as Rice coded deltas and base64 encodes them, which comes to three
+ * to four characters an object, fewer the more objects there are.
+ */
+public class ObjectChangeState {
+
+    private static final int FORMAT_VERSION = 2;
+
+    // Recorded for objects the server gives no change time for, so they are only emitted when new
+    private static final long NO_CHANGE_TIME = Long.MIN_VALUE;
+
+    private final Set<Integer> fingerprints;
+
+    public ObjectChangeState() {
+        this.fingerprints = new HashSet<>();
+    }
+
+    private ObjectChangeState(Set<Integer> fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * @return true if the object is new, or was recorded with a different change time
+     */
+    public boolean isChanged(String uri, LocalDateTime lastModified) {
+        return !fingerprints.contains(fingerprint(uri, lastModified));
+    }
+
+    /**
+     * Records the object's change time, once the object has been emitted.
+     */
+    public void record(String uri, LocalDateTime lastModified) {
+        fingerprints.add(fingerprint(uri, lastModified));
+    }
+
+    /**
+     * Keeps what the previous state recorded for an object that is still listed but was not emitted.
+     */
+    public void carry(ObjectChangeState previous, String uri, LocalDateTime lastModified) {
+        int fingerprint = fingerprint(uri, lastModified);
+        if (previous.fingerprints.contains(fingerprint))
+            fingerprints.add(fingerprint);
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    public String encode() throws IOException {
+        long[] sorted = new long[fingerprints.size()];
+        int i = 0;
+        for (int fingerprint : fingerprints) {
+            sorted[i++] = fingerprint & 0xFFFFFFFFL;
+        }
+        Arrays.sort(sorted);
+        int k = riceParameter(sorted.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(FORMAT_VERSION);
+        writeVarLong(bytes, sorted.length);
+        bytes.write(k);
+        BitWriter bits = new BitWriter(bytes);
+        long previous = 0;
+        for (long fingerprint : sorted) {
+            long delta = fingerprint - previous;
+            previous = fingerprint;
+            for (long q = delta >>> k; q > 0; q--) {
+                bits.write(1, 1);
+            }
+            bits.write(0, 1);
+            bits.write(delta, k);
+        }
+        bits.flush();
+        return new String(Base64.getEncoder().encode(bytes.toByteArray()), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param encoded the output of {@link #encode()}, null or empty for a listing with no history
+     */
+    public static ObjectChangeState decode(String encoded) throws IOException {
+        if (encoded == null || encoded.isEmpty())
+            return new ObjectChangeState();
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(encoded);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Object change state is not valid base64", ex);
+        }
+        InputStream in = new ByteArrayInputStream(bytes);
+        int version = in.read();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported object change state version " + version);
+        long count = readVarLong(in);
+        int k = readByte(in);
+        // every fingerprint takes at least one bit
+        if (count > (long) bytes.length * 8 || k > 32)
+            throw new IOException("Object change state is corrupt");
+        Set<Integer> fingerprints = new HashSet<>((int) count * 4 / 3 + 1);
+        BitReader bits = new BitReader(in);
+        long fingerprint = 0;
+        for (long i = 0; i < count; i++) {
+            long q = 0;
+            while (bits.read(1) == 1) {
+                if (++q > 0xFFFFFFFFL >>> k)
+                    throw new IOException("Object change state is corrupt");
+            }
+            fingerprint += (q << k) | bits.read(k);
+            fingerprints.add((int) fingerprint);
+        }
+        return new ObjectChangeState(fingerprints);
+    }
+
+    // FNV-1a over the characters and the change time, mixed with the MurmurHash3 finalizer
+    static int fingerprint(String uri, LocalDateTime lastModified) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < uri.length(); i++) {
+            hash ^= uri.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= lastModified == null ? NO_CHANGE_TIME : lastModified.toEpochSecond(ZoneOffset.UTC);
+        hash *= 0x100000001b3L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) (hash >>> 32);
+    }
+
+    // The number of low bits written as they are, about log2 of the mean gap between fingerprints
+    private static int riceParameter(int count) {
+        if (count == 0)
+            return 0;
+        long gap = (1L << 32) / count * 69 / 100;
+        return gap == 0 ? 0 : 63 - Long.numberOfLeadingZeros(gap);
+    }
+
+    private static class BitWriter {
+        private final OutputStream out;
+        private int buffer;
+        private int used;
+
+        BitWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(long value, int count) throws IOException {
+            for (int i = count - 1; i >= 0; i--) {
+                buffer = (buffer << 1) | (int) ((value >>> i) & 1);
+                if (++used == 8) {
+                    out.write(buffer);
+                    buffer = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (used > 0)
+                out.write(buffer << (8 - used));
+        }
+    }
+
+    private static class BitReader {
+        private final InputStream in;
+        private int buffer;
+        private int left;
+
+        BitReader(InputStream in) {
+            this.in = in;
+        }
+
+        long read(int count) throws IOException {
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                if (left == 0) {
+                    buffer = readByte(in);
+                    left = 8;
+                }
+                value = (value << 1) | ((buffer >>> --left) & 1);
+            }
+            return value;
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("Object change state is truncated");
+        return b;
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Object change state is corrupt");
+    }
+}
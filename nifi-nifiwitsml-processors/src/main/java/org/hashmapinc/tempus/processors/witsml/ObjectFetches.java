@@ -0,0 +1,92 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.logging.ComponentLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fetches several objects of a wellbore at once. Every object is requested as its own task and handed
+ * back to the calling thread as soon as it arrives, so a snapshot takes about as long as the slowest
+ * object rather than all of them added up, and the first flow files can be written while the rest are
+ * still on their way. The results are only ever handled on the caller, which owns the process session.
+ */
+public class ObjectFetches {
+
+    public interface Fetch {
+        Object fetch(String object) throws Exception;
+    }
+
+    public interface Result {
+        void accept(String object, Object data);
+    }
+
+    private static class Fetched {
+        final String object;
+        final Object data;
+
+        Fetched(String object, Object data) {
+            this.object = object;
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param executor runs the fetches, when null they are run one after another on the caller
+     * @param result called on the caller for every object that came back, in the order they completed
+     */
+    public static void run(ExecutorService executor, List<String> objects, Fetch fetch, Result result,
+                           ComponentLog logger) throws InterruptedException {
+        if (executor == null || objects.size() < 2) {
+            for (String object : objects) {
+                Object data = null;
+                try {
+                    data = fetch.fetch(object);
+                } catch (Exception ex) {
+                    logger.error("Error in getting " + object + " from WITSML server: " + ex.getMessage());
+                }
+                if (data != null)
+                    result.accept(object, data);
+            }
+            return;
+        }
+
+        CompletionService<Fetched> fetches = new ExecutorCompletionService<>(executor);
+        List<Future<Fetched>> started = new ArrayList<>(objects.size());
+        for (String object : objects) {
+            try {
+                started.add(fetches.submit(() -> {
+                    try {
+                        return new Fetched(object, fetch.fetch(object));
+                    } catch (Exception ex) {
+                        logger.error("Error in getting " + object + " from WITSML server: " + ex.getMessage());
+                        return new Fetched(object, null);
+                    }
+                }));
+            } catch (RejectedExecutionException ex) {
+                logger.error("Could not start fetching " + object + ": " + ex.getMessage());
+            }
+        }
+
+        try {
+            for (int i = 0; i < started.size(); i++) {
+                Fetched fetched = fetches.take().get();
+                if (fetched.data != null)
+                    result.accept(fetched.object, fetched.data);
+            }
+        } catch (ExecutionException ex) {
+            // The tasks catch their own exceptions, this is only reached if one failed with an error
+            logger.error("Error in getting objects from WITSML server: " + ex.getMessage());
+        } finally {
+            // Nothing is left running once the caller has stopped waiting, e.g. when interrupted
+            for (Future<Fetched> future : started)
+                future.cancel(true);
+        }
+    }
+}
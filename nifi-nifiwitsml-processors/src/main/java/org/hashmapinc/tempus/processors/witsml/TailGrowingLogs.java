@@ -0,0 +1,521 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.ReadsAttribute;
+import org.apache.nifi.annotation.behavior.ReadsAttributes;
+import org.apache.nifi.annotation.behavior.Stateful;
+import org.apache.nifi.annotation.behavior.TriggerSerially;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.ProcessorInitializationContext;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@Tags({"WITSML", "LOG", "GROWING", "TAIL"})
+@CapabilityDescription("Follows growing logs and emits the rows added to them. Incoming flowfiles, such as those " +
+        "from GetObjectMetadata, add a log to the logs being followed. The logs are polled from a table kept in " +
+        "memory and in state, so a poll that finds no new rows creates no flowfiles. Each poll covers a window from " +
+        "where the last one ended, sized like the adaptive windows of GetData, so a log that is far behind is caught " +
+        "up over several polls. A log that stops growing is followed until its last rows have been emitted. Each poll with new rows is emitted as one flowfile with a JSON object per row. In a " +
+        "cluster every node follows the logs added by the flowfiles it receives, so a log is only followed twice if " +
+        "it is added on two nodes.")
+@SeeAlso({GetData.class, GetObjectMetadata.class})
+@InputRequirement(InputRequirement.Requirement.INPUT_ALLOWED)
+@TriggerSerially
+@ReadsAttributes({@ReadsAttribute(attribute="wellUid", description="The well of the log to follow"),
+        @ReadsAttribute(attribute="wellboreUid", description="The wellbore of the log to follow"),
+        @ReadsAttribute(attribute="uid", description="The log to follow"),
+        @ReadsAttribute(attribute="next.query.time", description="Where to start following a time indexed log")
+})
+@WritesAttributes({@WritesAttribute(attribute="wellUid", description="The well of the log"),
+        @WritesAttribute(attribute="wellboreUid", description="The wellbore of the log"),
+        @WritesAttribute(attribute="uid", description="The log the rows were added to"),
+        @WritesAttribute(attribute="log.watermark", description="The highest index emitted for the log so far"),
+        @WritesAttribute(attribute="record.count", description="The number of rows in the flowfile")
+})
+@Stateful(scopes = Scope.LOCAL, description = "The logs a node follows are kept in its local state with the index " +
+        "each one is polled from next and the highest index emitted, so following resumes where it stopped.")
+public class TailGrowingLogs extends AbstractProcessor {
+
+    private static final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator("\n");
+
+    public static final PropertyDescriptor WITSML_SERVICE = new PropertyDescriptor
+            .Builder().name("WITSML SERVICE")
+            .displayName("WITSML Service")
+            .description("The service to be used to connect to the server.")
+            .required(true)
+            .identifiesControllerService(IWitsmlServiceApi.class)
+            .build();
+
+    public static final PropertyDescriptor WELL_ID = new PropertyDescriptor
+            .Builder().name("WELL ID")
+            .displayName("Well ID")
+            .description("The well of the log an incoming flowfile adds.")
+            .required(true)
+            .defaultValue("${wellUid}")
+            .expressionLanguageSupported(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor WELLBORE_ID = new PropertyDescriptor
+            .Builder().name("WELLBORE ID")
+            .displayName("Wellbore ID")
+            .description("The wellbore of the log an incoming flowfile adds.")
+            .required(true)
+            .defaultValue("${wellboreUid}")
+            .expressionLanguageSupported(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor LOG_ID = new PropertyDescriptor
+            .Builder().name("LOG ID")
+            .displayName("Log ID")
+            .description("The log an incoming flowfile adds.")
+            .required(true)
+            .defaultValue("${uid}")
+            .expressionLanguageSupported(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor START_TIME = new PropertyDescriptor
+            .Builder().name("START TIME")
+            .displayName("Start Time")
+            .description("Where a time indexed log is followed from when it is added. When neither start is set the log " +
+                    "is followed from its start index.")
+            .required(false)
+            .defaultValue("${next.query.time}")
+            .expressionLanguageSupported(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor START_DEPTH = new PropertyDescriptor
+            .Builder().name("START DEPTH")
+            .displayName("Start Depth")
+            .description("Where a depth indexed log is followed from when it is added. When neither start is set the log " +
+                    "is followed from its start index.")
+            .required(false)
+            .expressionLanguageSupported(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor POLL_INTERVAL = new PropertyDescriptor
+            .Builder().name("POLL INTERVAL")
+            .displayName("Poll Interval")
+            .description("How often a log that is adding rows is polled.")
+            .required(true)
+            .defaultValue("30 sec")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor IDLE_POLL_INTERVAL = new PropertyDescriptor
+            .Builder().name("IDLE POLL INTERVAL")
+            .displayName("Idle Poll Interval")
+            .description("Each poll of a log that finds no new rows doubles the wait before the next one, up to this " +
+                    "interval. The first new rows bring it back to the Poll Interval.")
+            .required(true)
+            .defaultValue("5 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor BATCH_SIZE = new PropertyDescriptor
+            .Builder().name("BATCH SIZE")
+            .displayName("Batch Size")
+            .description("The number of due logs polled on each run, queried in parallel through the WITSML service and " +
+                    "bounded by the concurrency limit of the service.")
+            .required(true)
+            .defaultValue("50")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TARGET_POINTS = new PropertyDescriptor
+            .Builder().name("TARGET POINTS")
+            .displayName("Target Points")
+            .description("The number of values (rows times curves) the window of a poll should aim to return.")
+            .required(true)
+            .defaultValue("100000")
+            .addValidator(StandardValidators.POSITIVE_LONG_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_QUERY_TIME = new PropertyDescriptor
+            .Builder().name("MAX QUERY TIME")
+            .displayName("Max Query Time")
+            .description("The window of a poll is shrunk when the server takes longer than this to answer.")
+            .required(true)
+            .defaultValue("30 sec")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final Relationship TIME_INDEXED = new Relationship.Builder()
+            .name("Time Indexed Data")
+            .description("The new rows of time indexed logs")
+            .build();
+
+    public static final Relationship DEPTH_INDEXED = new Relationship.Builder()
+            .name("Depth Indexed Data")
+            .description("The new rows of depth indexed logs")
+            .build();
+
+    public static final Relationship ORIGINAL = new Relationship.Builder()
+            .name("Original")
+            .description("Incoming flowfiles once their log is being followed")
+            .build();
+
+    public static final Relationship FAILURE = new Relationship.Builder()
+            .name("Failure")
+            .description("Incoming flowfiles that do not identify a log")
+            .build();
+
+    private List<PropertyDescriptor> descriptors;
+
+    private Set<Relationship> relationships;
+
+    private volatile TrackedLogs trackedLogs;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        final List<PropertyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(WITSML_SERVICE);
+        descriptors.add(WELL_ID);
+        descriptors.add(WELLBORE_ID);
+        descriptors.add(LOG_ID);
+        descriptors.add(START_TIME);
+        descriptors.add(START_DEPTH);
+        descriptors.add(POLL_INTERVAL);
+        descriptors.add(IDLE_POLL_INTERVAL);
+        descriptors.add(BATCH_SIZE);
+        descriptors.add(TARGET_POINTS);
+        descriptors.add(MAX_QUERY_TIME);
+        this.descriptors = Collections.unmodifiableList(descriptors);
+
+        final Set<Relationship> relationships = new HashSet<>();
+        relationships.add(TIME_INDEXED);
+        relationships.add(DEPTH_INDEXED);
+        relationships.add(ORIGINAL);
+        relationships.add(FAILURE);
+        this.relationships = Collections.unmodifiableSet(relationships);
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) throws IOException {
+        trackedLogs = TrackedLogs.fromState(context.getStateManager().getState(Scope.LOCAL).toMap());
+        getLogger().info("Following " + trackedLogs.size() + " logs");
+    }
+
+    @OnStopped
+    public void onStopped() {
+        trackedLogs = null;
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        TrackedLogs tracked = trackedLogs;
+        IWitsmlServiceApi witsmlServiceApi = context.getProperty(WITSML_SERVICE).asControllerService(IWitsmlServiceApi.class);
+
+        for (FlowFile flowFile : session.get(context.getProperty(BATCH_SIZE).asInteger())) {
+            String wellId = context.getProperty(WELL_ID).evaluateAttributeExpressions(flowFile).getValue();
+            String wellboreId = context.getProperty(WELLBORE_ID).evaluateAttributeExpressions(flowFile).getValue();
+            String logId = context.getProperty(LOG_ID).evaluateAttributeExpressions(flowFile).getValue();
+            if (wellId == null || wellId.trim().isEmpty() || wellboreId == null || wellboreId.trim().isEmpty() ||
+                    logId == null || logId.trim().isEmpty()) {
+                session.transfer(flowFile, FAILURE);
+                continue;
+            }
+            tracked.track(wellId.replaceAll("[;\\s\t]", ""), wellboreId.replaceAll("[;\\s\t]", ""), logId.replaceAll("[;\\s\t]", ""),
+                    emptyToNull(context.getProperty(START_TIME).evaluateAttributeExpressions(flowFile).getValue()),
+                    emptyToNull(context.getProperty(START_DEPTH).evaluateAttributeExpressions(flowFile).getValue()));
+            session.transfer(flowFile, ORIGINAL);
+        }
+
+        long now = System.currentTimeMillis();
+        List<TrackedLogs.TrackedLog> due = tracked.due(now, context.getProperty(BATCH_SIZE).asInteger());
+        if (due.isEmpty()) {
+            if (tracked.isChanged())
+                saveState(context, session, tracked);
+            context.yield();
+            return;
+        }
+
+        long pollInterval = context.getProperty(POLL_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS);
+        long idleInterval = context.getProperty(IDLE_POLL_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS);
+        long targetPoints = context.getProperty(TARGET_POINTS).asLong();
+        long maxQueryTime = context.getProperty(MAX_QUERY_TIME).asTimePeriod(TimeUnit.MILLISECONDS);
+        AdaptiveWindow timeSizing = AdaptiveWindow.forTime(targetPoints, maxQueryTime);
+        AdaptiveWindow depthSizing = AdaptiveWindow.forDepth(targetPoints, maxQueryTime);
+
+        Map<LogDataRequest, TrackedLogs.TrackedLog> logsByRequest = new IdentityHashMap<>();
+        List<LogDataRequest> requests = new ArrayList<>(due.size());
+        for (TrackedLogs.TrackedLog log : due) {
+            if (!log.hasStart() && !resolveStart(witsmlServiceApi, tracked, log)) {
+                tracked.polled(log, now, false, pollInterval, idleInterval);
+                continue;
+            }
+            LogDataRequest request = log.toRequest();
+            logsByRequest.put(request, log);
+            requests.add(request);
+        }
+        if (requests.isEmpty()) {
+            if (tracked.isChanged())
+                saveState(context, session, tracked);
+            return;
+        }
+
+        witsmlServiceApi.fetchLogDataBatch(requests, new ILogDataBatchHandler() {
+
+            private final Map<LogDataRequest, TailEmitter> emitters = new IdentityHashMap<>();
+
+            @Override
+            public ILogDataHandler onResponse(LogDataRequest request) {
+                TrackedLogs.TrackedLog log = logsByRequest.get(request);
+                TailEmitter emitter = new TailEmitter(session, log, new LogWatermark(log.watermark));
+                emitters.put(request, emitter);
+                return emitter;
+            }
+
+            @Override
+            public void onComplete(LogDataRequest request, LogDataHeader header, long queryMillis) {
+                TrackedLogs.TrackedLog log = logsByRequest.get(request);
+                TailEmitter emitter = emitters.remove(request);
+                if (header == null || emitter == null) {
+                    getLogger().error("Could not poll log " + log.getKey() + ", it is polled again later");
+                    if (emitter != null)
+                        emitter.discard();
+                    tracked.polled(log, now, false, pollInterval, idleInterval);
+                    return;
+                }
+                boolean newRows = emitter.emit(header);
+                // A log that stopped growing while still behind keeps being polled until it is caught up
+                boolean stopped = Boolean.FALSE.equals(header.isObjectGrowing());
+                boolean finished = stopped && reachedEnd(witsmlServiceApi, log, request, emitter.responseRows);
+                tracked.polled(log, now, newRows || stopped, pollInterval, idleInterval);
+
+                // A window that comes back empty grows, so gaps in the log are crossed within a few polls
+                long points = (long) emitter.responseRows * header.getMnemonics().length;
+                log.window = (header.isTimeIndexed() ? timeSizing : depthSizing).next(log.getWindow(), points, queryMillis);
+                if (header.isTimeIndexed())
+                    tracked.advance(log, header.getEndDateTimeIndex() == null ? log.startTime : header.getEndDateTimeIndex(),
+                            log.startDepth, emitter.watermark.next());
+                else
+                    tracked.advance(log, log.startTime,
+                            header.getEndIndex() == null ? log.startDepth : Double.toString(header.getEndIndex()),
+                            emitter.watermark.next());
+                if (finished) {
+                    getLogger().info("Log " + log.getKey() + " is no longer growing and is no longer followed");
+                    tracked.untrack(log);
+                }
+            }
+        });
+
+        if (tracked.isChanged())
+            saveState(context, session, tracked);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    /**
+     * Reads where a log added without a start begins from its metadata.
+     * @return false when the log has no index yet or its metadata cannot be read
+     */
+    private boolean resolveStart(IWitsmlServiceApi witsmlServiceApi, TrackedLogs tracked, TrackedLogs.TrackedLog log) {
+        LogMetadataInfo metadata = witsmlServiceApi.getLogMetaData(log.wellId, log.wellboreId, log.logId);
+        if (metadata == null || metadata.metadata == null)
+            return false;
+        try {
+            Object json = Configuration.defaultConfiguration().jsonProvider().parse(metadata.metadata);
+            String indexType = JsonPath.read(json, "$.log[0].indexType").toString();
+            if (indexType.contains("TIME"))
+                tracked.advance(log, JsonPath.read(json, "$.log[0].startDateTimeIndex").toString(), null, log.watermark);
+            else
+                tracked.advance(log, null, JsonPath.read(json, "$.log[0].startIndex.value").toString(), log.watermark);
+            return true;
+        } catch (RuntimeException ex) {
+            getLogger().debug("Log " + log.getKey() + " has no start index yet: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Whether the window just polled reaches the end index of the log in its metadata. When the end
+     * cannot be read the log is taken to be at its end once a window comes back empty.
+     */
+    private boolean reachedEnd(IWitsmlServiceApi witsmlServiceApi, TrackedLogs.TrackedLog log, LogDataRequest request,
+                               int responseRows) {
+        LogMetadataInfo metadata = witsmlServiceApi.getLogMetaData(log.wellId, log.wellboreId, log.logId);
+        try {
+            Object json = Configuration.defaultConfiguration().jsonProvider().parse(metadata.metadata);
+            if (log.isTimeIndexed()) {
+                String endTime = JsonPath.read(json, "$.log[0].endDateTimeIndex").toString();
+                return !ZonedDateTime.parse(request.getEndTime(), DateTimeFormatter.ISO_DATE_TIME)
+                        .isBefore(ZonedDateTime.parse(endTime, DateTimeFormatter.ISO_DATE_TIME));
+            }
+            String endDepth = JsonPath.read(json, "$.log[0].endIndex.value").toString();
+            return Double.parseDouble(request.getEndDepth()) >= Double.parseDouble(endDepth);
+        } catch (RuntimeException ex) {
+            getLogger().debug("Could not read the end index of log " + log.getKey() + ": " + ex.getMessage());
+            return responseRows == 0;
+        }
+    }
+
+    // The flowfiles go out before the cursors move past their rows
+    private void saveState(ProcessContext context, ProcessSession session, TrackedLogs tracked) {
+        session.commit();
+        try {
+            context.getStateManager().setState(tracked.toState(), Scope.LOCAL);
+        } catch (IOException ex) {
+            getLogger().error("Error saving the followed logs, rows emitted by this run may be emitted again: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the rows of one poll past the log's watermark as JSON objects, one per line. The rows are
+     * appended to the flowfile every FLUSH_BYTES, so a large window is never held in memory.
+     */
+    private class TailEmitter implements ILogDataHandler {
+
+        private static final int FLUSH_BYTES = 1024 * 1024;
+
+        private final ProcessSession session;
+        private final TrackedLogs.TrackedLog log;
+        private final LogWatermark watermark;
+        private final LogRowTokenizer tokenizer = new LogRowTokenizer();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private JsonGenerator generator;
+        private FlowFile flowFile;
+        private SerializedString[] keys;
+        private int indexField;
+        private int rowCount;
+        private int responseRows;
+
+        TailEmitter(ProcessSession session, TrackedLogs.TrackedLog log, LogWatermark watermark) {
+            this.session = session;
+            this.log = log;
+            this.watermark = watermark;
+        }
+
+        @Override
+        public void onHeader(LogDataHeader header) {
+            watermark.setTimeIndexed(header.isTimeIndexed());
+            String[] mnemonics = header.getMnemonics();
+            keys = new SerializedString[mnemonics.length];
+            indexField = 0;
+            for (int i = 0; i < mnemonics.length; i++) {
+                keys[i] = new SerializedString(mnemonics[i]);
+                if (mnemonics[i].equals(header.getIndexCurve()))
+                    indexField = i;
+            }
+        }
+
+        @Override
+        public void onRow(String row) {
+            if (row == null || row.isEmpty())
+                return;
+            responseRows++;
+            int count = Math.min(tokenizer.tokenize(row), keys.length);
+            if (indexField < count &&
+                    !watermark.accept(tokenizer.getChars(), tokenizer.getStart(indexField), tokenizer.getLength(indexField)))
+                return;
+            try {
+                if (generator == null)
+                    generator = jsonFactory.createGenerator(buffer);
+                char[] chars = tokenizer.getChars();
+                generator.writeStartObject();
+                for (int i = 0; i < count; i++) {
+                    int length = tokenizer.getLength(i);
+                    if (length == 0)
+                        continue;
+                    generator.writeFieldName(keys[i]);
+                    generator.writeString(chars, tokenizer.getStart(i), length);
+                }
+                generator.writeEndObject();
+                rowCount++;
+                if (buffer.size() >= FLUSH_BYTES)
+                    flush();
+            } catch (IOException e) {
+                getLogger().error("Could not process row: " + row);
+            }
+        }
+
+        private void flush() throws IOException {
+            generator.flush();
+            if (flowFile == null)
+                flowFile = session.create();
+            flowFile = session.append(flowFile, out -> buffer.writeTo(out));
+            buffer.reset();
+        }
+
+        void discard() {
+            if (flowFile != null)
+                session.remove(flowFile);
+            flowFile = null;
+        }
+
+        /**
+         * @return whether there were new rows to emit
+         */
+        boolean emit(LogDataHeader header) {
+            if (rowCount == 0)
+                return false;
+            try {
+                flush();
+            } catch (IOException e) {
+                getLogger().error("Could not write the rows of log " + log.getKey() + ": " + e.getMessage());
+                discard();
+                return false;
+            }
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("wellUid", log.wellId);
+            attributes.put("wellboreUid", log.wellboreId);
+            attributes.put("uid", log.logId);
+            attributes.put("objectType", "log");
+            attributes.put(LogWatermark.WATERMARK_ATTRIBUTE, watermark.next());
+            attributes.put("record.count", String.valueOf(rowCount));
+            attributes.put(CoreAttributes.MIME_TYPE.key(), "application/json");
+            flowFile = session.putAllAttributes(flowFile, attributes);
+            session.transfer(flowFile, header.isTimeIndexed() ? TIME_INDEXED : DEPTH_INDEXED);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The growing logs followed by TailGrowingLogs, each with the index its next poll starts from and the
+ * watermark of the rows already emitted. The table lives in memory and is only written to state when
+ * a cursor has moved, so following a log that is not growing costs nothing but the poll itself. Logs
+ * that keep coming back empty are polled less and less often, up to the idle interval. Each poll only
+ * covers a window from the start of the log, sized by AdaptiveWindow and kept in memory only.
+ */
+class TrackedLogs {
+
+    static final String LOG_KEY_PREFIX = "log.";
+
+    static class TrackedLog {
+        final String wellId;
+        final String wellboreId;
+        final String logId;
+        String startTime;
+        String startDepth;
+        String watermark;
+        long nextPoll;
+        int idlePolls;
+        double window;
+
+        TrackedLog(String wellId, String wellboreId, String logId, String startTime, String startDepth, String watermark) {
+            this.wellId = wellId;
+            this.wellboreId = wellboreId;
+            this.logId = logId;
+            this.startTime = startTime;
+            this.startDepth = startDepth;
+            this.watermark = watermark;
+        }
+
+        String getKey() {
+            return key(wellId, wellboreId, logId);
+        }
+
+        boolean hasStart() {
+            return startTime != null || startDepth != null;
+        }
+
+        boolean isTimeIndexed() {
+            return startTime != null;
+        }
+
+        /**
+         * @return the size of the window the next poll covers, in seconds or index units
+         */
+        double getWindow() {
+            if (window > 0)
+                return window;
+            return isTimeIndexed() ? AdaptiveWindow.INITIAL_TIME_WINDOW : AdaptiveWindow.INITIAL_DEPTH_WINDOW;
+        }
+
+        /**
+         * @return the query of the next window of the log, unbounded only when the start cannot be read
+         */
+        LogDataRequest toRequest() {
+            if (isTimeIndexed())
+                return new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, timeWindowEnd(startTime, getWindow()), "");
+            return new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, "", depthWindowEnd(startDepth, getWindow()));
+        }
+    }
+
+    private static String timeWindowEnd(String startTime, double windowSeconds) {
+        try {
+            return ZonedDateTime.parse(startTime, DateTimeFormatter.ISO_DATE_TIME).plusSeconds((long) windowSeconds)
+                    .withZoneSameInstant(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern(WitsmlConstants.TIMEZONE_FORMAT));
+        } catch (DateTimeParseException ex) {
+            return "";
+        }
+    }
+
+    private static String depthWindowEnd(String startDepth, double window) {
+        if (startDepth == null)
+            return "";
+        try {
+            return Double.toString(Double.parseDouble(startDepth) + window);
+        } catch (NumberFormatException ex) {
+            return "";
+        }
+    }
+
+    private final Map<String, TrackedLog> logs = new LinkedHashMap<>();
+    private boolean changed;
+
+    private static String key(String wellId, String wellboreId, String logId) {
+        return "/" + wellId + "/" + wellboreId + "/" + logId;
+    }
+
+    /**
+     * Starts following a log, a log that is already followed keeps its cursor.
+     * @return whether the log was not followed before
+     */
+    boolean track(String wellId, String wellboreId, String logId, String startTime, String startDepth) {
+        String key = key(wellId, wellboreId, logId);
+        if (logs.containsKey(key))
+            return false;
+        logs.put(key, new TrackedLog(wellId, wellboreId, logId, startTime, startDepth, null));
+        changed = true;
+        return true;
+    }
+
+    void untrack(TrackedLog log) {
+        if (logs.remove(log.getKey()) != null)
+            changed = true;
+    }
+
+    TrackedLog get(String wellId, String wellboreId, String logId) {
+        return logs.get(key(wellId, wellboreId, logId));
+    }
+
+    int size() {
+        return logs.size();
+    }
+
+    /**
+     * @return up to max of the logs whose next poll is due, the longest waiting first
+     */
+    List<TrackedLog> due(long now, int max) {
+        List<TrackedLog> due = new ArrayList<>();
+        for (TrackedLog log : logs.values()) {
+            if (log.nextPoll <= now)
+                due.add(log);
+        }
+        due.sort(Comparator.comparingLong(log -> log.nextPoll));
+        return due.size() > max ? new ArrayList<>(due.subList(0, max)) : due;
+    }
+
+    /**
+     * Schedules the next poll of the log. Every poll in a row without new rows doubles the wait, up
+     * to the idle interval, and the first new rows bring it back to the poll interval.
+     */
+    void polled(TrackedLog log, long now, boolean newRows, long pollInterval, long idleInterval) {
+        log.idlePolls = newRows ? 0 : log.idlePolls + 1;
+        long wait = pollInterval;
+        for (int i = 0; i < log.idlePolls && wait < idleInterval; i++)
+            wait *= 2;
+        log.nextPoll = now + Math.min(wait, Math.max(pollInterval, idleInterval));
+    }
+
+    /**
+     * Moves the cursor of the log, the table is only marked as changed when something is different.
+     */
+    void advance(TrackedLog log, String startTime, String startDepth, String watermark) {
+        if (!equal(log.startTime, startTime) || !equal(log.startDepth, startDepth) || !equal(log.watermark, watermark)) {
+            log.startTime = startTime;
+            log.startDepth = startDepth;
+            log.watermark = watermark;
+            changed = true;
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return whether the table has changed since it was read or last written to state
+     */
+    boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * @return the table as state, one entry per log, and marks it as saved
+     */
+    Map<String, String> toState() {
+        Map<String, String> state = new HashMap<>();
+        int i = 0;
+        for (TrackedLog log : logs.values()) {
+            state.put(LOG_KEY_PREFIX + i++, encode(log.wellId) + "," + encode(log.wellboreId) + "," + encode(log.logId) +
+                    "," + encode(log.startTime) + "," + encode(log.startDepth) + "," + encode(log.watermark));
+        }
+        changed = false;
+        return state;
+    }
+
+    /**
+     * Reads the table back from state, entries that cannot be read are left out. Every log is due
+     * for a poll straight away.
+     */
+    static TrackedLogs fromState(Map<String, String> state) {
+        TrackedLogs tracked = new TrackedLogs();
+        for (Map.Entry<String, String> entry : state.entrySet()) {
+            if (!entry.getKey().startsWith(LOG_KEY_PREFIX))
+                continue;
+            String[] fields = entry.getValue().split(",", -1);
+            if (fields.length != 6 || fields[0].isEmpty() || fields[1].isEmpty() || fields[2].isEmpty())
+                continue;
+            TrackedLog log = new TrackedLog(decode(fields[0]), decode(fields[1]), decode(fields[2]),
+                    decode(fields[3]), decode(fields[4]), decode(fields[5]));
+            tracked.logs.put(log.getKey(), log);
+        }
+        return tracked;
+    }
+
+    Collection<TrackedLog> getLogs() {
+        return logs.values();
+    }
+
+    // Empty fields stand for null, values are URL encoded so they cannot contain the separator
+    private static String encode(String value) {
+        if (value == null)
+            return "";
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String decode(String value) {
+        if (value.isEmpty())
+            return null;
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
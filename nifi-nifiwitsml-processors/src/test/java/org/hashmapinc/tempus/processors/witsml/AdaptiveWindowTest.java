@@ -0,0 +1,33 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveWindowTest {
+
+    private final AdaptiveWindow sizing = AdaptiveWindow.forTime(10000, 30000);
+
+    @Test
+    public void testMovesTowardsTargetPoints() {
+        assertEquals(7200, sizing.next(3600, 5000, 1000), 0.0);
+        assertEquals(1800, sizing.next(3600, 20000, 1000), 0.0);
+    }
+
+    @Test
+    public void testLimitsChangePerQuery() {
+        assertEquals(14400, sizing.next(3600, 0, 1000), 0.0);
+        assertEquals(900, sizing.next(3600, 1000000, 1000), 0.0);
+    }
+
+    @Test
+    public void testShrinksSlowQueries() {
+        assertEquals(1800, sizing.next(3600, 10000, 60000), 0.0);
+    }
+
+    @Test
+    public void testStaysWithinBounds() {
+        assertEquals(60, sizing.next(100, 1000000, 1000), 0.0);
+        assertEquals(30 * 24 * 3600, sizing.next(30 * 24 * 3600, 10, 1000), 0.0);
+    }
+}
@@ -0,0 +1,87 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.wnameless.json.flattener.JsonFlattener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlatteningJsonGeneratorTest {
+
+    private static final ObjectWriter writer = JsonWriters.nonAbsent("yyyy-MM-dd HH:mm:ss.SSS");
+
+    public static class Parameter {
+        private final String uom;
+        private final int value;
+
+        Parameter(String uom, int value) {
+            this.uom = uom;
+            this.value = value;
+        }
+
+        public String getUom() {
+            return uom;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    public static class MudLog {
+        public String uid = "ml1";
+        public String name = "Mud \"Log\" 1";
+        public String objectGrowing = null;
+        public Date dTimCreation = new Date(1496397600000L);
+        public boolean active = true;
+        public List<Parameter> parameter = Arrays.asList(new Parameter("m", 10), new Parameter("ft", 33));
+        public List<List<Long>> ranges = Arrays.asList(Arrays.asList(1L, 2L), Collections.emptyList());
+        public List<String> lithology = new ArrayList<>();
+        public Map<String, Object> extensions = new LinkedHashMap<>();
+        public Map<String, Object> customData = new LinkedHashMap<>();
+
+        MudLog() {
+            extensions.put("tempus.source", "server 1");
+            extensions.put("depth", 1250.5);
+        }
+    }
+
+    private static String flatten(Object value) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlatteningJsonGenerator.write(writer, value, out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testMatchesJsonFlattener() throws Exception {
+        MudLog mudLog = new MudLog();
+        assertEquals(JsonFlattener.flatten(writer.writeValueAsString(mudLog)), flatten(mudLog));
+    }
+
+    @Test
+    public void testWritesDottedKeys() throws Exception {
+        String flat = flatten(new MudLog());
+        assertTrue(flat.contains("\"parameter[1].uom\":\"ft\""));
+        assertTrue(flat.contains("\"ranges[0][1]\":2"));
+        assertTrue(flat.contains("\"ranges[1]\":[]"));
+        assertTrue(flat.contains("\"customData\":{}"));
+        assertTrue(flat.contains("\"extensions[\\\"tempus.source\\\"]\":\"server 1\""));
+    }
+
+    @Test
+    public void testWritesRootArraysAndEmptyObjects() throws Exception {
+        List<Object> root = Arrays.asList(1, Collections.singletonMap("a", 2));
+        assertEquals(JsonFlattener.flatten(writer.writeValueAsString(root)), flatten(root));
+        assertEquals("{}", flatten(Collections.emptyMap()));
+    }
+}
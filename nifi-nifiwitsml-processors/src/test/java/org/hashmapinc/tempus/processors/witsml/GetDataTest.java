@@ -1,23 +1,265 @@
 package org.hashmapinc.tempus.processors.witsml;
 
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 /**
  * Created by pc on 16/8/17.
  */
 public class GetDataTest {
     private TestRunner testRunner;
+    private MockWitsmlService service;
 
     @Before
-    public void init() {
+    public void init() throws InitializationException {
         testRunner = TestRunners.newTestRunner(GetData.class);
+        service = new MockWitsmlService();
+        testRunner.addControllerService("witsml", service);
+        testRunner.enableControllerService(service);
+        testRunner.setProperty(GetData.WITSML_SERVICE, "witsml");
+        testRunner.setProperty(GetData.WELL_ID, "${wellUid}");
+        testRunner.setProperty(GetData.WELLBORE_ID, "${wellboreUid}");
+        testRunner.setProperty(GetData.OBJECT_TYPE, "${objectType}");
+        testRunner.setProperty(GetData.OBJECT_ID, "${uid}");
+        testRunner.setProperty(GetData.QUERY_START_TIME, "${next.query.time}");
     }
 
     @Test
     public void testProcessor() {
 
     }
+
+    @Test
+    public void testMnemonicsMayUseCommasInsideExpressions() {
+        testRunner.setProperty(GetData.MNEMONICS, "GR[0-9]{1,3},ROP");
+        testRunner.assertValid();
+    }
+
+    @Test
+    public void testMnemonicsMustBeRegularExpressions() {
+        testRunner.setProperty(GetData.MNEMONICS, "GR[0-9,ROP");
+        testRunner.assertNotValid();
+        testRunner.setProperty(GetData.MNEMONICS, "${mnemonics}");
+        testRunner.assertValid();
+    }
+
+    private void respondWithTimeLog(String endTime, String... rows) {
+        LogDataHeader header = MockWitsmlService.header("date time", "TIME", true, "TIME", "GR");
+        header.setEndDateTimeIndex(endTime);
+        List<String> data = Arrays.asList(rows);
+        service.setLogResponses(request -> new MockWitsmlService.LogResponse(header, data));
+    }
+
+    private void enqueueLog(String nextQueryTime, String watermark) {
+        enqueueLog("log1", nextQueryTime, watermark);
+    }
+
+    private void enqueueLog(String uid, String nextQueryTime, String watermark) {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("wellUid", "w1");
+        attributes.put("wellboreUid", "wb1");
+        attributes.put("uid", uid);
+        attributes.put("objectType", "log");
+        attributes.put(GetData.NEXT_QUERY_TIME_ATTRIBUTE, nextQueryTime);
+        if (watermark != null)
+            attributes.put(LogWatermark.WATERMARK_ATTRIBUTE, watermark);
+        testRunner.enqueue(new byte[0], attributes);
+    }
+
+    @Test
+    public void testRowsAtTheWatermarkLeaveTheLogIdle() {
+        testRunner.setProperty(GetData.ROW_WATERMARK, "true");
+        respondWithTimeLog("2017-06-02T10:00:10Z", "2017-06-02T10:00:00Z,1.5", "2017-06-02T10:00:10Z,2.5");
+        // 2017-06-02T10:00:10Z in epoch microseconds
+        enqueueLog("2017-06-02T10:00:10Z", "1496397610000000");
+        testRunner.run();
+
+        testRunner.assertTransferCount(GetData.TIME_INDEXED, 0);
+        testRunner.assertAllFlowFilesTransferred(GetData.REQUERY, 1);
+        MockFlowFile requery = testRunner.getFlowFilesForRelationship(GetData.REQUERY).get(0);
+        requery.assertAttributeEquals(GetData.FLOWFILE_PRIORITY, "3");
+        requery.assertAttributeEquals(LogWatermark.WATERMARK_ATTRIBUTE, "1496397610000000");
+    }
+
+    @Test
+    public void testRowsPastTheWatermarkAreEmitted() {
+        testRunner.setProperty(GetData.ROW_WATERMARK, "true");
+        respondWithTimeLog("2017-06-02T10:00:20Z", "2017-06-02T10:00:10Z,2.5", "2017-06-02T10:00:20Z,3.5");
+        enqueueLog("2017-06-02T10:00:10Z", "1496397610000000");
+        testRunner.run();
+
+        testRunner.assertTransferCount(GetData.TIME_INDEXED, 1);
+        testRunner.getFlowFilesForRelationship(GetData.TIME_INDEXED).get(0)
+                .assertContentEquals("{\"TIME\":\"2017-06-02T10:00:20Z\",\"GR\":\"3.5\"}");
+        testRunner.assertTransferCount(GetData.REQUERY, 1);
+        MockFlowFile requery = testRunner.getFlowFilesForRelationship(GetData.REQUERY).get(0);
+        requery.assertAttributeNotEquals(GetData.FLOWFILE_PRIORITY, "3");
+        requery.assertAttributeEquals(LogWatermark.WATERMARK_ATTRIBUTE, "1496397620000000");
+    }
+
+    @Test
+    public void testBatchWindowsAreSizedByTheirOwnQueryTime() {
+        testRunner.setProperty(GetData.BATCH_SIZE, "2");
+        testRunner.setProperty(GetData.ADAPTIVE_WINDOW, "true");
+        testRunner.setProperty(GetData.QUERY_END_TIME, "2017-06-03T10:00:00Z");
+        LogDataHeader header = MockWitsmlService.header("date time", "TIME", true, "TIME", "GR");
+        header.setEndDateTimeIndex("2017-06-02T10:30:00Z");
+        List<String> rows = Arrays.asList("2017-06-02T10:00:00Z,1.5", "2017-06-02T10:30:00Z,2.5");
+        // Answered together, but the server took two minutes over the slow log and almost nothing over the other
+        service.setLogResponses(request -> new MockWitsmlService.LogResponse(header, rows,
+                request.getLogId().equals("slow") ? 120000 : 10));
+        enqueueLog("slow", "2017-06-02T10:00:00Z", null);
+        enqueueLog("fast", "2017-06-02T10:00:00Z", null);
+        testRunner.run();
+
+        for (LogDataRequest request : service.getRequests())
+            assertEquals("2017-06-02T11:00:00Z", request.getEndTime());
+        testRunner.assertTransferCount(GetData.TIME_INDEXED, 4);
+        testRunner.assertTransferCount(GetData.REQUERY, 2);
+        Map<String, MockFlowFile> requeries = new HashMap<>();
+        for (MockFlowFile requery : testRunner.getFlowFilesForRelationship(GetData.REQUERY))
+            requeries.put(requery.getAttribute("uid"), requery);
+
+        // Shrunk to a quarter for going over the max query time, grown by four for returning few points
+        requeries.get("slow").assertAttributeEquals(AdaptiveWindow.WINDOW_ATTRIBUTE, "900");
+        requeries.get("fast").assertAttributeEquals(AdaptiveWindow.WINDOW_ATTRIBUTE, "14400");
+        for (MockFlowFile requery : requeries.values()) {
+            requery.assertAttributeEquals(GetData.FLOWFILE_PRIORITY, "2");
+            requery.assertAttributeEquals(GetData.NEXT_QUERY_TIME_ATTRIBUTE, "2017-06-02T11:00:00Z");
+        }
+    }
+
+    @Test
+    public void testAdaptiveWindowsKeepRowsJustAfterTheWindowEnd() {
+        testRunner.setProperty(GetData.ADAPTIVE_WINDOW, "true");
+        testRunner.setProperty(GetData.QUERY_END_TIME, "2017-06-03T10:00:00Z");
+        // The server's bounds are inclusive, the row at the window end comes back with the next window too
+        service.setLogResponses(request -> {
+            LogDataHeader header = MockWitsmlService.header("date time", "TIME", true, "TIME", "GR");
+            if (request.getStartTime().equals("2017-06-02T10:00:00Z")) {
+                header.setEndDateTimeIndex("2017-06-02T11:00:00Z");
+                return new MockWitsmlService.LogResponse(header,
+                        Arrays.asList("2017-06-02T10:59:59.5Z,1.5", "2017-06-02T11:00:00Z,2.5"));
+            }
+            header.setEndDateTimeIndex("2017-06-02T11:00:01Z");
+            return new MockWitsmlService.LogResponse(header,
+                    Arrays.asList("2017-06-02T11:00:00Z,2.5", "2017-06-02T11:00:00.5Z,3.5", "2017-06-02T11:00:01Z,4.5"));
+        });
+        enqueueLog("2017-06-02T10:00:00Z", null);
+        testRunner.run();
+
+        testRunner.assertTransferCount(GetData.TIME_INDEXED, 2);
+        testRunner.assertTransferCount(GetData.REQUERY, 1);
+        MockFlowFile requery = testRunner.getFlowFilesForRelationship(GetData.REQUERY).get(0);
+        requery.assertAttributeEquals(GetData.NEXT_QUERY_TIME_ATTRIBUTE, "2017-06-02T11:00:00Z");
+
+        testRunner.clearTransferState();
+        testRunner.enqueue(requery);
+        testRunner.run();
+
+        List<MockFlowFile> rows = testRunner.getFlowFilesForRelationship(GetData.TIME_INDEXED);
+        assertEquals(2, rows.size());
+        rows.get(0).assertContentEquals("{\"TIME\":\"2017-06-02T11:00:00.5Z\",\"GR\":\"3.5\"}");
+        rows.get(1).assertContentEquals("{\"TIME\":\"2017-06-02T11:00:01Z\",\"GR\":\"4.5\"}");
+        assertEquals("2017-06-02T11:00:00Z", service.getRequests().get(1).getStartTime());
+    }
+
+    // A time log with a double curve that has a null value, an integer curve and a text curve
+    private void respondWithMixedLog() {
+        LogDataHeader header = MockWitsmlService.header("date time", "TIME", true, "TIME", "GR", "RPM", "BIT");
+        header.getCurves().add(MockWitsmlService.curve("TIME", "date time", null));
+        header.getCurves().add(MockWitsmlService.curve("GR", "double", "-999.25"));
+        header.getCurves().add(MockWitsmlService.curve("RPM", "int", null));
+        header.getCurves().add(MockWitsmlService.curve("BIT", "string", null));
+        header.setEndDateTimeIndex("2017-06-02T10:00:20Z");
+        List<String> rows = Arrays.asList("2017-06-02T10:00:10Z,45.2,120,PDC", "2017-06-02T10:00:20Z,-999.25,,PDC");
+        service.setLogResponses(request -> new MockWitsmlService.LogResponse(header, rows));
+    }
+
+    private MockRecordWriter useRecordWriter() throws InitializationException {
+        MockRecordWriter writer = new MockRecordWriter();
+        testRunner.addControllerService("writer", writer);
+        testRunner.enableControllerService(writer);
+        testRunner.setProperty(GetData.LOG_DATA_FORMAT, "RECORD");
+        testRunner.setProperty(GetData.RECORD_WRITER, "writer");
+        return writer;
+    }
+
+    private static void assertField(RecordSchema schema, String name, RecordFieldType type, boolean nullable) {
+        RecordField field = schema.getField(name).get();
+        assertEquals(type, field.getDataType().getFieldType());
+        assertEquals(nullable, field.isNullable());
+    }
+
+    private static void assertMixedLogRecords(MockRecordWriter writer, int from) {
+        RecordSchema schema = writer.getSchemas().get(0);
+        assertEquals(Arrays.asList("TIME", "GR", "RPM", "BIT"), schema.getFieldNames());
+        assertField(schema, "TIME", RecordFieldType.TIMESTAMP, false);
+        assertField(schema, "GR", RecordFieldType.DOUBLE, true);
+        assertField(schema, "RPM", RecordFieldType.LONG, true);
+        assertField(schema, "BIT", RecordFieldType.STRING, true);
+
+        Record first = writer.getRecords().get(from);
+        assertEquals(new Timestamp(1496397610000L), first.getValue("TIME"));
+        assertEquals(45.2, first.getValue("GR"));
+        assertEquals(120L, first.getValue("RPM"));
+        assertEquals("PDC", first.getValue("BIT"));
+
+        // The null value and the empty field are left out rather than written as values
+        Record second = writer.getRecords().get(from + 1);
+        assertEquals(new Timestamp(1496397620000L), second.getValue("TIME"));
+        assertNull(second.getValue("GR"));
+        assertNull(second.getValue("RPM"));
+        assertEquals("PDC", second.getValue("BIT"));
+    }
+
+    @Test
+    public void testRecordSchemaFollowsTypeLogData() throws InitializationException {
+        MockRecordWriter writer = useRecordWriter();
+        respondWithMixedLog();
+        enqueueLog("2017-06-02T10:00:00Z", null);
+        testRunner.run();
+
+        testRunner.assertTransferCount(GetData.TIME_INDEXED, 1);
+        MockFlowFile window = testRunner.getFlowFilesForRelationship(GetData.TIME_INDEXED).get(0);
+        window.assertAttributeEquals("record.count", "2");
+        window.assertAttributeEquals("mime.type", "text/plain");
+        assertEquals(1, writer.getSchemas().size());
+        assertMixedLogRecords(writer, 0);
+    }
+
+    @Test
+    public void testBatchedRecordsMatchSingleQueries() throws InitializationException {
+        MockRecordWriter writer = useRecordWriter();
+        testRunner.setProperty(GetData.BATCH_SIZE, "2");
+        respondWithMixedLog();
+        enqueueLog("log1", "2017-06-02T10:00:00Z", null);
+        enqueueLog("log2", "2017-06-02T10:00:00Z", null);
+        testRunner.run();
+
+        testRunner.assertTransferCount(GetData.TIME_INDEXED, 2);
+        for (MockFlowFile window : testRunner.getFlowFilesForRelationship(GetData.TIME_INDEXED))
+            window.assertAttributeEquals("record.count", "2");
+        assertEquals(2, writer.getSchemas().size());
+        assertEquals(writer.getSchemas().get(0), writer.getSchemas().get(1));
+        assertMixedLogRecords(writer, 0);
+        assertMixedLogRecords(writer, 2);
+    }
 }
@@ -0,0 +1,82 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KnownObjectCacheTest {
+
+    private static String uri(int i) {
+        return "/Well(w1)/Wellbore(wb1)/log/Log " + i + "(log" + i + ")";
+    }
+
+    @Test
+    public void testRemembersKnownUris() {
+        KnownObjectCache cache = new KnownObjectCache(100);
+
+        assertFalse(cache.isKnown(uri(1)));
+        cache.markKnown(uri(1));
+        assertTrue(cache.isKnown(uri(1)));
+        assertFalse(cache.isKnown(uri(2)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testDropsLeastRecentlyUsed() {
+        KnownObjectCache cache = new KnownObjectCache(2);
+
+        cache.markKnown(uri(1));
+        cache.markKnown(uri(2));
+        assertTrue(cache.isKnown(uri(1)));
+        cache.markKnown(uri(3));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.isKnown(uri(1)));
+        assertFalse(cache.isKnown(uri(2)));
+        assertTrue(cache.isKnown(uri(3)));
+    }
+
+    @Test
+    public void testStaysExactAfterFilterRebuilds() {
+        KnownObjectCache cache = new KnownObjectCache(50);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.markKnown(uri(i));
+        }
+        for (int i = 0; i < 950; i++) {
+            assertFalse(cache.isKnown(uri(i)));
+        }
+        for (int i = 950; i < 1000; i++) {
+            assertTrue(cache.isKnown(uri(i)));
+        }
+    }
+
+    @Test
+    public void testDisabledCacheKnowsNothing() {
+        KnownObjectCache cache = new KnownObjectCache(0);
+
+        cache.markKnown(uri(1));
+        assertFalse(cache.isKnown(uri(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBloomFilterFalsePositiveRate() {
+        KnownObjectCache.BloomFilter filter = new KnownObjectCache.BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(uri(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(uri(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain(uri(i)))
+                falsePositives++;
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+}
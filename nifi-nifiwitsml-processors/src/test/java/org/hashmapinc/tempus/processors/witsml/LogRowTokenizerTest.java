@@ -0,0 +1,44 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogRowTokenizerTest {
+
+    private static String field(LogRowTokenizer tokenizer, int i) {
+        return new String(tokenizer.getChars(), tokenizer.getStart(i), tokenizer.getLength(i));
+    }
+
+    @Test
+    public void testSplitsOnCommas() {
+        LogRowTokenizer tokenizer = new LogRowTokenizer();
+        assertEquals(4, tokenizer.tokenize("  2017-08-01T00:00:01.000Z,12.5,,7 \n"));
+        assertEquals("2017-08-01T00:00:01.000Z", field(tokenizer, 0));
+        assertEquals("12.5", field(tokenizer, 1));
+        assertEquals(0, tokenizer.getLength(2));
+        assertEquals("7", field(tokenizer, 3));
+    }
+
+    @Test
+    public void testKeepsQuotedValuesTogether() {
+        LogRowTokenizer tokenizer = new LogRowTokenizer();
+        assertEquals(3, tokenizer.tokenize("100.5,\"Drilling, rotating\",\"OK\""));
+        assertEquals("\"Drilling, rotating\"", field(tokenizer, 1));
+        assertEquals("\"OK\"", field(tokenizer, 2));
+    }
+
+    @Test
+    public void testReusesBuffersAcrossRows() {
+        LogRowTokenizer tokenizer = new LogRowTokenizer();
+        StringBuilder wide = new StringBuilder("0");
+        for (int i = 1; i < 40; i++) {
+            wide.append(',').append(i);
+        }
+        assertEquals(40, tokenizer.tokenize(wide.toString()));
+        assertEquals("39", field(tokenizer, 39));
+        assertEquals(2, tokenizer.tokenize("a,b"));
+        assertEquals("b", field(tokenizer, 1));
+        assertEquals(0, tokenizer.tokenize("   "));
+    }
+}
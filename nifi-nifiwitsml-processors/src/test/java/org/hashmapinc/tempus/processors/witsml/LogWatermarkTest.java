@@ -0,0 +1,93 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogWatermarkTest {
+
+    private static long micros(String text) {
+        return LogWatermark.parseEpochMicros(text.toCharArray(), 0, text.length());
+    }
+
+    private static double depth(String text) {
+        return LogWatermark.parseDepth(text.toCharArray(), 0, text.length());
+    }
+
+    private static boolean accept(LogWatermark watermark, String index) {
+        return watermark.accept(index.toCharArray(), 0, index.length());
+    }
+
+    private static long expected(String text) {
+        return ChronoUnit.MICROS.between(OffsetDateTime.parse("1970-01-01T00:00:00Z"), OffsetDateTime.parse(text));
+    }
+
+    @Test
+    public void testParsesDateTimes() {
+        assertEquals(expected("2017-06-02T10:00:00Z"), micros("2017-06-02T10:00:00Z"));
+        assertEquals(expected("2017-06-02T10:00:00.123Z"), micros("2017-06-02T10:00:00.123Z"));
+        assertEquals(expected("2017-06-02T10:00:00.123456-05:00"), micros("2017-06-02T10:00:00.123456-05:00"));
+        assertEquals(expected("2016-02-29T23:59:59.999999+05:30"), micros("2016-02-29T23:59:59.9999999+0530"));
+        assertEquals(expected("1969-12-31T23:59:59Z"), micros("1969-12-31T23:59:59Z"));
+        assertEquals(expected("2017-06-02T10:00:00Z"), micros(" \"2017-06-02T10:00:00\" "));
+    }
+
+    @Test
+    public void testRejectsOtherText() {
+        assertEquals(Long.MIN_VALUE, micros("1250.5"));
+        assertEquals(Long.MIN_VALUE, micros("2017-06-02"));
+        assertEquals(Long.MIN_VALUE, micros("2017-13-02T10:00:00Z"));
+        assertEquals(Long.MIN_VALUE, micros("2017-06-02T10:00:00.Z"));
+        assertEquals(Long.MIN_VALUE, micros("2017-06-02T10:00:00+05"));
+        assertTrue(Double.isNaN(depth("")));
+        assertTrue(Double.isNaN(depth("abc")));
+    }
+
+    @Test
+    public void testParsesDepths() {
+        assertEquals(1250.5, depth("1250.5"), 0);
+        assertEquals(-0.1, depth("-0.1"), 0);
+        assertEquals(0.3, depth("0.3"), 0);
+        assertEquals(12.0, depth(" 12 "), 0);
+        assertEquals(1.5e3, depth("1.5E3"), 0);
+        assertEquals(1234567.1234567891, depth("1234567.1234567891"), 0);
+    }
+
+    @Test
+    public void testDropsRowsUpToTheWatermark() {
+        LogWatermark first = new LogWatermark(null);
+        first.setTimeIndexed(true);
+        assertTrue(accept(first, "2017-06-02T10:00:00.100Z"));
+        assertTrue(accept(first, "2017-06-02T10:00:00.200Z"));
+
+        // The next query starts inside the same second and includes its bound
+        LogWatermark next = new LogWatermark(first.next());
+        next.setTimeIndexed(true);
+        assertFalse(accept(next, "2017-06-02T10:00:00.100Z"));
+        assertFalse(accept(next, "2017-06-02T10:00:00.200Z"));
+        assertTrue(accept(next, "2017-06-02T10:00:00.300Z"));
+        assertTrue(accept(next, "not a time"));
+        assertEquals(Long.toString(micros("2017-06-02T10:00:00.300Z")), next.next());
+    }
+
+    @Test
+    public void testKeepsWatermarkWithoutNewRows() {
+        LogWatermark empty = new LogWatermark(null);
+        empty.setTimeIndexed(false);
+        assertNull(empty.next());
+
+        LogWatermark depth = new LogWatermark("1250.5");
+        depth.setTimeIndexed(false);
+        assertFalse(accept(depth, "1250.5"));
+        assertFalse(depth.acceptDepth(1000));
+        assertEquals("1250.5", depth.next());
+        assertTrue(depth.acceptDepth(1250.75));
+        assertEquals("1250.75", depth.next());
+    }
+}
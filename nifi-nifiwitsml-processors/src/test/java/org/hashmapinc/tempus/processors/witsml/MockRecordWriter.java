@@ -0,0 +1,99 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.serialization.RecordSetWriter;
+import org.apache.nifi.serialization.RecordSetWriterFactory;
+import org.apache.nifi.serialization.WriteResult;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.serialization.record.RecordSet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A record writer that writes each record as a line of its values and keeps the schemas and records
+ * it was given, so tests can check them without a real serialization format.
+ */
+public class MockRecordWriter extends AbstractControllerService implements RecordSetWriterFactory {
+
+    private final List<RecordSchema> schemas = new ArrayList<>();
+    private final List<Record> records = new ArrayList<>();
+
+    /**
+     * @return the schema of every record set written, in order
+     */
+    public List<RecordSchema> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * @return every record written, in order
+     */
+    public List<Record> getRecords() {
+        return records;
+    }
+
+    @Override
+    public RecordSchema getSchema(Map<String, String> variables, RecordSchema readSchema) {
+        return readSchema;
+    }
+
+    @Override
+    public RecordSetWriter createWriter(ComponentLog logger, RecordSchema schema, OutputStream out) {
+        schemas.add(schema);
+        return new RecordSetWriter() {
+
+            private int count;
+
+            @Override
+            public WriteResult write(RecordSet recordSet) throws IOException {
+                Record record;
+                while ((record = recordSet.next()) != null)
+                    write(record);
+                return WriteResult.of(count, Collections.emptyMap());
+            }
+
+            @Override
+            public void beginRecordSet() {
+                count = 0;
+            }
+
+            @Override
+            public WriteResult finishRecordSet() {
+                return WriteResult.of(count, Collections.emptyMap());
+            }
+
+            @Override
+            public WriteResult write(Record record) throws IOException {
+                records.add(record);
+                count++;
+                List<String> values = new ArrayList<>();
+                for (String field : schema.getFieldNames())
+                    values.add(String.valueOf(record.getValue(field)));
+                out.write((String.join(",", values) + "\n").getBytes(StandardCharsets.UTF_8));
+                return WriteResult.of(1, Collections.emptyMap());
+            }
+
+            @Override
+            public String getMimeType() {
+                return "text/plain";
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjLogs;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjTrajectorys;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjWellbores;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjWells;
+import org.apache.nifi.controller.AbstractControllerService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A WITSML service that answers log data queries from canned responses, for running processors
+ * without a server. Everything else answers with nothing.
+ */
+public class MockWitsmlService extends AbstractControllerService implements IWitsmlServiceApi {
+
+    /**
+     * The canned answer to a log data query, null to fail it.
+     */
+    public static class LogResponse {
+        final LogDataHeader header;
+        final List<String> rows;
+        final long queryMillis;
+
+        public LogResponse(LogDataHeader header, List<String> rows) {
+            this(header, rows, 0);
+        }
+
+        /**
+         * @param queryMillis how long the server is reported to have taken to answer
+         */
+        public LogResponse(LogDataHeader header, List<String> rows, long queryMillis) {
+            this.header = header;
+            this.rows = rows;
+            this.queryMillis = queryMillis;
+        }
+    }
+
+    private final List<LogDataRequest> requests = new ArrayList<>();
+    private Function<LogDataRequest, LogResponse> responses = request -> null;
+    private LogMetadataInfo logMetadata;
+
+    public static LogDataHeader header(String indexType, String indexCurve, Boolean objectGrowing, String... mnemonics) {
+        LogDataHeader header = new LogDataHeader();
+        header.setIndexType(indexType);
+        header.setIndexCurve(indexCurve);
+        header.setObjectGrowing(objectGrowing);
+        header.setMnemonics(mnemonics);
+        return header;
+    }
+
+    public static LogDataHeader.Curve curve(String mnemonic, String typeLogData, String nullValue) {
+        LogDataHeader.Curve curve = new LogDataHeader.Curve();
+        curve.setMnemonic(mnemonic);
+        curve.setTypeLogData(typeLogData);
+        curve.setNullValue(nullValue);
+        return curve;
+    }
+
+    public void setLogResponses(Function<LogDataRequest, LogResponse> responses) {
+        this.responses = responses;
+    }
+
+    public void setLogMetadata(LogMetadataInfo logMetadata) {
+        this.logMetadata = logMetadata;
+    }
+
+    /**
+     * @return the log data requests the service was asked for, in order
+     */
+    public List<LogDataRequest> getRequests() {
+        return requests;
+    }
+
+    @Override
+    public LogDataHeader streamLogData(LogDataRequest request, String timeZone, ILogDataHandler handler) {
+        requests.add(request);
+        LogResponse response = responses.apply(request);
+        if (response == null)
+            return null;
+        handler.onHeader(response.header);
+        for (String row : response.rows)
+            handler.onRow(row);
+        return response.header;
+    }
+
+    @Override
+    public void fetchLogDataBatch(List<LogDataRequest> requests, ILogDataBatchHandler handler) {
+        for (LogDataRequest request : requests) {
+            LogResponse response = responses.apply(request);
+            this.requests.add(request);
+            if (response == null) {
+                handler.onComplete(request, null, 0);
+                continue;
+            }
+            ILogDataHandler rows = handler.onResponse(request);
+            rows.onHeader(response.header);
+            for (String row : response.rows)
+                rows.onRow(row);
+            handler.onComplete(request, response.header, response.queryMillis);
+        }
+    }
+
+    @Override
+    public LogDataHeader streamLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime,
+                                       String endTime, String endDepth, String timeZone, ILogDataHandler handler) {
+        return streamLogData(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth),
+                timeZone, handler);
+    }
+
+    @Override
+    public LogMetadataInfo getLogMetaData(String wellId, String wellboreId, String logId) {
+        return logMetadata;
+    }
+
+    @Override
+    public void prefetchLogData(LogDataRequest request) {
+    }
+
+    @Override
+    public Object getObject(String wellId, String wellboreId, String object) {
+        return null;
+    }
+
+    @Override
+    public ObjLogs getLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime,
+                              String endTime, String endDepth, String timeZone) {
+        return null;
+    }
+
+    @Override
+    public LogDataBlock getLogDataBlock(String wellId, String wellboreId, String logId, String startDepth, String startTime,
+                                        String endTime, String endDepth, String timeZone) {
+        return null;
+    }
+
+    @Override
+    public LogDataBlock getLogDataBlock(LogDataRequest request, String timeZone) {
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        if (streamLogData(request, timeZone, builder) == null)
+            return null;
+        return builder.build();
+    }
+
+    @Override
+    public ObjTrajectorys getTrajectoryData(String wellId, String wellboreId, String trajectoryId, String startDepth) {
+        return null;
+    }
+
+    @Override
+    public List<WitsmlObjectId> getAvailableObjects(String uri, List<String> objectTypes, String wellFilter) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public ObjWells getWell(String wellId, String status) {
+        return null;
+    }
+
+    @Override
+    public String getUrl() {
+        return "mock";
+    }
+
+    @Override
+    public com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells getWell1311(String wellId, String status) {
+        return null;
+    }
+
+    @Override
+    public ObjWellbores getWellbore(String wellId, String wellboreId) {
+        return null;
+    }
+
+    @Override
+    public com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores getWellbore1311(String wellId, String wellboreId) {
+        return null;
+    }
+}
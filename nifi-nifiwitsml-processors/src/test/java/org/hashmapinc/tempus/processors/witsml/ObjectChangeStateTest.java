@@ -0,0 +1,131 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectChangeStateTest {
+
+    private static final LocalDateTime CHANGED = LocalDateTime.of(2017, 6, 2, 10, 0);
+
+    private static String uri(int i) {
+        return "/Well(w1)/Wellbore(wb1)/log/Log " + i + "(log" + i + ")";
+    }
+
+    @Test
+    public void testDetectsNewAndChangedObjects() {
+        ObjectChangeState state = new ObjectChangeState();
+
+        assertTrue(state.isChanged(uri(1), CHANGED));
+        state.record(uri(1), CHANGED);
+        assertFalse(state.isChanged(uri(1), CHANGED));
+        assertTrue(state.isChanged(uri(1), CHANGED.plusSeconds(1)));
+        assertTrue(state.isChanged(uri(2), CHANGED));
+        state.record(uri(2), CHANGED);
+        assertEquals(2, state.size());
+    }
+
+    @Test
+    public void testOnlyRecordedObjectsAreKnown() {
+        ObjectChangeState state = new ObjectChangeState();
+
+        // An object whose flow file could not be written is still new the next time
+        assertTrue(state.isChanged(uri(1), CHANGED));
+        assertTrue(state.isChanged(uri(1), CHANGED));
+        assertEquals(0, state.size());
+    }
+
+    @Test
+    public void testForgetsObjectsNoLongerListed() {
+        ObjectChangeState previous = new ObjectChangeState();
+        previous.record(uri(1), CHANGED);
+        previous.record(uri(2), null);
+        previous.record(uri(3), CHANGED);
+
+        ObjectChangeState listed = new ObjectChangeState();
+        listed.carry(previous, uri(1), CHANGED);
+        listed.carry(previous, uri(2), null);
+        listed.carry(previous, uri(4), CHANGED);
+        assertEquals(2, listed.size());
+        assertFalse(listed.isChanged(uri(1), CHANGED));
+        assertFalse(listed.isChanged(uri(2), null));
+        assertTrue(listed.isChanged(uri(3), CHANGED));
+    }
+
+    @Test
+    public void testObjectsWithoutChangeTimeEmittedOnce() {
+        ObjectChangeState state = new ObjectChangeState();
+
+        assertTrue(state.isChanged(uri(1), null));
+        state.record(uri(1), null);
+        assertFalse(state.isChanged(uri(1), null));
+        assertTrue(state.isChanged(uri(1), CHANGED));
+        state.record(uri(1), CHANGED);
+        assertFalse(state.isChanged(uri(1), CHANGED));
+    }
+
+    @Test
+    public void testRoundTrips() throws IOException {
+        ObjectChangeState state = new ObjectChangeState();
+        for (int i = 0; i < 1000; i++) {
+            state.record(uri(i), i % 10 == 0 ? null : CHANGED.plusMinutes(i));
+        }
+
+        ObjectChangeState decoded = ObjectChangeState.decode(state.encode());
+        assertEquals(1000, decoded.size());
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(decoded.isChanged(uri(i), i % 10 == 0 ? null : CHANGED.plusMinutes(i)));
+        }
+        assertTrue(decoded.isChanged(uri(5), CHANGED));
+        assertTrue(decoded.isChanged(uri(1000), CHANGED));
+    }
+
+    @Test
+    public void testStaysCompact() throws IOException {
+        ObjectChangeState state = new ObjectChangeState();
+        for (int i = 0; i < 10000; i++) {
+            state.record(uri(i), CHANGED.plusSeconds(i * 7919L));
+        }
+        String encoded = state.encode();
+        assertTrue("encoded length " + encoded.length(), encoded.length() < 4 * 10000);
+        ObjectChangeState decoded = ObjectChangeState.decode(encoded);
+        assertEquals(10000, decoded.size());
+        assertFalse(decoded.isChanged(uri(9999), CHANGED.plusSeconds(9999 * 7919L)));
+    }
+
+    @Test
+    public void testQuarterMillionObjectsFitClusterState() throws IOException {
+        ObjectChangeState state = new ObjectChangeState();
+        for (int i = 0; i < 250000; i++) {
+            state.record(uri(i), CHANGED);
+        }
+        String encoded = state.encode();
+        assertTrue("encoded length " + encoded.length(), encoded.length() < ListObjects.MAX_CHANGE_STATE_CHARS);
+    }
+
+    @Test
+    public void testEmptyState() throws IOException {
+        assertEquals(0, ObjectChangeState.decode(null).size());
+        assertEquals(0, ObjectChangeState.decode(new ObjectChangeState().encode()).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsCorruptState() throws IOException {
+        ObjectChangeState.decode("not base64!");
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedState() throws IOException {
+        ObjectChangeState state = new ObjectChangeState();
+        for (int i = 0; i < 100; i++) {
+            state.record(uri(i), CHANGED);
+        }
+        String encoded = state.encode();
+        ObjectChangeState.decode(encoded.substring(0, encoded.length() / 2 / 4 * 4));
+    }
+}
@@ -0,0 +1,92 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.util.MockComponentLog;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectFetchesTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final MockComponentLog logger = new MockComponentLog("test", this);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDeliversInCompletionOrderOnCaller() throws InterruptedException {
+        CountDownLatch tubularDone = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        List<String> delivered = new ArrayList<>();
+
+        ObjectFetches.run(executor, Arrays.asList("BHARUN", "TUBULAR", "MUDLOG"), object -> {
+            // BHARUN is only answered once TUBULAR has been handed back
+            if (object.equals("BHARUN"))
+                assertTrue(tubularDone.await(10, TimeUnit.SECONDS));
+            if (object.equals("MUDLOG"))
+                return null;
+            return object.toLowerCase();
+        }, (object, data) -> {
+            assertTrue(Thread.currentThread() == caller);
+            delivered.add(object);
+            if (object.equals("TUBULAR"))
+                tubularDone.countDown();
+        }, logger);
+
+        assertEquals(Arrays.asList("TUBULAR", "BHARUN"), delivered);
+    }
+
+    @Test
+    public void testFetchesConcurrently() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(3);
+        List<String> delivered = new ArrayList<>();
+
+        ObjectFetches.run(executor, Arrays.asList("RIG", "RISK", "TARGET"), object -> {
+            // Every object has to be requested before any of them can come back
+            started.countDown();
+            started.await();
+            return object;
+        }, (object, data) -> delivered.add(object), logger);
+
+        assertEquals(3, delivered.size());
+    }
+
+    @Test
+    public void testFailedObjectIsLeftOut() throws InterruptedException {
+        List<String> delivered = new ArrayList<>();
+
+        ObjectFetches.run(executor, Arrays.asList("RIG", "RISK"), object -> {
+            if (object.equals("RISK"))
+                throw new Exception("server error");
+            return object;
+        }, (object, data) -> delivered.add(object), logger);
+
+        assertEquals(Arrays.asList("RIG"), delivered);
+        assertEquals(1, logger.getErrorMessages().size());
+    }
+
+    @Test
+    public void testRunsOnCallerWithoutExecutor() throws InterruptedException {
+        Thread caller = Thread.currentThread();
+        List<String> delivered = new ArrayList<>();
+
+        ObjectFetches.run(null, Arrays.asList("RIG", "RISK"), object -> {
+            assertTrue(Thread.currentThread() == caller);
+            return object;
+        }, (object, data) -> delivered.add(object), logger);
+
+        assertEquals(Arrays.asList("RIG", "RISK"), delivered);
+    }
+}
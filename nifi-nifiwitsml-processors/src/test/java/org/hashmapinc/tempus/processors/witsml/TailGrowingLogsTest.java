@@ -0,0 +1,125 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TailGrowingLogsTest {
+
+    private TestRunner testRunner;
+    private MockWitsmlService service;
+
+    @Before
+    public void init() throws InitializationException {
+        testRunner = TestRunners.newTestRunner(TailGrowingLogs.class);
+        service = new MockWitsmlService();
+        testRunner.addControllerService("witsml", service);
+        testRunner.enableControllerService(service);
+        testRunner.setProperty(TailGrowingLogs.WITSML_SERVICE, "witsml");
+    }
+
+    private void addLog(Map<String, String> start) {
+        Map<String, String> attributes = new HashMap<>(start);
+        attributes.put("wellUid", "w1");
+        attributes.put("wellboreUid", "wb1");
+        attributes.put("uid", "log1");
+        testRunner.enqueue(new byte[0], attributes);
+    }
+
+    @Test
+    public void testPollsWindowsOfTheLog() {
+        service.setLogResponses(request -> new MockWitsmlService.LogResponse(
+                MockWitsmlService.header("date time", "TIME", true, "TIME", "GR"),
+                Arrays.asList("2017-06-02T10:00:00Z,1.5", "2017-06-02T10:00:10Z,")));
+        addLog(Collections.singletonMap("next.query.time", "2017-06-02T10:00:00Z"));
+        testRunner.run();
+
+        LogDataRequest request = service.getRequests().get(0);
+        assertEquals("2017-06-02T10:00:00Z", request.getStartTime());
+        assertEquals("2017-06-02T11:00:00Z", request.getEndTime());
+
+        testRunner.assertTransferCount(TailGrowingLogs.ORIGINAL, 1);
+        testRunner.assertTransferCount(TailGrowingLogs.TIME_INDEXED, 1);
+        MockFlowFile rows = testRunner.getFlowFilesForRelationship(TailGrowingLogs.TIME_INDEXED).get(0);
+        rows.assertAttributeEquals("record.count", "2");
+        rows.assertContentEquals("{\"TIME\":\"2017-06-02T10:00:00Z\",\"GR\":\"1.5\"}\n{\"TIME\":\"2017-06-02T10:00:10Z\"}");
+    }
+
+    @Test
+    public void testAppendsLargePollsInChunks() {
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < 40000; i++)
+            data.add(i + ".0,value of row " + i);
+        service.setLogResponses(request -> new MockWitsmlService.LogResponse(
+                MockWitsmlService.header("measured depth", "DEPTH", true, "DEPTH", "COMMENT"), data));
+        addLog(Collections.singletonMap("startDepth", "0"));
+        testRunner.setProperty(TailGrowingLogs.START_DEPTH, "${startDepth}");
+        testRunner.run();
+
+        assertEquals("100.0", service.getRequests().get(0).getEndDepth());
+        testRunner.assertTransferCount(TailGrowingLogs.DEPTH_INDEXED, 1);
+        MockFlowFile rows = testRunner.getFlowFilesForRelationship(TailGrowingLogs.DEPTH_INDEXED).get(0);
+        rows.assertAttributeEquals("record.count", "40000");
+        String content = new String(rows.toByteArray());
+        assertTrue(content.startsWith("{\"DEPTH\":\"0.0\",\"COMMENT\":\"value of row 0\"}\n"));
+        assertTrue(content.endsWith("\n{\"DEPTH\":\"39999.0\",\"COMMENT\":\"value of row 39999\"}"));
+    }
+
+    @Test
+    public void testStartsLogsWithoutStartFromTheirMetadata() {
+        LogMetadataInfo metadata = new LogMetadataInfo();
+        metadata.metadata = "{\"log\":[{\"indexType\":\"MEASURED_DEPTH\",\"startIndex\":{\"uom\":\"m\",\"value\":1250.5}}]}";
+        service.setLogMetadata(metadata);
+        service.setLogResponses(request -> new MockWitsmlService.LogResponse(
+                MockWitsmlService.header("measured depth", "DEPTH", true, "DEPTH", "GR"), Collections.emptyList()));
+        addLog(Collections.emptyMap());
+        testRunner.run();
+
+        LogDataRequest request = service.getRequests().get(0);
+        assertEquals("1250.5", request.getStartDepth());
+        assertEquals("1350.5", request.getEndDepth());
+        testRunner.assertTransferCount(TailGrowingLogs.DEPTH_INDEXED, 0);
+    }
+
+    @Test
+    public void testFollowsLogThatStoppedGrowingToItsEnd() {
+        LogMetadataInfo metadata = new LogMetadataInfo();
+        metadata.metadata = "{\"log\":[{\"indexType\":\"DATE_TIME\",\"startDateTimeIndex\":\"2017-06-02T10:00:00Z\"," +
+                "\"endDateTimeIndex\":\"2017-06-02T12:30:00Z\"}]}";
+        service.setLogMetadata(metadata);
+        // One row half an hour into each window, so every window stays an hour long
+        service.setLogResponses(request -> {
+            String row = ZonedDateTime.parse(request.getStartTime()).plusMinutes(30)
+                    .format(DateTimeFormatter.ofPattern(WitsmlConstants.TIMEZONE_FORMAT));
+            LogDataHeader header = MockWitsmlService.header("date time", "TIME", false, "TIME", "GR");
+            header.setEndDateTimeIndex(row);
+            return new MockWitsmlService.LogResponse(header, Collections.singletonList(row + ",1.5"));
+        });
+        testRunner.setProperty(TailGrowingLogs.TARGET_POINTS, "2");
+        testRunner.setProperty(TailGrowingLogs.POLL_INTERVAL, "0 sec");
+        addLog(Collections.singletonMap("next.query.time", "2017-06-02T10:00:00Z"));
+        testRunner.run(6);
+
+        List<String> windowEnds = new ArrayList<>();
+        for (LogDataRequest request : service.getRequests())
+            windowEnds.add(request.getEndTime());
+        assertEquals(Arrays.asList("2017-06-02T11:00:00Z", "2017-06-02T11:30:00Z", "2017-06-02T12:00:00Z",
+                "2017-06-02T12:30:00Z"), windowEnds);
+        testRunner.assertTransferCount(TailGrowingLogs.TIME_INDEXED, 4);
+    }
+}
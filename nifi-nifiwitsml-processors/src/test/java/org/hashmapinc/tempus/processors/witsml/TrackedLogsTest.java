@@ -0,0 +1,114 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TrackedLogsTest {
+
+    @Test
+    public void testTracksEachLogOnce() {
+        TrackedLogs tracked = new TrackedLogs();
+        assertTrue(tracked.track("w1", "wb1", "log1", "2017-06-02T10:00:00Z", null));
+        TrackedLogs.TrackedLog log = tracked.get("w1", "wb1", "log1");
+        tracked.advance(log, "2017-06-02T11:00:00Z", null, "1496401200000000");
+
+        // Adding the log again does not move it back to where it was first added from
+        assertFalse(tracked.track("w1", "wb1", "log1", "2017-06-02T10:00:00Z", null));
+        assertEquals("2017-06-02T11:00:00Z", tracked.get("w1", "wb1", "log1").startTime);
+        assertEquals(1, tracked.size());
+    }
+
+    @Test
+    public void testPollsDueLogsLongestWaitingFirst() {
+        TrackedLogs tracked = new TrackedLogs();
+        tracked.track("w1", "wb1", "log1", null, null);
+        tracked.track("w1", "wb1", "log2", null, null);
+        tracked.track("w1", "wb1", "log3", null, null);
+        tracked.polled(tracked.get("w1", "wb1", "log1"), 1000, true, 30000, 300000);
+        tracked.polled(tracked.get("w1", "wb1", "log2"), 0, true, 30000, 300000);
+
+        List<TrackedLogs.TrackedLog> due = tracked.due(0, 10);
+        assertEquals(1, due.size());
+        assertEquals("log3", due.get(0).logId);
+
+        due = tracked.due(31000, 2);
+        assertEquals(2, due.size());
+        assertEquals("log3", due.get(0).logId);
+        assertEquals("log2", due.get(1).logId);
+    }
+
+    @Test
+    public void testBacksOffIdleLogs() {
+        TrackedLogs tracked = new TrackedLogs();
+        tracked.track("w1", "wb1", "log1", null, null);
+        TrackedLogs.TrackedLog log = tracked.get("w1", "wb1", "log1");
+
+        tracked.polled(log, 0, false, 30000, 300000);
+        assertEquals(60000, log.nextPoll);
+        tracked.polled(log, 0, false, 30000, 300000);
+        assertEquals(120000, log.nextPoll);
+        for (int i = 0; i < 10; i++)
+            tracked.polled(log, 0, false, 30000, 300000);
+        assertEquals(300000, log.nextPoll);
+        tracked.polled(log, 0, true, 30000, 300000);
+        assertEquals(30000, log.nextPoll);
+    }
+
+    @Test
+    public void testOnlyChangesWhenCursorsMove() {
+        TrackedLogs tracked = new TrackedLogs();
+        tracked.track("w1", "wb1", "log1", null, "100.0");
+        tracked.toState();
+        assertFalse(tracked.isChanged());
+
+        TrackedLogs.TrackedLog log = tracked.get("w1", "wb1", "log1");
+        tracked.polled(log, 0, false, 30000, 300000);
+        tracked.advance(log, null, "100.0", null);
+        assertFalse(tracked.isChanged());
+
+        tracked.advance(log, null, "150.5", "150.5");
+        assertTrue(tracked.isChanged());
+    }
+
+    @Test
+    public void testRoundTripsThroughState() {
+        TrackedLogs tracked = new TrackedLogs();
+        tracked.track("w,1", "wb/1", "log 1", "2017-06-02T10:00:00-05:00", null);
+        tracked.track("w1", "wb1", "log2", null, "100.0");
+        tracked.advance(tracked.get("w1", "wb1", "log2"), null, "150.5", "150.5");
+
+        Map<String, String> state = tracked.toState();
+        state.put("log.broken", "w1,wb1");
+        TrackedLogs read = TrackedLogs.fromState(state);
+
+        assertEquals(2, read.size());
+        TrackedLogs.TrackedLog first = read.get("w,1", "wb/1", "log 1");
+        assertEquals("2017-06-02T10:00:00-05:00", first.startTime);
+        assertNull(first.startDepth);
+        assertNull(first.watermark);
+        TrackedLogs.TrackedLog second = read.get("w1", "wb1", "log2");
+        assertEquals("150.5", second.startDepth);
+        assertEquals("150.5", second.watermark);
+        assertEquals(2, read.due(0, 10).size());
+        assertFalse(read.isChanged());
+    }
+
+    @Test
+    public void testUntracksLogs() {
+        TrackedLogs tracked = new TrackedLogs();
+        tracked.track("w1", "wb1", "log1", null, null);
+        tracked.toState();
+
+        tracked.untrack(tracked.get("w1", "wb1", "log1"));
+        assertEquals(0, tracked.size());
+        assertTrue(tracked.isChanged());
+        assertTrue(tracked.toState().isEmpty());
+    }
+}
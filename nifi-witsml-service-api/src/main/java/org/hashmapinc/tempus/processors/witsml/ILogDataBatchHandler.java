@@ -0,0 +1,23 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+/**
+ * Receives the responses to a batch of log data requests. The requests are queried in parallel, but
+ * every callback is made on the thread that submitted the batch, one response at a time in the order
+ * the responses arrive, so the handler does not need to be thread safe.
+ */
+public interface ILogDataBatchHandler {
+
+    /**
+     * Called when the response to a request has arrived, before it is parsed.
+     * @return the handler the response is parsed into
+     */
+    ILogDataHandler onResponse(LogDataRequest request);
+
+    /**
+     * Called once for every request in the batch, after its response has been parsed.
+     * @param header the header of the log, or null if the request failed
+     * @param queryMillis how long the server took to answer this request, not counting the time it
+     * waited behind the other requests of the batch
+     */
+    void onComplete(LogDataRequest request, LogDataHeader header, long queryMillis);
+}
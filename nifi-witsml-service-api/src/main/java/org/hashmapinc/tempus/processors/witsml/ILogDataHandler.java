@@ -0,0 +1,11 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+/**
+ * Receives a log data response as it is parsed. The header is always delivered once, before the
+ * first row (or at the end of the log if the response has no rows), and each &lt;data&gt; row is
+ * handed over individually so the full response never has to be held as an object tree.
+ */
+public interface ILogDataHandler {
+    void onHeader(LogDataHeader header);
+    void onRow(String row);
+}
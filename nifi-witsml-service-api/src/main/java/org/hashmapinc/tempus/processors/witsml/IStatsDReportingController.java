@@ -9,4 +9,7 @@ public interface IStatsDReportingController extends ControllerService{
     void recordPercentToDone(int recordPercentToDone);
     void recordLastTimeProcessed(long lastTimeProcessed);
     void incrementQueryCounter();
+    void recordCacheHit(String cacheName);
+    void recordCacheMiss(String cacheName);
+    void recordCacheEviction(String cacheName);
 }
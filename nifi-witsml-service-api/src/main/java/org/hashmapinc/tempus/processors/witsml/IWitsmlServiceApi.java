@@ -21,6 +21,28 @@ import java.util.List;
 public interface IWitsmlServiceApi extends ControllerService {
     Object getObject(String wellId, String wellboreId, String object);
     ObjLogs getLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone);
+    LogDataHeader streamLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone, ILogDataHandler handler);
+    LogDataBlock getLogDataBlock(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone);
+
+    /**
+     * Streams the window described by the request, limited to the curves it selects. The index curve
+     * is always included.
+     */
+    LogDataHeader streamLogData(LogDataRequest request, String timeZone, ILogDataHandler handler);
+    LogDataBlock getLogDataBlock(LogDataRequest request, String timeZone);
+
+    /**
+     * Asks the service to query the given window in the background, so that a later request for the
+     * same window can be answered without waiting on the server. Services are free to ignore this.
+     */
+    void prefetchLogData(LogDataRequest request);
+
+    /**
+     * Queries a batch of log data windows in parallel, bounded by the service's concurrency limit,
+     * handing the responses over on the calling thread as they arrive.
+     */
+    void fetchLogDataBatch(List<LogDataRequest> requests, ILogDataBatchHandler handler);
+
     ObjTrajectorys getTrajectoryData(String wellId, String wellboreId, String trajectoryId, String startDepth);
     List<WitsmlObjectId> getAvailableObjects(String uri, List<String> objectTypes, String wellFilter);
     ObjWells getWell(String wellId, String status);
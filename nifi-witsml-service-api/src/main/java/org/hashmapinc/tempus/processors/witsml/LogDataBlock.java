@@ -0,0 +1,327 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnar form of a log response. The index column is held as a long[] of epoch milliseconds for
+ * time logs or a double[] for depth logs, and every other curve as a double[] (or a String[] for
+ * non numeric curves) with a bitmap marking the values that were empty or equal to the curve's
+ * nullValue. Values are only ever converted once, when the row is read.
+ */
+public class LogDataBlock {
+
+    private final LogDataHeader header;
+    private final int indexColumn;
+    private final int rowCount;
+    private final long[] timeIndex;
+    private final double[] depthIndex;
+    private final String[] mnemonics;
+    private final double[][] numericValues;
+    private final String[][] textValues;
+    private final long[][] nullBits;
+
+    private LogDataBlock(Builder builder) {
+        header = builder.header;
+        indexColumn = builder.indexColumn;
+        rowCount = builder.rowCount;
+        timeIndex = builder.timeIndex == null ? null : Arrays.copyOf(builder.timeIndex, rowCount);
+        depthIndex = builder.depthIndex == null ? null : Arrays.copyOf(builder.depthIndex, rowCount);
+        mnemonics = builder.curveMnemonics;
+        int curveCount = mnemonics.length;
+        numericValues = new double[curveCount][];
+        textValues = new String[curveCount][];
+        nullBits = new long[curveCount][];
+        for (int i = 0; i < curveCount; i++) {
+            if (builder.textValues[i] != null)
+                textValues[i] = Arrays.copyOf(builder.textValues[i], rowCount);
+            else
+                numericValues[i] = Arrays.copyOf(builder.numericValues[i], rowCount);
+            nullBits[i] = Arrays.copyOf(builder.nullBits[i], (rowCount + 63) >>> 6);
+        }
+    }
+
+    public LogDataHeader getHeader(){
+        return header;
+    }
+
+    public int getRowCount(){
+        return rowCount;
+    }
+
+    public boolean isTimeIndexed(){
+        return timeIndex != null;
+    }
+
+    /**
+     * The mnemonic of the index column, the header's index curve or the first column if the header
+     * does not name one.
+     */
+    public String getIndexMnemonic(){
+        String[] all = header.getMnemonics();
+        return all == null || all.length == 0 ? null : all[indexColumn];
+    }
+
+    /**
+     * The column of the index curve in the rows of a log, 0 if the header does not name an index
+     * curve or the curve is not among its columns.
+     */
+    static int indexColumn(LogDataHeader header) {
+        String[] all = header.getMnemonics();
+        String indexCurve = header.getIndexCurve();
+        if (all == null || indexCurve == null)
+            return 0;
+        for (int i = 0; i < all.length; i++) {
+            if (indexCurve.equals(all[i]))
+                return i;
+        }
+        return 0;
+    }
+
+    /**
+     * The index of a time log in epoch milliseconds, Long.MIN_VALUE where the index could not be parsed.
+     */
+    public long[] getTimeIndex(){
+        return timeIndex;
+    }
+
+    /**
+     * The index of a depth log, NaN where the index could not be parsed.
+     */
+    public double[] getDepthIndex(){
+        return depthIndex;
+    }
+
+    /**
+     * The number of curves, not counting the index.
+     */
+    public int getCurveCount(){
+        return mnemonics.length;
+    }
+
+    public String getMnemonic(int curve){
+        return mnemonics[curve];
+    }
+
+    public boolean isNumeric(int curve){
+        return numericValues[curve] != null;
+    }
+
+    public boolean isNull(int curve, int row){
+        return (nullBits[curve][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * The values of a numeric curve, entries marked null are left at 0.
+     */
+    public double[] getValues(int curve){
+        return numericValues[curve];
+    }
+
+    public double getDouble(int curve, int row){
+        return numericValues[curve][row];
+    }
+
+    public String getString(int curve, int row){
+        if (isNull(curve, row))
+            return null;
+        if (textValues[curve] != null)
+            return textValues[curve][row];
+        return Double.toString(numericValues[curve][row]);
+    }
+
+    /**
+     * Builds a block from a streamed log response, pass it as the handler to
+     * {@link IWitsmlServiceApi#streamLogData}.
+     */
+    public static class Builder implements ILogDataHandler {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private LogDataHeader header;
+        private int indexColumn;
+        private int rowCount;
+        private long[] timeIndex;
+        private double[] depthIndex;
+        private String[] curveMnemonics;
+        private String[] nullValues;
+        private double[][] numericValues;
+        private String[][] textValues;
+        // the values as read of numeric curves without a declared type, until they turn out numeric or not
+        private String[][] rawValues;
+        private long[][] nullBits;
+        private int capacity;
+
+        @Override
+        public void onHeader(LogDataHeader header) {
+            this.header = header;
+            Map<String, LogDataHeader.Curve> curvesByMnemonic = new HashMap<>();
+            for (LogDataHeader.Curve curve : header.getCurves()) {
+                curvesByMnemonic.put(curve.getMnemonic(), curve);
+            }
+            String[] all = header.getMnemonics();
+            indexColumn = indexColumn(header);
+            int curveCount = Math.max(all.length - 1, 0);
+            curveMnemonics = new String[curveCount];
+            nullValues = new String[curveCount];
+            numericValues = new double[curveCount][];
+            textValues = new String[curveCount][];
+            rawValues = new String[curveCount][];
+            nullBits = new long[curveCount][];
+            capacity = INITIAL_CAPACITY;
+            for (int i = 0; i < curveCount; i++) {
+                curveMnemonics[i] = all[i < indexColumn ? i : i + 1];
+                LogDataHeader.Curve curve = curvesByMnemonic.get(curveMnemonics[i]);
+                nullValues[i] = curve == null ? null : curve.getNullValue();
+                String type = curve == null ? null : curve.getTypeLogData();
+                if (isText(type)) {
+                    textValues[i] = new String[capacity];
+                } else {
+                    numericValues[i] = new double[capacity];
+                    if (type == null)
+                        rawValues[i] = new String[capacity];
+                }
+                nullBits[i] = new long[capacity >>> 6];
+            }
+            if (header.isTimeIndexed())
+                timeIndex = new long[capacity];
+            else
+                depthIndex = new double[capacity];
+        }
+
+        @Override
+        public void onRow(String row) {
+            if (rowCount == capacity)
+                grow();
+            int row0 = rowCount++;
+            int length = row.length();
+            int start = 0;
+            for (int column = 0; column <= curveMnemonics.length; column++) {
+                String field = "";
+                if (start <= length) {
+                    while (start < length && row.charAt(start) == ' ')
+                        start++;
+                    int end;
+                    if (start < length && row.charAt(start) == '"') {
+                        // quoted values may contain commas
+                        int close = row.indexOf('"', start + 1);
+                        end = close < 0 ? -1 : row.indexOf(',', close);
+                    } else {
+                        end = row.indexOf(',', start);
+                    }
+                    if (end < 0)
+                        end = length;
+                    field = row.substring(start, end).trim();
+                    start = end + 1;
+                }
+                if (column == indexColumn)
+                    setIndex(row0, field);
+                else
+                    setValue(column < indexColumn ? column : column - 1, row0, field);
+            }
+        }
+
+        public LogDataBlock build() {
+            if (header == null)
+                return null;
+            rawValues = null;
+            return new LogDataBlock(this);
+        }
+
+        private void setIndex(int row, String field) {
+            if (timeIndex != null) {
+                try {
+                    timeIndex[row] = OffsetDateTime.parse(field).toInstant().toEpochMilli();
+                } catch (DateTimeParseException ex) {
+                    try {
+                        // no offset given, treat as UTC
+                        timeIndex[row] = LocalDateTime.parse(field).toInstant(ZoneOffset.UTC).toEpochMilli();
+                    } catch (DateTimeParseException ex2) {
+                        timeIndex[row] = Long.MIN_VALUE;
+                    }
+                }
+            } else {
+                try {
+                    depthIndex[row] = Double.parseDouble(field);
+                } catch (NumberFormatException ex) {
+                    depthIndex[row] = Double.NaN;
+                }
+            }
+        }
+
+        private void setValue(int curve, int row, String field) {
+            if (field.isEmpty() || field.equals(nullValues[curve])) {
+                nullBits[curve][row >>> 6] |= 1L << row;
+                return;
+            }
+            if (textValues[curve] == null) {
+                try {
+                    numericValues[curve][row] = Double.parseDouble(field);
+                    if (rawValues[curve] != null)
+                        rawValues[curve][row] = field;
+                    return;
+                } catch (NumberFormatException ex) {
+                    toText(curve, row);
+                }
+            }
+            if (field.length() > 1 && field.charAt(0) == '"' && field.charAt(field.length() - 1) == '"')
+                field = field.substring(1, field.length() - 1);
+            textValues[curve][row] = field;
+        }
+
+        // A curve turned out not to be numeric, keep what was read so far as text. Curves without a
+        // declared type keep the values as they were read, a curve declared numeric only has its numbers.
+        private void toText(int curve, int rows) {
+            String[] text = rawValues[curve];
+            if (text == null) {
+                double[] numbers = numericValues[curve];
+                text = new String[numbers.length];
+                for (int i = 0; i < rows; i++) {
+                    if ((nullBits[curve][i >>> 6] & (1L << i)) == 0)
+                        text[i] = Double.toString(numbers[i]);
+                }
+            }
+            numericValues[curve] = null;
+            rawValues[curve] = null;
+            textValues[curve] = text;
+        }
+
+        private void grow() {
+            capacity = capacity * 2;
+            if (timeIndex != null)
+                timeIndex = Arrays.copyOf(timeIndex, capacity);
+            else
+                depthIndex = Arrays.copyOf(depthIndex, capacity);
+            for (int i = 0; i < curveMnemonics.length; i++) {
+                if (textValues[i] != null)
+                    textValues[i] = Arrays.copyOf(textValues[i], capacity);
+                else
+                    numericValues[i] = Arrays.copyOf(numericValues[i], capacity);
+                if (rawValues[i] != null)
+                    rawValues[i] = Arrays.copyOf(rawValues[i], capacity);
+                nullBits[i] = Arrays.copyOf(nullBits[i], capacity >>> 6);
+            }
+        }
+
+        private static boolean isText(String typeLogData) {
+            if (typeLogData == null)
+                return false;
+            switch (typeLogData.toLowerCase()) {
+                case "double":
+                case "float":
+                case "long":
+                case "int":
+                case "integer":
+                case "short":
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+}
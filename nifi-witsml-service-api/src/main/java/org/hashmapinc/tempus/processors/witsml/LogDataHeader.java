@@ -0,0 +1,223 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The non-data part of a log response: the identifying elements, the index range and the
+ * logCurveInfo entries in column order.
+ */
+public class LogDataHeader {
+
+    private String uidWell;
+    private String uidWellbore;
+    private String uid;
+    private String nameWell;
+    private String nameWellbore;
+    private String name;
+    private String indexType;
+    private String indexCurve;
+    private Boolean objectGrowing;
+    private Double startIndex;
+    private Double endIndex;
+    private String indexUnit;
+    private String startDateTimeIndex;
+    private String endDateTimeIndex;
+    private String lastChange;
+    private List<Curve> curves = new ArrayList<>();
+    private String[] mnemonics;
+
+    public String getUidWell(){
+        return uidWell;
+    }
+
+    public void setUidWell(String uidWell){
+        this.uidWell = uidWell;
+    }
+
+    public String getUidWellbore(){
+        return uidWellbore;
+    }
+
+    public void setUidWellbore(String uidWellbore){
+        this.uidWellbore = uidWellbore;
+    }
+
+    public String getUid(){
+        return uid;
+    }
+
+    public void setUid(String uid){
+        this.uid = uid;
+    }
+
+    public String getNameWell(){
+        return nameWell;
+    }
+
+    public void setNameWell(String nameWell){
+        this.nameWell = nameWell;
+    }
+
+    public String getNameWellbore(){
+        return nameWellbore;
+    }
+
+    public void setNameWellbore(String nameWellbore){
+        this.nameWellbore = nameWellbore;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public void setName(String name){
+        this.name = name;
+    }
+
+    public String getIndexType(){
+        return indexType;
+    }
+
+    public void setIndexType(String indexType){
+        this.indexType = indexType;
+    }
+
+    public String getIndexCurve(){
+        return indexCurve;
+    }
+
+    public void setIndexCurve(String indexCurve){
+        this.indexCurve = indexCurve;
+    }
+
+    public boolean isTimeIndexed(){
+        return indexType != null && indexType.toLowerCase().contains("time");
+    }
+
+    public Boolean isObjectGrowing(){
+        return objectGrowing;
+    }
+
+    public void setObjectGrowing(Boolean objectGrowing){
+        this.objectGrowing = objectGrowing;
+    }
+
+    public Double getStartIndex(){
+        return startIndex;
+    }
+
+    public void setStartIndex(Double startIndex){
+        this.startIndex = startIndex;
+    }
+
+    public Double getEndIndex(){
+        return endIndex;
+    }
+
+    public void setEndIndex(Double endIndex){
+        this.endIndex = endIndex;
+    }
+
+    /**
+     * The uom of startIndex and endIndex.
+     */
+    public String getIndexUnit(){
+        return indexUnit;
+    }
+
+    public void setIndexUnit(String indexUnit){
+        this.indexUnit = indexUnit;
+    }
+
+    public String getStartDateTimeIndex(){
+        return startDateTimeIndex;
+    }
+
+    public void setStartDateTimeIndex(String startDateTimeIndex){
+        this.startDateTimeIndex = startDateTimeIndex;
+    }
+
+    public String getEndDateTimeIndex(){
+        return endDateTimeIndex;
+    }
+
+    public void setEndDateTimeIndex(String endDateTimeIndex){
+        this.endDateTimeIndex = endDateTimeIndex;
+    }
+
+    /**
+     * The commonData/dTimLastChange of the log, when the query asked for it.
+     */
+    public String getLastChange(){
+        return lastChange;
+    }
+
+    public void setLastChange(String lastChange){
+        this.lastChange = lastChange;
+    }
+
+    public List<Curve> getCurves(){
+        return curves;
+    }
+
+    /**
+     * The mnemonics of the data columns in the order they appear in each row.
+     */
+    public String[] getMnemonics(){
+        return mnemonics;
+    }
+
+    public void setMnemonics(String[] mnemonics){
+        this.mnemonics = mnemonics;
+    }
+
+    public static class Curve {
+
+        private String mnemonic;
+        private String unit;
+        private String nullValue;
+        private String typeLogData;
+        private int columnIndex;
+
+        public String getMnemonic(){
+            return mnemonic;
+        }
+
+        public void setMnemonic(String mnemonic){
+            this.mnemonic = mnemonic;
+        }
+
+        public String getUnit(){
+            return unit;
+        }
+
+        public void setUnit(String unit){
+            this.unit = unit;
+        }
+
+        public String getNullValue(){
+            return nullValue;
+        }
+
+        public void setNullValue(String nullValue){
+            this.nullValue = nullValue;
+        }
+
+        public String getTypeLogData(){
+            return typeLogData;
+        }
+
+        public void setTypeLogData(String typeLogData){
+            this.typeLogData = typeLogData;
+        }
+
+        public int getColumnIndex(){
+            return columnIndex;
+        }
+
+        public void setColumnIndex(int columnIndex){
+            this.columnIndex = columnIndex;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The parameters of a single log data query. Two requests are equal when they would send the same
+ * query to the server, which is what lets a prefetched response be matched to the request that
+ * eventually asks for it.
+ */
+public class LogDataRequest {
+
+    private final String wellId;
+    private final String wellboreId;
+    private final String logId;
+    private final String startDepth;
+    private final String startTime;
+    private final String endTime;
+    private final String endDepth;
+    private final String mnemonics;
+
+    public LogDataRequest(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth) {
+        this(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth, null);
+    }
+
+    public LogDataRequest(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth,
+                          String mnemonics) {
+        this.wellId = wellId;
+        this.wellboreId = wellboreId;
+        this.logId = logId;
+        this.startDepth = startDepth == null ? "" : startDepth;
+        this.startTime = startTime == null ? "" : startTime;
+        this.endTime = endTime == null ? "" : endTime;
+        this.endDepth = endDepth == null ? "" : endDepth;
+        this.mnemonics = mnemonics == null ? "" : mnemonics.trim();
+    }
+
+    public String getWellId(){
+        return wellId;
+    }
+
+    public String getWellboreId(){
+        return wellboreId;
+    }
+
+    public String getLogId(){
+        return logId;
+    }
+
+    public String getStartDepth(){
+        return startDepth;
+    }
+
+    public String getStartTime(){
+        return startTime;
+    }
+
+    public String getEndTime(){
+        return endTime;
+    }
+
+    public String getEndDepth(){
+        return endDepth;
+    }
+
+    /**
+     * A comma separated list of regular expressions selecting the curves to query, each matched
+     * against the whole mnemonic, see {@link #splitMnemonics}. Empty when every curve is wanted.
+     */
+    public String getMnemonics(){
+        return mnemonics;
+    }
+
+    /**
+     * Splits a list of mnemonic expressions on the commas between them. Commas inside a {m,n}
+     * quantifier or a [...] character class, or escaped as \, belong to the expression, so
+     * something like GR[0-9]{1,3} is kept whole. Entries are trimmed and empty ones left out.
+     */
+    public static List<String> splitMnemonics(String mnemonics){
+        List<String> entries = new ArrayList<>();
+        if (mnemonics == null)
+            return entries;
+        int braces = 0;
+        boolean inClass = false;
+        int start = 0;
+        for (int i = 0; i < mnemonics.length(); i++) {
+            char c = mnemonics.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '{') {
+                braces++;
+            } else if (c == '}' && braces > 0) {
+                braces--;
+            } else if (c == ',' && braces == 0) {
+                addMnemonic(entries, mnemonics.substring(start, i));
+                start = i + 1;
+            }
+        }
+        addMnemonic(entries, mnemonics.substring(start));
+        return entries;
+    }
+
+    private static void addMnemonic(List<String> entries, String entry){
+        entry = entry.trim();
+        if (!entry.isEmpty())
+            entries.add(entry);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof LogDataRequest))
+            return false;
+        LogDataRequest that = (LogDataRequest) o;
+        return Objects.equals(wellId, that.wellId) &&
+                Objects.equals(wellboreId, that.wellboreId) &&
+                Objects.equals(logId, that.logId) &&
+                startDepth.equals(that.startDepth) &&
+                startTime.equals(that.startTime) &&
+                endTime.equals(that.endTime) &&
+                endDepth.equals(that.endDepth) &&
+                mnemonics.equals(that.mnemonics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth, mnemonics);
+    }
+
+    @Override
+    public String toString() {
+        return "/" + wellId + "/" + wellboreId + "/" + logId + " [" + startTime + startDepth + ", " + endTime + endDepth + "]" +
+                (mnemonics.isEmpty() ? "" : " {" + mnemonics + "}");
+    }
+}
@@ -1,32 +1,52 @@
 package org.hashmapinc.tempus.processors.witsml;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class WitsmlObjectId {
 
+    /**
+     * Writes the JSON for the object when it is needed, so a listing holds the typed WITSML objects
+     * rather than a serialized copy of each one.
+     */
+    public interface ObjectData {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
     private String name;
     private String id;
     private String type;
     private String uri;
-    private String objectData;
+    private ObjectData objectData;
     private LocalDateTime lastModified;
 
-    public WitsmlObjectId(String name, String id, String type, String parentUri, String objectData) {
+    public WitsmlObjectId(String name, String id, String type, String parentUri, ObjectData objectData) {
         this.name = name;
         this.id = id;
         this.type = type;
         this.uri =  parentUri + "/" + getName() + "(" + getId() + ")";
-        this.lastModified = lastModified;
         this.objectData = objectData;
     }
 
-    public WitsmlObjectId(String name, String id, String type, String parentUri, LocalDateTime lastModified, String objectData) {
+    public WitsmlObjectId(String name, String id, String type, String parentUri, LocalDateTime lastModified, ObjectData objectData) {
         this(name, id, type, parentUri, objectData);
         this.lastModified = lastModified;
     }
 
+    public WitsmlObjectId(String name, String id, String type, String parentUri, String objectData) {
+        this(name, id, type, parentUri, null, objectData);
+    }
+
+    public WitsmlObjectId(String name, String id, String type, String parentUri, LocalDateTime lastModified, String objectData) {
+        this(name, id, type, parentUri, lastModified, objectData == null ? (ObjectData) null :
+                out -> out.write(objectData.getBytes(StandardCharsets.UTF_8)));
+    }
+
     public String getName(){
         return name;
     }
@@ -35,7 +55,29 @@ public class WitsmlObjectId {
         return id;
     }
 
-    public String getData() {return objectData;}
+    /**
+     * Serializes the object and returns it as a string, use {@link #writeData(OutputStream)} to write
+     * it out without the copy.
+     */
+    public String getData() {
+        if (objectData == null)
+            return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            objectData.writeTo(out);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not serialize " + uri, ex);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serializes the object straight into the stream, the stream is left open.
+     */
+    public void writeData(OutputStream out) throws IOException {
+        if (objectData != null)
+            objectData.writeTo(out);
+    }
 
     public String getType(){
         return type;
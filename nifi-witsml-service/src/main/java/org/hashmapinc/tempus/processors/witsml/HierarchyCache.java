@@ -0,0 +1,215 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The wells of the server and the wellbores of each well as they were found by the last sweep. A
+ * level of the hierarchy is served from here until the refresh interval has passed, after which the
+ * service refreshes it. Between full sweeps a refresh only asks the server for the objects changed
+ * since the latest dTimLastChange seen in the level and merges them in; a full sweep, which also
+ * drops deleted objects, runs once the full sweep interval has passed. Objects whose dTimLastChange
+ * has not moved since the previous sweep keep the id built for them then, so only new and changed
+ * objects are serialized again.
+ */
+class HierarchyCache {
+
+    private static class Level {
+        final Map<String, WitsmlObjectId> byUid;
+        final long sweptAt;
+        final long fullySweptAt;
+        final String lastChange;
+        final long lastChangeMillis;
+
+        Level(Map<String, WitsmlObjectId> byUid, long sweptAt, long fullySweptAt, String lastChange, long lastChangeMillis) {
+            this.byUid = byUid;
+            this.sweptAt = sweptAt;
+            this.fullySweptAt = fullySweptAt;
+            this.lastChange = lastChange;
+            this.lastChangeMillis = lastChangeMillis;
+        }
+    }
+
+    private final long refreshMillis;
+    private final long fullSweepMillis;
+    private final ConcurrentMap<String, Level> levels = new ConcurrentHashMap<>();
+
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong described = new AtomicLong();
+
+    /**
+     * @param refreshMillis how long a sweep is served for, 0 sweeps on every request
+     */
+    HierarchyCache(long refreshMillis) {
+        this(refreshMillis, refreshMillis);
+    }
+
+    /**
+     * @param refreshMillis how long a sweep is served for, 0 sweeps on every request
+     * @param fullSweepMillis how long refreshes may only ask for changed objects before the level is
+     *                        swept in full again
+     */
+    HierarchyCache(long refreshMillis, long fullSweepMillis) {
+        this.refreshMillis = refreshMillis;
+        this.fullSweepMillis = fullSweepMillis;
+    }
+
+    static String wellsKey(String wellFilter) {
+        return "wells/" + (wellFilter == null ? "" : wellFilter);
+    }
+
+    static String wellboresKey(String wellId) {
+        return "wellbores/" + wellId;
+    }
+
+    static LocalDateTime toLocalDateTime(XMLGregorianCalendar calendar) {
+        if (calendar == null)
+            return null;
+        return calendar.toGregorianCalendar().toZonedDateTime().toLocalDateTime();
+    }
+
+    /**
+     * The ids found by the last sweep of the level, or null if it has not been swept within the
+     * refresh interval.
+     */
+    List<WitsmlObjectId> getFresh(String key) {
+        Level level = levels.get(key);
+        if (level == null || System.currentTimeMillis() - level.sweptAt >= refreshMillis)
+            return null;
+        return new ArrayList<>(level.byUid.values());
+    }
+
+    /**
+     * The latest dTimLastChange of the level, as the server wrote it, for a query of the objects
+     * changed since. Null if the level needs a full sweep: it was never swept, none of its objects
+     * carries a last change time or the full sweep interval has passed.
+     */
+    String changedSince(String key) {
+        Level level = levels.get(key);
+        if (level == null || level.lastChange == null || System.currentTimeMillis() - level.fullySweptAt >= fullSweepMillis)
+            return null;
+        return level.lastChange;
+    }
+
+    /**
+     * A full pass over a level, which replaces all of it.
+     */
+    Sweep sweep(String key) {
+        return new Sweep(key, levels.get(key), false);
+    }
+
+    /**
+     * A pass over the objects of a level changed since {@link #changedSince(String)}, which are
+     * merged into the objects found before.
+     */
+    Sweep update(String key) {
+        Level previous = levels.get(key);
+        return new Sweep(key, previous, previous != null);
+    }
+
+    void clear() {
+        levels.clear();
+    }
+
+    /**
+     * One pass over a level of the hierarchy. The objects the server returned are added in order,
+     * and the pass replaces the cached level when it is committed. An update starts from the objects
+     * of the level and replaces those it is given in place.
+     */
+    class Sweep {
+        private final String key;
+        private final Map<String, WitsmlObjectId> previous;
+        private final boolean update;
+        private final long startedAt = System.currentTimeMillis();
+        private final long fullySweptAt;
+        private final Map<String, WitsmlObjectId> byUid;
+        private String lastChange;
+        private long lastChangeMillis;
+
+        private Sweep(String key, Level previous, boolean update) {
+            this.key = key;
+            this.previous = previous == null ? null : previous.byUid;
+            this.update = update;
+            if (update) {
+                fullySweptAt = previous.fullySweptAt;
+                byUid = new LinkedHashMap<>(previous.byUid);
+                lastChange = previous.lastChange;
+                lastChangeMillis = previous.lastChangeMillis;
+            } else {
+                fullySweptAt = startedAt;
+                byUid = new LinkedHashMap<>();
+            }
+        }
+
+        /**
+         * Notes the last change time of an object the server returned, the latest of which the next
+         * update asks for changes since.
+         */
+        void changedAt(XMLGregorianCalendar calendar) {
+            if (calendar == null)
+                return;
+            long millis = calendar.toGregorianCalendar().getTimeInMillis();
+            if (lastChange == null || millis > lastChangeMillis) {
+                lastChange = calendar.toXMLFormat();
+                lastChangeMillis = millis;
+            }
+        }
+
+        /**
+         * The id built for the object by the previous sweep, or null if the object is new or has
+         * changed since and needs describing again. Objects without a last change time always do.
+         */
+        WitsmlObjectId unchanged(String uid, LocalDateTime lastChange) {
+            if (previous == null || lastChange == null)
+                return null;
+            WitsmlObjectId id = previous.get(uid);
+            if (id == null || !lastChange.equals(id.getLastModified()))
+                return null;
+            reused.incrementAndGet();
+            return id;
+        }
+
+        void add(WitsmlObjectId id) {
+            if (previous == null || previous.get(id.getId()) != id)
+                described.incrementAndGet();
+            byUid.put(id.getId(), id);
+        }
+
+        List<WitsmlObjectId> commit() {
+            (update ? updates : sweeps).incrementAndGet();
+            levels.put(key, new Level(byUid, startedAt, fullySweptAt, lastChange, lastChangeMillis));
+            return new ArrayList<>(byUid.values());
+        }
+    }
+
+    long getSweepCount() {
+        return sweeps.get();
+    }
+
+    long getUpdateCount() {
+        return updates.get();
+    }
+
+    long getReusedCount() {
+        return reused.get();
+    }
+
+    long getDescribedCount() {
+        return described.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hierarchy " + levels.size() + " levels, " + getSweepCount() + " sweeps, " + getUpdateCount() + " updates, " + getReusedCount() +
+                " objects reused, " + getDescribedCount() + " described";
+    }
+}
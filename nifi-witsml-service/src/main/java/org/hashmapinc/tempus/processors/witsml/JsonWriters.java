@@ -0,0 +1,72 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+import java.text.SimpleDateFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The JSON writers used to turn WITSML objects into flow file content. There is one mapper per
+ * inclusion rule, set up once with the Afterburner module and never changed afterwards, so the
+ * serializers it builds for each WITSML class are shared by every service and processor instead of
+ * being rebuilt for every object. Writers are immutable and safe to share between threads, the ones
+ * with a date format are built on first use and kept.
+ */
+public final class JsonWriters {
+
+    private static final ObjectMapper nonNullMapper = createMapper(JsonInclude.Include.NON_NULL);
+    private static final ObjectMapper nonAbsentMapper = createMapper(JsonInclude.Include.NON_ABSENT);
+
+    private static final ObjectWriter nonNull = nonNullMapper.writer();
+    private static final ConcurrentMap<String, ObjectWriter> nonNullForZone = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, ObjectWriter> nonAbsentForPattern = new ConcurrentHashMap<>();
+
+    private JsonWriters() {
+    }
+
+    private static ObjectMapper createMapper(JsonInclude.Include inclusion) {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new AfterburnerModule());
+        mapper.setSerializationInclusion(inclusion);
+        // Objects are written into flow file streams the session owns and closes itself
+        mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        return mapper;
+    }
+
+    /**
+     * Defers writing the object with {@link #nonNull()} until a listing's flow file content is written.
+     */
+    public static WitsmlObjectId.ObjectData objectData(Object value) {
+        return out -> nonNull.writeValue(out, value);
+    }
+
+    /**
+     * Leaves out null fields and writes dates as timestamps, used for object listings.
+     */
+    public static ObjectWriter nonNull() {
+        return nonNull;
+    }
+
+    /**
+     * Leaves out null fields and writes dates in the WITSML date time format for the time zone, used
+     * for log metadata.
+     */
+    public static ObjectWriter nonNull(String timeZone) {
+        return nonNullForZone.computeIfAbsent(timeZone,
+                zone -> nonNullMapper.writer(WitsmlConstants.getSimpleDateTimeFormat(zone)));
+    }
+
+    /**
+     * Leaves out null and absent fields and writes dates with the pattern in the JVM time zone, used
+     * for the objects the processors emit.
+     */
+    public static ObjectWriter nonAbsent(String datePattern) {
+        return nonAbsentForPattern.computeIfAbsent(datePattern,
+                pattern -> nonAbsentMapper.writer(new SimpleDateFormat(pattern)));
+    }
+}
@@ -0,0 +1,128 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.logging.ComponentLog;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Builds the logCurveInfo part of a log data query from the mnemonics a request selects. The curves
+ * of each log are read with a small logCurveInfo only query and kept for a few minutes, so the
+ * selection can be resolved against them without asking the server on every window.
+ */
+class LogCurveProjection {
+
+    interface LogQuery {
+        String execute(String query) throws Exception;
+    }
+
+    private static final long LOG_CURVES_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final QueryTemplate curveTemplate;
+    private final QueryTemplate curvesQueryTemplate;
+    private final String allCurvesQuery;
+    private final ComponentLog logger;
+    private final ConcurrentMap<String, LogCurves> logCurves = new ConcurrentHashMap<>();
+
+    /**
+     * @param curveTemplate a single logCurveInfo element with a %mnemonic% slot
+     * @param curvesQueryTemplate a query for the curves of the log identified by %uidWell%, %uidWellbore% and %uid%
+     */
+    LogCurveProjection(QueryTemplate curveTemplate, QueryTemplate curvesQueryTemplate, ComponentLog logger) {
+        this.curveTemplate = curveTemplate;
+        this.curvesQueryTemplate = curvesQueryTemplate;
+        this.allCurvesQuery = curveTemplate.bind().render();
+        this.logger = logger;
+    }
+
+    /**
+     * One logCurveInfo entry per selected curve, or a single empty entry asking for every curve.
+     */
+    String getLogCurveInfoQuery(LogDataRequest request, LogQuery logQuery) {
+        if (request.getMnemonics().isEmpty())
+            return allCurvesQuery;
+
+        LogCurves curves = getLogCurves(request.getWellId(), request.getWellboreId(), request.getLogId(), logQuery);
+        if (curves == null) {
+            logger.warn("Could not read the curves of log " + request.getLogId() + ", querying every curve");
+            return allCurvesQuery;
+        }
+
+        List<Pattern> patterns = new ArrayList<>();
+        for (String mnemonic : LogDataRequest.splitMnemonics(request.getMnemonics())) {
+            try {
+                patterns.add(Pattern.compile(mnemonic));
+            } catch (PatternSyntaxException ex) {
+                patterns.add(Pattern.compile(Pattern.quote(mnemonic)));
+            }
+        }
+
+        StringBuilder query = new StringBuilder();
+        for (String mnemonic : curves.mnemonics) {
+            boolean selected = mnemonic.equals(curves.indexCurve);
+            for (int i = 0; !selected && i < patterns.size(); i++) {
+                selected = patterns.get(i).matcher(mnemonic).matches();
+            }
+            if (selected)
+                query.append(curveTemplate.bind().set("mnemonic", mnemonic).render());
+        }
+        return query.toString();
+    }
+
+    void clear() {
+        logCurves.clear();
+    }
+
+    private LogCurves getLogCurves(String wellId, String wellboreId, String logId, LogQuery logQuery) {
+        String key = wellId + "/" + wellboreId + "/" + logId;
+        long now = System.currentTimeMillis();
+        LogCurves curves = logCurves.get(key);
+        if (curves != null && now - curves.fetched < LOG_CURVES_EXPIRY_MILLIS)
+            return curves;
+
+        String query = curvesQueryTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uid", logId)
+                .render();
+        LogDataHeader header;
+        try {
+            String result = logQuery.execute(query);
+            if (result == null || result.equals(""))
+                return null;
+            header = LogDataStreamReader.readHeader(new StringReader(result));
+        } catch (Exception e) {
+            logger.error("Error querying server for the curves of log " + logId + ": " + e.getMessage());
+            return null;
+        }
+        if (header == null)
+            return null;
+
+        // Servers that leave out the index curve put it in the first column
+        String[] mnemonics = header.getMnemonics();
+        String indexCurve = header.getIndexCurve();
+        if (indexCurve == null && mnemonics.length > 0)
+            indexCurve = mnemonics[0];
+        curves = new LogCurves(indexCurve, mnemonics, now);
+        logCurves.put(key, curves);
+        return curves;
+    }
+
+    private static class LogCurves {
+        final String indexCurve;
+        final String[] mnemonics;
+        final long fetched;
+
+        LogCurves(String indexCurve, String[] mnemonics, long fetched) {
+            this.indexCurve = indexCurve;
+            this.mnemonics = mnemonics;
+            this.fetched = fetched;
+        }
+    }
+}
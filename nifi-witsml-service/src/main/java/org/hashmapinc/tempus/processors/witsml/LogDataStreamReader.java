@@ -0,0 +1,232 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pull parser for WITSML log responses. Works on both 1.3.1.1 and 1.4.1.1 documents (elements are
+ * matched on their local name) and only ever holds the header and the current row, so the size of
+ * the response does not dictate the size of the heap needed to process it.
+ */
+public class LogDataStreamReader {
+
+    private static final XMLInputFactory inputFactory;
+
+    private static final ILogDataHandler NO_DATA = new ILogDataHandler() {
+        @Override
+        public void onHeader(LogDataHeader header) {
+        }
+
+        @Override
+        public void onRow(String row) {
+        }
+    };
+
+    static {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Parses the first log in the response, handing the header and then each data row to the handler.
+     * @return the header of the log, or null if the response did not contain a log
+     */
+    public static LogDataHeader read(Reader source, ILogDataHandler handler) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(source);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("log"))
+                    return readLog(reader, handler);
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parses only the header of the first log in the response, for queries that ask for no data.
+     * @return the header of the log, or null if the response did not contain a log
+     */
+    public static LogDataHeader readHeader(Reader source) throws XMLStreamException {
+        return read(source, NO_DATA);
+    }
+
+    private static LogDataHeader readLog(XMLStreamReader reader, ILogDataHandler handler) throws XMLStreamException {
+        LogDataHeader header = new LogDataHeader();
+        header.setUidWell(reader.getAttributeValue(null, "uidWell"));
+        header.setUidWellbore(reader.getAttributeValue(null, "uidWellbore"));
+        header.setUid(reader.getAttributeValue(null, "uid"));
+
+        boolean headerSent = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("log"))
+                break;
+            if (event != XMLStreamConstants.START_ELEMENT)
+                continue;
+
+            switch (reader.getLocalName()) {
+                case "nameWell":
+                    header.setNameWell(reader.getElementText().trim());
+                    break;
+                case "nameWellbore":
+                    header.setNameWellbore(reader.getElementText().trim());
+                    break;
+                case "name":
+                    header.setName(reader.getElementText().trim());
+                    break;
+                case "objectGrowing":
+                    header.setObjectGrowing(parseBoolean(reader.getElementText()));
+                    break;
+                case "indexType":
+                    header.setIndexType(reader.getElementText().trim());
+                    break;
+                case "indexCurve":
+                    header.setIndexCurve(emptyToNull(reader.getElementText()));
+                    break;
+                case "startIndex":
+                    readIndexUnit(reader, header);
+                    header.setStartIndex(parseDouble(reader.getElementText()));
+                    break;
+                case "endIndex":
+                    readIndexUnit(reader, header);
+                    header.setEndIndex(parseDouble(reader.getElementText()));
+                    break;
+                case "startDateTimeIndex":
+                    header.setStartDateTimeIndex(emptyToNull(reader.getElementText()));
+                    break;
+                case "endDateTimeIndex":
+                    header.setEndDateTimeIndex(emptyToNull(reader.getElementText()));
+                    break;
+                case "logCurveInfo":
+                    header.getCurves().add(readCurve(reader));
+                    break;
+                case "commonData":
+                case "logData":
+                    // descend into the children
+                    break;
+                case "dTimLastChange":
+                    header.setLastChange(emptyToNull(reader.getElementText()));
+                    break;
+                case "mnemonicList":
+                    header.setMnemonics(reader.getElementText().trim().split(","));
+                    break;
+                case "data":
+                    String row = reader.getElementText();
+                    if (!headerSent) {
+                        sendHeader(header, handler);
+                        headerSent = true;
+                    }
+                    handler.onRow(row);
+                    break;
+                default:
+                    skipElement(reader);
+                    break;
+            }
+        }
+        if (!headerSent)
+            sendHeader(header, handler);
+        return header;
+    }
+
+    private static LogDataHeader.Curve readCurve(XMLStreamReader reader) throws XMLStreamException {
+        LogDataHeader.Curve curve = new LogDataHeader.Curve();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("logCurveInfo"))
+                break;
+            if (event != XMLStreamConstants.START_ELEMENT)
+                continue;
+
+            switch (reader.getLocalName()) {
+                case "mnemonic":
+                    curve.setMnemonic(reader.getElementText().trim());
+                    break;
+                case "unit":
+                    curve.setUnit(emptyToNull(reader.getElementText()));
+                    break;
+                case "nullValue":
+                    curve.setNullValue(emptyToNull(reader.getElementText()));
+                    break;
+                case "typeLogData":
+                    curve.setTypeLogData(emptyToNull(reader.getElementText()));
+                    break;
+                case "columnIndex":
+                    Double index = parseDouble(reader.getElementText());
+                    if (index != null)
+                        curve.setColumnIndex(index.intValue());
+                    break;
+                default:
+                    skipElement(reader);
+                    break;
+            }
+        }
+        return curve;
+    }
+
+    // 1.4.1.1 responses carry a mnemonicList, 1.3.1.1 responses order the columns by columnIndex
+    private static void sendHeader(LogDataHeader header, ILogDataHandler handler) {
+        if (header.getMnemonics() == null) {
+            List<LogDataHeader.Curve> ordered = new ArrayList<>(header.getCurves());
+            ordered.sort(Comparator.comparingInt(LogDataHeader.Curve::getColumnIndex));
+            String[] mnemonics = new String[ordered.size()];
+            for (int i = 0; i < mnemonics.length; i++) {
+                mnemonics[i] = ordered.get(i).getMnemonic();
+            }
+            header.setMnemonics(mnemonics);
+        }
+        handler.onHeader(header);
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        if (value == null)
+            return null;
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void readIndexUnit(XMLStreamReader reader, LogDataHeader header) {
+        String uom = emptyToNull(reader.getAttributeValue(null, "uom"));
+        if (uom != null)
+            header.setIndexUnit(uom);
+    }
+
+    private static Boolean parseBoolean(String value) {
+        value = emptyToNull(value);
+        if (value == null)
+            return null;
+        return value.equalsIgnoreCase("true") || value.equals("1");
+    }
+
+    private static Double parseDouble(String value) {
+        value = emptyToNull(value);
+        if (value == null)
+            return null;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
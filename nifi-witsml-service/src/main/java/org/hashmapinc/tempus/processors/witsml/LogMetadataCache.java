@@ -0,0 +1,183 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least recently used cache of log metadata keyed by well, wellbore and log uid. An entry
+ * is served as it is until it is older than the time to live. After that the log's
+ * commonData/dTimLastChange is read back with a small query, and the entry is kept for another
+ * time to live when it has not moved on, or replaced with freshly queried metadata when it has.
+ * Logs the server reports no last change for are always queried again once their entry expires.
+ */
+class LogMetadataCache {
+
+    static final String CACHE_NAME = "LogMetadata";
+
+    interface LastChangeQuery {
+        /**
+         * @return the dTimLastChange of the log, or null if the server did not report one
+         */
+        String execute() throws Exception;
+    }
+
+    interface MetadataQuery {
+        /**
+         * @return the metadata of the log, or null if it could not be read
+         */
+        Fetched execute() throws Exception;
+    }
+
+    /**
+     * Metadata as it came back from the server, along with the dTimLastChange it was read at.
+     */
+    static class Fetched {
+        final LogMetadataInfo info;
+        final String lastChange;
+
+        Fetched(LogMetadataInfo info, String lastChange) {
+            this.info = info;
+            this.lastChange = lastChange;
+        }
+    }
+
+    private static class Entry {
+        final LogMetadataInfo info;
+        final String lastChange;
+        volatile long validatedAt;
+
+        Entry(LogMetadataInfo info, String lastChange, long validatedAt) {
+            this.info = info;
+            this.lastChange = lastChange;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final IStatsDReportingController reporting;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries the number of logs kept, 0 turns the cache off
+     * @param reporting where hits, misses and evictions are reported, may be null
+     */
+    LogMetadataCache(int maxEntries, long ttlMillis, IStatsDReportingController reporting) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.reporting = reporting;
+    }
+
+    static String key(String wellId, String wellboreId, String logId) {
+        return wellId + "/" + wellboreId + "/" + logId;
+    }
+
+    /**
+     * The cached metadata for the log, revalidated or queried as needed. Query failures are passed
+     * on to the caller and leave any cached entry in place.
+     */
+    LogMetadataInfo get(String key, LastChangeQuery lastChangeQuery, MetadataQuery metadataQuery) throws Exception {
+        if (maxEntries <= 0) {
+            Fetched fetched = metadataQuery.execute();
+            return fetched == null ? null : fetched.info;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            if (now - entry.validatedAt < ttlMillis) {
+                recordHit();
+                return entry.info;
+            }
+            if (entry.lastChange != null && entry.lastChange.equals(lastChangeQuery.execute())) {
+                entry.validatedAt = now;
+                revalidations.incrementAndGet();
+                recordHit();
+                return entry.info;
+            }
+        }
+
+        recordMiss();
+        Fetched fetched = metadataQuery.execute();
+        if (fetched == null)
+            return null;
+        // Metadata that could not be serialized is handed back but not kept
+        if (fetched.info != null && fetched.info.metadata != null)
+            put(key, new Entry(fetched.info, fetched.lastChange, now));
+        return fetched.info;
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        int evicted = 0;
+        synchronized (entries) {
+            entries.put(key, entry);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evicted++;
+            }
+        }
+        for (int i = 0; i < evicted; i++) {
+            evictions.incrementAndGet();
+            if (reporting != null)
+                reporting.recordCacheEviction(CACHE_NAME);
+        }
+    }
+
+    private void recordHit() {
+        hits.incrementAndGet();
+        if (reporting != null)
+            reporting.recordCacheHit(CACHE_NAME);
+    }
+
+    private void recordMiss() {
+        misses.incrementAndGet();
+        if (reporting != null)
+            reporting.recordCacheMiss(CACHE_NAME);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    long getRevalidatedCount() {
+        return revalidations.get();
+    }
+
+    long getEvictedCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "log metadata " + getHitCount() + " hits (" + getRevalidatedCount() + " revalidated), " +
+                getMissCount() + " misses, " + getEvictedCount() + " evicted, " + size() + " cached";
+    }
+}
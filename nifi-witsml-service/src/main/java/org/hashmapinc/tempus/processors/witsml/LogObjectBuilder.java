@@ -0,0 +1,129 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.hashmapinc.tempus.WitsmlObjects.v1411.*;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the 1.4.1.1 log object model from a streamed log response, so that 1.3.1.1 responses can be
+ * handed to the 1.4.1.1 helpers without first being run through the version conversion stylesheet.
+ */
+class LogObjectBuilder implements ILogDataHandler {
+
+    private static final DatatypeFactory datatypeFactory;
+
+    static {
+        try {
+            datatypeFactory = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final ObjLogs logs = new ObjLogs();
+    private CsLogData logData;
+
+    @Override
+    public void onHeader(LogDataHeader header) {
+        logs.setVersion("1.4.1.1");
+        ObjLog log = new ObjLog();
+        log.setUidWell(header.getUidWell());
+        log.setUidWellbore(header.getUidWellbore());
+        log.setUid(header.getUid());
+        log.setNameWell(header.getNameWell());
+        log.setNameWellbore(header.getNameWellbore());
+        log.setName(header.getName());
+        log.setObjectGrowing(header.isObjectGrowing());
+        log.setIndexType(getIndexType(header.getIndexType()));
+        log.setIndexCurve(header.getIndexCurve());
+        log.setStartIndex(getMeasure(header.getStartIndex(), header.getIndexUnit()));
+        log.setEndIndex(getMeasure(header.getEndIndex(), header.getIndexUnit()));
+        log.setStartDateTimeIndex(getDateTime(header.getStartDateTimeIndex()));
+        log.setEndDateTimeIndex(getDateTime(header.getEndDateTimeIndex()));
+
+        Map<String, LogDataHeader.Curve> curvesByMnemonic = new HashMap<>();
+        for (LogDataHeader.Curve curve : header.getCurves()) {
+            curvesByMnemonic.put(curve.getMnemonic(), curve);
+        }
+
+        // The curves and the unit list follow the column order of the data
+        StringBuilder unitList = new StringBuilder();
+        String[] mnemonics = header.getMnemonics();
+        for (int i = 0; i < mnemonics.length; i++) {
+            LogDataHeader.Curve curve = curvesByMnemonic.get(mnemonics[i]);
+            if (i > 0)
+                unitList.append(',');
+            if (curve == null)
+                continue;
+            if (curve.getUnit() != null)
+                unitList.append(curve.getUnit());
+            log.getLogCurveInfo().add(getCurveInfo(curve));
+        }
+
+        logData = new CsLogData();
+        logData.setMnemonicList(String.join(",", mnemonics));
+        logData.setUnitList(unitList.toString());
+        log.getLogData().add(logData);
+        logs.getLog().add(log);
+    }
+
+    @Override
+    public void onRow(String row) {
+        logData.getData().add(row);
+    }
+
+    ObjLogs getLogs() {
+        return logs;
+    }
+
+    private CsLogCurveInfo getCurveInfo(LogDataHeader.Curve curve) {
+        CsLogCurveInfo curveInfo = new CsLogCurveInfo();
+        ShortNameStruct mnemonic = new ShortNameStruct();
+        mnemonic.setValue(curve.getMnemonic());
+        curveInfo.setUid(curve.getMnemonic());
+        curveInfo.setMnemonic(mnemonic);
+        curveInfo.setUnit(curve.getUnit());
+        curveInfo.setNullValue(curve.getNullValue());
+        if (curve.getTypeLogData() != null) {
+            try {
+                curveInfo.setTypeLogData(LogDataType.fromValue(curve.getTypeLogData()));
+            } catch (IllegalArgumentException ex) {
+                // leave unset, the value is not one the 1.4.1.1 model knows
+            }
+        }
+        return curveInfo;
+    }
+
+    private static LogIndexType getIndexType(String indexType) {
+        if (indexType == null)
+            return null;
+        try {
+            return LogIndexType.fromValue(indexType);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static GenericMeasure getMeasure(Double value, String uom) {
+        if (value == null)
+            return null;
+        GenericMeasure measure = new GenericMeasure();
+        measure.setValue(value);
+        measure.setUom(uom);
+        return measure;
+    }
+
+    private static XMLGregorianCalendar getDateTime(String value) {
+        if (value == null)
+            return null;
+        try {
+            return datatypeFactory.newXMLGregorianCalendar(value);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
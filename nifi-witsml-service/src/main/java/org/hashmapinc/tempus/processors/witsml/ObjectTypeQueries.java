@@ -0,0 +1,78 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.logging.ComponentLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Lists the objects of several types under a wellbore at once. Each type is queried as its own task,
+ * so the listing takes as long as the slowest type rather than all of them added up, and the results
+ * are merged back in the order the types were asked for. A type that has not answered within the
+ * timeout is cancelled and left out of the listing without holding up the others.
+ */
+class ObjectTypeQueries {
+
+    interface TypeQuery {
+        List<WitsmlObjectId> query(String type) throws Exception;
+    }
+
+    /**
+     * @param executor runs the type queries, when null they are run one after another on the caller
+     * @param timeoutMillis how long each type has from the start of the listing
+     */
+    static List<WitsmlObjectId> run(ExecutorService executor, List<String> types, TypeQuery query,
+                                    long timeoutMillis, ComponentLog logger) {
+        List<WitsmlObjectId> ids = new ArrayList<>();
+        if (executor == null || types.size() < 2) {
+            for (String type : types) {
+                try {
+                    ids.addAll(query.query(type));
+                } catch (Exception ex) {
+                    logger.error("Error in getting " + type + " objects from WITSML server: " + ex.getMessage());
+                }
+            }
+            return ids;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Future<List<WitsmlObjectId>>> results = new ArrayList<>(types.size());
+        for (String type : types) {
+            try {
+                results.add(executor.submit(() -> query.query(type)));
+            } catch (RejectedExecutionException ex) {
+                results.add(null);
+                logger.error("Could not start the query for " + type + " objects: " + ex.getMessage());
+            }
+        }
+
+        for (int i = 0; i < types.size(); i++) {
+            Future<List<WitsmlObjectId>> result = results.get(i);
+            if (result == null)
+                continue;
+            try {
+                ids.addAll(result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ex) {
+                result.cancel(true);
+                logger.error("Query for " + types.get(i) + " objects did not finish within " + timeoutMillis +
+                        " ms, they are left out of this listing");
+            } catch (ExecutionException ex) {
+                logger.error("Error in getting " + types.get(i) + " objects from WITSML server: " + ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < results.size(); j++) {
+                    if (results.get(j) != null)
+                        results.get(j).cancel(true);
+                }
+                break;
+            }
+        }
+        return ids;
+    }
+}
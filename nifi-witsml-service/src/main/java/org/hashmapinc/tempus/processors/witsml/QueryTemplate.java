@@ -0,0 +1,163 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A query document split once into its literal text and its %name% parameter slots. Rendering
+ * writes the literals and the XML escaped parameter values out in a single pass into a buffer kept
+ * per thread, instead of scanning and copying the whole document once per parameter.
+ */
+class QueryTemplate {
+
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(2048));
+
+    // literals[i] is written before slots[i], the last literal follows the last slot
+    private final String[] literals;
+    private final int[] slots;
+    private final Map<String, Integer> slotIndexes;
+
+    private QueryTemplate(List<String> literals, List<Integer> slots, Map<String, Integer> slotIndexes) {
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.slots = new int[slots.size()];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = slots.get(i);
+        }
+        this.slotIndexes = slotIndexes;
+    }
+
+    /**
+     * Parses a template. A slot is a name made of letters and digits between two percent signs, any
+     * other percent sign is kept as literal text.
+     */
+    static QueryTemplate parse(String text) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Map<String, Integer> slotIndexes = new HashMap<>();
+
+        int literalStart = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (text.charAt(i) != '%') {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            if (end == i + 1 || end == text.length() || text.charAt(end) != '%') {
+                i = end;
+                continue;
+            }
+            String name = text.substring(i + 1, end);
+            Integer index = slotIndexes.get(name);
+            if (index == null) {
+                index = slotIndexes.size();
+                slotIndexes.put(name, index);
+            }
+            literals.add(text.substring(literalStart, i));
+            slots.add(index);
+            i = end + 1;
+            literalStart = i;
+        }
+        literals.add(text.substring(literalStart));
+        return new QueryTemplate(literals, slots, slotIndexes);
+    }
+
+    static QueryTemplate load(String resourcePath) throws IOException {
+        InputStream stream = QueryTemplate.class.getResourceAsStream(resourcePath);
+        if (stream == null)
+            throw new FileNotFoundException("Query template " + resourcePath + " not found");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return parse(reader.lines().collect(Collectors.joining(System.getProperty("line.separator"))));
+        }
+    }
+
+    Binding bind() {
+        return new Binding();
+    }
+
+    /**
+     * The parameter values for one rendering of the template. Slots that are never set render empty.
+     */
+    class Binding {
+
+        private final String[] values = new String[slotIndexes.size()];
+        private final boolean[] raw = new boolean[slotIndexes.size()];
+
+        Binding set(String name, String value) {
+            Integer index = slotIndexes.get(name);
+            if (index != null)
+                values[index] = value;
+            return this;
+        }
+
+        /**
+         * Sets a slot to a fragment of XML, which is written out as it is rather than escaped.
+         */
+        Binding setXml(String name, String fragment) {
+            Integer index = slotIndexes.get(name);
+            if (index != null) {
+                values[index] = fragment;
+                raw[index] = true;
+            }
+            return this;
+        }
+
+        String render() {
+            StringBuilder buffer = buffers.get();
+            buffer.setLength(0);
+            for (int i = 0; i < slots.length; i++) {
+                buffer.append(literals[i]);
+                if (raw[slots[i]])
+                    appendRaw(buffer, values[slots[i]]);
+                else
+                    appendEscaped(buffer, values[slots[i]]);
+            }
+            buffer.append(literals[slots.length]);
+            return buffer.toString();
+        }
+    }
+
+    private static void appendRaw(StringBuilder buffer, String fragment) {
+        if (fragment != null)
+            buffer.append(fragment);
+    }
+
+    private static void appendEscaped(StringBuilder buffer, String value) {
+        if (value == null)
+            return;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+                case '"':
+                    buffer.append("&quot;");
+                    break;
+                case '\'':
+                    buffer.append("&apos;");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+}
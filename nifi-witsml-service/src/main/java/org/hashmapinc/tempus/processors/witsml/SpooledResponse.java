@@ -0,0 +1,204 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A server response that is kept in memory while it is small and written out to a temp file once it
+ * is over the spool threshold. Spooled responses are read back through memory mapped regions of the
+ * file, so a parser working through one only has the page cache behind it rather than a two bytes
+ * per character copy on the heap. The temp file is removed when the response is closed, and every
+ * service spools into its own directory so it can clear out what an earlier run left behind.
+ */
+class SpooledResponse implements Closeable {
+
+    static final String FILE_PREFIX = "witsml-response-";
+    static final String DIRECTORY_PREFIX = "witsml-spool-";
+
+    // Mapped a region at a time so responses over 2 GB can still be read
+    private static final long REGION_SIZE = 256L * 1024 * 1024;
+
+    private String text;
+    private final Path file;
+    private long queryMillis;
+
+    private SpooledResponse(String text, Path file) {
+        this.text = text;
+        this.file = file;
+    }
+
+    /**
+     * The directory a service spools into under the configured one. Each service has its own, so
+     * purging it never touches the files another service is still reading.
+     */
+    static File directoryFor(File base, String serviceIdentifier) throws IOException {
+        Path directory = base.toPath().resolve(DIRECTORY_PREFIX + serviceIdentifier);
+        Files.createDirectories(directory);
+        return directory.toFile();
+    }
+
+    /**
+     * Wraps a response, spooling it to a new file in the directory when its UTF-8 encoding is larger
+     * than the threshold in bytes. The caller should drop its own reference to the text afterwards.
+     */
+    static SpooledResponse of(String text, long threshold, File directory) throws IOException {
+        if (!isLarger(text, threshold))
+            return inMemory(text);
+
+        Path file = Files.createTempFile(directory.toPath(), FILE_PREFIX, ".xml");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(text);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new SpooledResponse(null, file);
+    }
+
+    // Counts the UTF-8 bytes of the text only when the character count alone cannot decide
+    static boolean isLarger(String text, long threshold) {
+        int length = text.length();
+        if (length > threshold)
+            return true;
+        if ((long) length * 3 <= threshold)
+            return false;
+        long bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80)
+                bytes++;
+            else if (c < 0x800)
+                bytes += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else
+                bytes += 3;
+            if (bytes > threshold)
+                return true;
+        }
+        return false;
+    }
+
+    static SpooledResponse inMemory(String text) {
+        return new SpooledResponse(text, null);
+    }
+
+    /**
+     * Removes spool files left in the service's directory by an earlier run that did not shut down
+     * cleanly.
+     */
+    static void purge(File directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.toPath(), FILE_PREFIX + "*.xml")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Records how long the server took to send the response.
+     */
+    SpooledResponse timed(long queryMillis) {
+        this.queryMillis = queryMillis;
+        return this;
+    }
+
+    long getQueryMillis() {
+        return queryMillis;
+    }
+
+    boolean isSpooled() {
+        return file != null;
+    }
+
+    Reader openReader() throws IOException {
+        if (!isSpooled())
+            return new StringReader(text);
+        return new InputStreamReader(new MappedInputStream(FileChannel.open(file, StandardOpenOption.READ)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The whole response as a string, read back from the file if it was spooled. Only for the
+     * callers that cannot work from a reader.
+     */
+    String getText() throws IOException {
+        if (!isSpooled())
+            return text;
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        text = null;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // left for the purge when the service is next enabled
+            }
+        }
+    }
+
+    private static class MappedInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long size;
+        private long position = 0;
+        private MappedByteBuffer region;
+
+        MappedInputStream(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        // Maps the next region once the current one has been read, returns false at the end of the file
+        private boolean nextRegion() throws IOException {
+            if (region != null && region.hasRemaining())
+                return true;
+            if (position >= size)
+                return false;
+            long length = Math.min(REGION_SIZE, size - position);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextRegion())
+                return -1;
+            return region.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!nextRegion())
+                return -1;
+            int count = Math.min(len, region.remaining());
+            region.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            region = null;
+            channel.close();
+        }
+    }
+}
@@ -91,4 +91,16 @@ public class StatsDReportingController extends AbstractControllerService impleme
     public void incrementQueryCounter(){
         statsClient.increment("NumOfQueries");
     }
+
+    public void recordCacheHit(String cacheName){
+        statsClient.increment(cacheName + "CacheHits");
+    }
+
+    public void recordCacheMiss(String cacheName){
+        statsClient.increment(cacheName + "CacheMisses");
+    }
+
+    public void recordCacheEviction(String cacheName){
+        statsClient.increment(cacheName + "CacheEvictions");
+    }
 }
@@ -0,0 +1,86 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.FromStringDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjLogs;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjTrajectorys;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerException;
+import java.io.Reader;
+
+/**
+ * The two ways a 1.3.1.1 response is turned into the 1.4.1.1 objects the processors work with. XSLT
+ * runs the response through the version conversion stylesheet and unmarshals the result. Direct skips
+ * the stylesheet: logs are built from the streamed response, and trajectories are unmarshalled as
+ * 1.3.1.1 and copied field by field onto the 1.4.1.1 classes.
+ */
+final class VersionConversion {
+
+    private static final DatatypeFactory datatypeFactory;
+
+    static {
+        try {
+            datatypeFactory = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Only fields that are set are copied, and a set field the 1.4.1.1 class does not have fails the
+    // copy rather than being dropped. Date times are carried in their lexical form so the offset the
+    // server sent is kept.
+    private static final ObjectMapper versionMapper = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true)
+            .registerModule(new SimpleModule()
+                    .addSerializer(XMLGregorianCalendar.class, ToStringSerializer.instance)
+                    .addDeserializer(XMLGregorianCalendar.class, new FromStringDeserializer<XMLGregorianCalendar>(XMLGregorianCalendar.class) {
+                        @Override
+                        protected XMLGregorianCalendar _deserialize(String value, DeserializationContext context) {
+                            return datatypeFactory.newXMLGregorianCalendar(value);
+                        }
+                    }));
+
+    private VersionConversion() {
+    }
+
+    static ObjLogs bindLogs(Reader response) throws XMLStreamException {
+        LogObjectBuilder builder = new LogObjectBuilder();
+        LogDataStreamReader.read(response, builder);
+        return builder.getLogs();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the trajectory has a field the 1.4.1.1 classes cannot take
+     */
+    static ObjTrajectorys bindTrajectorys(WitsmlMarshallerPool marshallerPool, String response) throws JAXBException {
+        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys trajectorys =
+                marshallerPool.deserialize(response, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys.class);
+        if (trajectorys == null)
+            return null;
+        ObjTrajectorys converted = versionMapper.convertValue(trajectorys, ObjTrajectorys.class);
+        converted.setVersion("1.4.1.1");
+        return converted;
+    }
+
+    static <T> T convert(WitsmlMarshallerPool marshallerPool, String response, Class<T> type) throws TransformerException, JAXBException {
+        String converted = marshallerPool.convertVersion(response);
+        if (converted == null || converted.equals(""))
+            return null;
+        return marshallerPool.deserialize(converted, type);
+    }
+}
@@ -1,34 +1,49 @@
 package org.hashmapinc.tempus.processors.witsml;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.hashmapinc.tempus.WitsmlObjects.Util.WitsmlMarshal;
-import com.hashmapinc.tempus.WitsmlObjects.Util.WitsmlVersionTransformer;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.hashmapinc.tempus.WitsmlObjects.v1411.*;
 import com.hashmapinc.tempus.witsml.api.*;
 import com.hashmapinc.tempus.witsml.client.Client;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnDisabled;
 import org.apache.nifi.annotation.lifecycle.OnEnabled;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.controller.AbstractControllerService;
 import org.apache.nifi.controller.ConfigurationContext;
 import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.util.StandardValidators;
 import org.apache.nifi.reporting.InitializationException;
 
 import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 import java.io.*;
-import java.rmi.RemoteException;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by Chris on 6/2/17.
@@ -38,10 +53,38 @@ import java.util.stream.Collectors;
 public class Witsml1311Service extends AbstractControllerService implements IWitsmlServiceApi {
 
     // Global session variables used by all processors using an instance
-    private Client myClient = null;
-    private String baseLogQuery = "";
-    private String baseLogMetadataQuery = "";
-    private String baseTrajQuery = "";
+    private WitsmlClientPool<Client> clientPool = null;
+    private String endpointUrl = "";
+    private static final long CLIENT_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private QueryTemplate logDataTemplate = null;
+    private QueryTemplate logMetadataTemplate = null;
+    private QueryTemplate lastChangeTemplate = null;
+    private QueryTemplate trajectoryTemplate = null;
+    private QueryTemplate changedWellsTemplate = null;
+    private QueryTemplate changedWellboresTemplate = null;
+    private volatile boolean changedQueriesRejected = false;
+    private LogCurveProjection curveProjection = null;
+    private LogMetadataCache metadataCache = new LogMetadataCache(0, 0, null);
+    private HierarchyCache hierarchyCache = new HierarchyCache(0);
+
+    // The object types under a wellbore are listed in parallel on this executor
+    private ExecutorService listingExecutor = null;
+    private long typeQueryTimeoutMillis = TimeUnit.MINUTES.toMillis(2);
+    private boolean directBinding = true;
+    private WitsmlMarshallerPool marshallerPool = new WitsmlMarshallerPool();
+
+    // Log data responses queried ahead of the request that will ask for them
+    private static final long PREFETCH_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private final ConcurrentMap<LogDataRequest, PrefetchedResponse> prefetched = new ConcurrentHashMap<>();
+    private int prefetchDepth = 0;
+
+    // Log data responses over the threshold are spooled to files in this directory
+    private long spoolThreshold = Long.MAX_VALUE;
+    private File spoolDirectory = new File(System.getProperty("java.io.tmpdir"));
+
+    // Background queries run on this executor, every query to the server holds one of the permits
+    private ExecutorService queryExecutor = null;
+    private Semaphore querySlots = new Semaphore(Integer.MAX_VALUE);
 
     //Properties
     public static final PropertyDescriptor ENDPOINT_URL = new PropertyDescriptor
@@ -66,6 +109,130 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor VERSION_CONVERSION = new PropertyDescriptor
+            .Builder().name("Version Conversion")
+            .description("How 1.3.1.1 log and trajectory responses are turned into the 1.4.1.1 objects used by the processors. " +
+                    "Direct binds the response straight into the 1.4.1.1 objects without the version conversion stylesheet, " +
+                    "a response it cannot bind completely is converted with XSLT instead. XSLT always converts the response " +
+                    "text with the stylesheet first, and is kept for compatibility with servers whose responses Direct " +
+                    "binds differently.")
+            .required(true)
+            .allowableValues("Direct", "XSLT")
+            .defaultValue("Direct")
+            .build();
+
+    public static final PropertyDescriptor PREFETCH_DEPTH = new PropertyDescriptor
+            .Builder().name("Prefetch Depth")
+            .description("The maximum number of log data windows that may be queried ahead of the processors asking for " +
+                    "them. Prefetching is requested by the processor, 0 disables it.")
+            .required(true)
+            .defaultValue("2")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_CONCURRENT_QUERIES = new PropertyDescriptor
+            .Builder().name("Max Concurrent Queries")
+            .description("The maximum number of queries this service will have outstanding against the server at any one " +
+                    "time. Batched and prefetched log queries run in parallel up to this limit.")
+            .required(true)
+            .defaultValue("4")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor CLIENT_POOL_SIZE = new PropertyDescriptor
+            .Builder().name("Client Pool Size")
+            .description("The maximum number of connected clients this service keeps for the server. Each concurrent " +
+                    "request uses a client of its own, requests wait for a free client once they are all in use.")
+            .required(true)
+            .defaultValue("4")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor CLIENT_IDLE_TIMEOUT = new PropertyDescriptor
+            .Builder().name("Client Idle Timeout")
+            .description("Clients left unused for longer than this are dropped from the pool and a new one is " +
+                    "connected when it is next needed.")
+            .required(true)
+            .defaultValue("5 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor SPOOL_THRESHOLD = new PropertyDescriptor
+            .Builder().name("Spool Threshold")
+            .description("Log data responses whose UTF-8 encoding is larger than this are written out to a temp file as soon as they arrive " +
+                    "and parsed from there through a memory mapped buffer, rather than held on the heap while they " +
+                    "wait to be parsed.")
+            .required(true)
+            .defaultValue("64 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor SPOOL_DIRECTORY = new PropertyDescriptor
+            .Builder().name("Spool Directory")
+            .description("The directory spooled responses are written to. Defaults to the JVM temp directory. Each " +
+                    "service writes into its own witsml-spool-<service id> directory under it. Files are removed once " +
+                    "parsed, and any left behind by an unclean shutdown are removed when the service is enabled.")
+            .required(false)
+            .addValidator(StandardValidators.createDirectoryExistsValidator(false, false))
+            .build();
+
+    public static final PropertyDescriptor METADATA_CACHE_SIZE = new PropertyDescriptor
+            .Builder().name("Metadata Cache Size")
+            .description("The number of logs whose metadata is kept in memory. The least recently used log is dropped " +
+                    "once the cache is full. Set to 0 to query the server for metadata on every request.")
+            .required(true)
+            .defaultValue("1000")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor METADATA_CACHE_TTL = new PropertyDescriptor
+            .Builder().name("Metadata Cache TTL")
+            .description("How long cached log metadata is used without going back to the server. After that the " +
+                    "log's dTimLastChange is checked and the metadata is only queried again if the log has changed.")
+            .required(true)
+            .defaultValue("1 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TYPE_QUERY_TIMEOUT = new PropertyDescriptor
+            .Builder().name("Object Type Query Timeout")
+            .description("When the objects under a wellbore are listed, each object type is queried at the same " +
+                    "time. A type that has not answered within this time is left out of the listing so it does not " +
+                    "hold up the others.")
+            .required(true)
+            .defaultValue("2 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor HIERARCHY_REFRESH_INTERVAL = new PropertyDescriptor
+            .Builder().name("Hierarchy Refresh Interval")
+            .description("How long the wells of the server and the wellbores of each well are listed from memory " +
+                    "before they are queried again. Between full sweeps only the wells and wellbores whose " +
+                    "dTimLastChange is later than the latest one already listed are queried. Wells and wellbores " +
+                    "whose dTimLastChange has not moved since the last query are not serialized again. Set to 0 " +
+                    "sec to query on every listing.")
+            .required(true)
+            .defaultValue("1 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor HIERARCHY_FULL_SWEEP_INTERVAL = new PropertyDescriptor
+            .Builder().name("Hierarchy Full Sweep Interval")
+            .description("How often all wells of the server and all wellbores of each well are queried rather than " +
+                    "only the changed ones, which drops deleted wells and wellbores and picks up those without a " +
+                    "dTimLastChange. Servers that reject a query on dTimLastChange are always swept in full.")
+            .required(true)
+            .defaultValue("1 hour")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor REPORTING_SERVICE = new PropertyDescriptor
+            .Builder().name("Reporting Service")
+            .description("The controller service the metadata cache hits, misses and evictions are reported to.")
+            .required(false)
+            .identifiesControllerService(IStatsDReportingController.class)
+            .build();
+
     private static final List<PropertyDescriptor> properties;
 
     static {
@@ -73,6 +240,19 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         props.add(ENDPOINT_URL);
         props.add(USERNAME);
         props.add(PASSWORD);
+        props.add(CLIENT_POOL_SIZE);
+        props.add(CLIENT_IDLE_TIMEOUT);
+        props.add(VERSION_CONVERSION);
+        props.add(PREFETCH_DEPTH);
+        props.add(MAX_CONCURRENT_QUERIES);
+        props.add(SPOOL_THRESHOLD);
+        props.add(SPOOL_DIRECTORY);
+        props.add(METADATA_CACHE_SIZE);
+        props.add(METADATA_CACHE_TTL);
+        props.add(HIERARCHY_REFRESH_INTERVAL);
+        props.add(HIERARCHY_FULL_SWEEP_INTERVAL);
+        props.add(TYPE_QUERY_TIMEOUT);
+        props.add(REPORTING_SERVICE);
         properties = Collections.unmodifiableList(props);
     }
 
@@ -86,11 +266,119 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         final ComponentLog logger = getLogger();
         logger.info("Creating Witsml Client");
 
-        myClient = new Client(context.getProperty(ENDPOINT_URL).getValue());
-        myClient.setUserName(context.getProperty(USERNAME).getValue());
-        myClient.setPassword(context.getProperty(PASSWORD).getValue());
-        myClient.setVersion(WitsmlVersion.VERSION_1311);
-        myClient.connect();
+        endpointUrl = context.getProperty(ENDPOINT_URL).getValue();
+        final String username = context.getProperty(USERNAME).getValue();
+        final String password = context.getProperty(PASSWORD).getValue();
+        clientPool = new WitsmlClientPool<>(() -> {
+            Client client = new Client(endpointUrl);
+            client.setUserName(username);
+            client.setPassword(password);
+            client.setVersion(WitsmlVersion.VERSION_1311);
+            client.connect();
+            return client;
+        }, context.getProperty(CLIENT_POOL_SIZE).asInteger(),
+                context.getProperty(CLIENT_IDLE_TIMEOUT).asTimePeriod(TimeUnit.MILLISECONDS), CLIENT_WAIT_MILLIS);
+
+        // Connect the first client now so a bad endpoint or login fails the enable
+        try {
+            clientPool.release(clientPool.borrow());
+        } catch (Exception e) {
+            throw new InitializationException(e);
+        }
+
+        directBinding = context.getProperty(VERSION_CONVERSION).getValue().equals("Direct");
+
+        try {
+            logDataTemplate = QueryTemplate.load("/1311/GetLogDataQuery.xml");
+            logMetadataTemplate = QueryTemplate.load("/1311/GetLogMetadataQuery.xml");
+            lastChangeTemplate = QueryTemplate.load("/1311/GetLogLastChangeQuery.xml");
+            trajectoryTemplate = QueryTemplate.load("/1311/GetTrajectoryData.xml");
+            changedWellsTemplate = QueryTemplate.load("/1311/GetChangedWellsQuery.xml");
+            changedWellboresTemplate = QueryTemplate.load("/1311/GetChangedWellboresQuery.xml");
+            curveProjection = new LogCurveProjection(QueryTemplate.load("/1311/GetLogDataCurve.xml"),
+                    QueryTemplate.load("/1311/GetLogCurvesQuery.xml"), getLogger());
+        } catch (IOException e) {
+            throw new InitializationException("Could not read the 1.3.1.1 query templates: " + e.getMessage());
+        }
+
+        metadataCache = new LogMetadataCache(context.getProperty(METADATA_CACHE_SIZE).asInteger(),
+                context.getProperty(METADATA_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS),
+                context.getProperty(REPORTING_SERVICE).asControllerService(IStatsDReportingController.class));
+        hierarchyCache = new HierarchyCache(context.getProperty(HIERARCHY_REFRESH_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS),
+                context.getProperty(HIERARCHY_FULL_SWEEP_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS));
+        changedQueriesRejected = false;
+
+        typeQueryTimeoutMillis = context.getProperty(TYPE_QUERY_TIMEOUT).asTimePeriod(TimeUnit.MILLISECONDS);
+        listingExecutor = Executors.newFixedThreadPool(context.getProperty(CLIENT_POOL_SIZE).asInteger(), runnable -> {
+            Thread thread = new Thread(runnable, "Witsml1311Service listing");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        marshallerPool = new WitsmlMarshallerPool();
+        try {
+            marshallerPool.prepare(com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells.class,
+                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores.class,
+                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjLogs.class,
+                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys.class,
+                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages.class,
+                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs.class);
+        } catch (JAXBException e) {
+            logger.warn("Could not prepare JAXB contexts, they will be created on first use: " + e.getMessage());
+        }
+
+        spoolThreshold = context.getProperty(SPOOL_THRESHOLD).asDataSize(DataUnit.B).longValue();
+        File spoolBase = context.getProperty(SPOOL_DIRECTORY).isSet() ?
+                new File(context.getProperty(SPOOL_DIRECTORY).getValue()) : new File(System.getProperty("java.io.tmpdir"));
+        try {
+            spoolDirectory = SpooledResponse.directoryFor(spoolBase, getIdentifier());
+            SpooledResponse.purge(spoolDirectory);
+        } catch (IOException e) {
+            spoolDirectory = spoolBase;
+            logger.warn("Could not prepare the spool directory under " + spoolBase + ", spooling there without " +
+                    "removing old responses: " + e.getMessage());
+        }
+
+        prefetchDepth = context.getProperty(PREFETCH_DEPTH).asInteger();
+        int maxConcurrentQueries = context.getProperty(MAX_CONCURRENT_QUERIES).asInteger();
+        querySlots = new Semaphore(maxConcurrentQueries, true);
+        queryExecutor = Executors.newFixedThreadPool(maxConcurrentQueries, runnable -> {
+            Thread thread = new Thread(runnable, "Witsml1311Service query");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @OnDisabled
+    public void onDisabled() {
+        getLogger().info("Marshaller pool statistics: " + marshallerPool);
+        if (clientPool != null) {
+            getLogger().info("Client pool statistics: " + clientPool);
+            clientPool.clear();
+        }
+        if (queryExecutor != null) {
+            queryExecutor.shutdownNow();
+            queryExecutor = null;
+        }
+        prefetched.values().forEach(PrefetchedResponse::discard);
+        prefetched.clear();
+        if (curveProjection != null)
+            curveProjection.clear();
+        getLogger().info("Metadata cache statistics: " + metadataCache);
+        metadataCache.clear();
+        getLogger().info("Hierarchy cache statistics: " + hierarchyCache);
+        hierarchyCache.clear();
+        if (listingExecutor != null) {
+            listingExecutor.shutdownNow();
+            listingExecutor = null;
+        }
+    }
+
+    /**
+     * The pool of unmarshallers and version transformers, exposed for its hit and miss counts.
+     */
+    public WitsmlMarshallerPool getMarshallerPool() {
+        return marshallerPool;
     }
 
     @Override
@@ -98,65 +386,65 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         try {
             switch (object) {
                 case "BHARUN":
-                    return myClient.getBhaRunsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getBhaRunsAsObj(wellId, wellboreId));
                 case "CEMENTJOB":
-                    return myClient.getCementJobsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getCementJobsAsObj(wellId, wellboreId));
                 case "CONVCORE":
-                    return myClient.getConvCoresAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getConvCoresAsObj(wellId, wellboreId));
                 case "DTSINSTALLEDSYSTEM" :
-                    return myClient.getDtsInstalledSystemsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getDtsInstalledSystemsAsObj(wellId, wellboreId));
                 case "DTSMEASUREMENT" :
-                    return myClient.getDtsMeasurementsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getDtsMeasurementsAsObj(wellId, wellboreId));
                 case "FLUIDREPORT":
-                    return myClient.getFluidsReportsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getFluidsReportsAsObj(wellId, wellboreId));
                 case "FORMATIONMARKER":
-                    return myClient.getFormationMarkersAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getFormationMarkersAsObj(wellId, wellboreId));
                 case "LOG":
-                    return myClient.getLogMetadataAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getLogMetadataAsObj(wellId, wellboreId));
                 case "MESSAGE": {
                     if (wellId.equals("")) return null;
                     if (wellboreId.equals("")) return null;
-                    String messages = myClient.getMessages(wellId, wellboreId);
+                    String messages = clientPool.execute(client -> client.getMessages(wellId, wellboreId));
                     if (messages == null) return null;
                     if (messages.equals("")) return null;
-                    return WitsmlMarshal.deserialize(messages, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages.class);
+                    return marshallerPool.deserialize(messages, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages.class);
                 }
                 case "MUDLOG":
-                    return myClient.getMudLogsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getMudLogsAsObj(wellId, wellboreId));
                 case "OPSREPORT":
-                    return myClient.getOpsReportsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getOpsReportsAsObj(wellId, wellboreId));
                 case "REALTIME" :
-                    return myClient.getRealtimesAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getRealtimesAsObj(wellId, wellboreId));
                 case "RIG": {
                     if (wellId.equals("")) return null;
                     if (wellboreId.equals("")) return null;
-                    String rigs =  myClient.getRigs(wellId, wellboreId);
+                    String rigs =  clientPool.execute(client -> client.getRigs(wellId, wellboreId));
                     if (rigs == null) return null;
                     if (rigs.equals("")) return null;
-                    return WitsmlMarshal.deserialize(rigs, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs.class);
+                    return marshallerPool.deserialize(rigs, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs.class);
                 }
                 case "RISK":
-                    return myClient.getRisksAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getRisksAsObj(wellId, wellboreId));
                 case "SIDEWALLCORE":
-                    return myClient.getSideWallCoresAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getSideWallCoresAsObj(wellId, wellboreId));
                 case "SURVEYPROGRAM":
-                    return myClient.getSurveyProgramsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getSurveyProgramsAsObj(wellId, wellboreId));
                 case "TARGET":
-                    return myClient.getTargetsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getTargetsAsObj(wellId, wellboreId));
                 case "TRAJECTORY": {
                     if (wellId.equals("")) return null;
                     if (wellboreId.equals("")) return null;
-                    String trajs = myClient.getTrajectorys(wellId, wellboreId);
+                    String trajs = clientPool.execute(client -> client.getTrajectorys(wellId, wellboreId));
                     if (trajs == null) return null;
                     if (trajs.equals("")) return null;
-                    return WitsmlMarshal.deserialize(trajs, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys.class);
+                    return marshallerPool.deserialize(trajs, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys.class);
                 }
                 case "TUBULAR":
-                    return myClient.getTubularsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getTubularsAsObj(wellId, wellboreId));
                 case "WBGEOMETRY":
-                    return myClient.getWbGeometrysAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getWbGeometrysAsObj(wellId, wellboreId));
                 case "WELLLOG" :
-                    return myClient.getWellLogsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getWellLogsAsObj(wellId, wellboreId));
                 default:
                     getLogger().error("The Object : " + object + " is not supported/present");
                     break;
@@ -173,70 +461,233 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
     @Override
     public ObjLogs getLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone){
 
-        // Create Query
-        String query = "";
-
-        if (startDepth == null)
-            startDepth = "";
+        // Execute query to the server
+        try (SpooledResponse returnedLogData = executeLogDataQuery(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth)) {
 
-        if (startTime == null)
-            startTime = "";
+            if (returnedLogData == null)
+                return null;
 
-        if (baseLogQuery.equals("")) {
-            try {
-                baseLogQuery = getQuery("/1311/GetLogDataQuery.xml");
-            } catch (IOException e) {
-                getLogger().error("Error reading base log query from /1311/GetLogData.xml: in GetData" + e.getMessage());
+            if (directBinding) {
+                try (Reader reader = returnedLogData.openReader()) {
+                    return VersionConversion.bindLogs(reader);
+                } catch (XMLStreamException e) {
+                    getLogger().debug("Direct binding of log response failed: " + e.getMessage());
+                }
+                getLogger().warn("Could not bind 1.3.1.1 log response directly, falling back to XSLT conversion");
             }
+
+            // Convert to 1.4.1.1 to be able to use the helper methods
+            return VersionConversion.convert(marshallerPool, returnedLogData.getText(), ObjLogs.class);
+        } catch (TransformerException | IOException e) {
+            getLogger().error("Could not convert WITSML 1.3.1.1 response to 1.4.1.1");
+            return null;
+        } catch (JAXBException e) {
+            getLogger().error("Could not deserialize object in getLogData for the Witsml1311Service: " + e.getMessage());
+            return null;
         }
+    }
 
-        query = baseLogQuery;
-        query = query.replace("%uidWell%", wellId);
-        query = query.replace("%uidWellbore%", wellboreId);
-        query = query.replace("%uidLog%", logId);
-        query = query.replace("%startIndex%", startDepth);
-        query = query.replace("%startDateTimeIndex%", startTime);
-        query = query.replace("%endDateTimeIndex%", removeTimeZone(endTime));
-        query = query.replace("%endIndex%", endDepth);
+    @Override
+    public LogDataHeader streamLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone, ILogDataHandler handler) {
+        return streamLogData(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth), timeZone, handler);
+    }
+
+    @Override
+    public LogDataHeader streamLogData(LogDataRequest request, String timeZone, ILogDataHandler handler) {
 
         // Execute query to the server
-        String returnedLogData = "";
-        try {
-            returnedLogData = myClient.executeLogQuery(query, "","");
-        } catch (RemoteException e) {
-            getLogger().error("Error executing GetFromStoreQuery in getLogData for Witsml1311Service: " + e.getMessage());
+        try (SpooledResponse returnedLogData = executeLogDataQuery(request)) {
+            if (returnedLogData == null)
+                return null;
+            return readLogData(returnedLogData, handler);
+        } catch (XMLStreamException | IOException e) {
+            getLogger().error("Could not parse log data response in streamLogData for the Witsml1311Service: " + e.getMessage());
             return null;
         }
+    }
 
-        if (returnedLogData == null)
-            return null;
-        if (returnedLogData.equals(""))
-            return null;
+    @Override
+    public LogDataBlock getLogDataBlock(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone) {
+        return getLogDataBlock(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth), timeZone);
+    }
 
-        // Convert to 1.4.1.1 to be able to use the helper methods
-        String convertedLogData = "";
+    @Override
+    public LogDataBlock getLogDataBlock(LogDataRequest request, String timeZone) {
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        if (streamLogData(request, timeZone, builder) == null)
+            return null;
+        return builder.build();
+    }
 
+    @Override
+    public void prefetchLogData(LogDataRequest request) {
+        if (queryExecutor == null || prefetchDepth == 0)
+            return;
+
+        long now = System.currentTimeMillis();
+        prefetched.values().removeIf(response -> now - response.created > PREFETCH_EXPIRY_MILLIS && response.discard());
+        if (prefetched.size() >= prefetchDepth || prefetched.containsKey(request))
+            return;
+
+        FutureTask<SpooledResponse> task = new FutureTask<>(() -> queryLogData(request));
+        if (prefetched.putIfAbsent(request, new PrefetchedResponse(task, now)) != null)
+            return;
         try {
-            WitsmlVersionTransformer transformer = new WitsmlVersionTransformer();
-            convertedLogData = transformer.convertVersion(returnedLogData);
-        } catch (TransformerException e) {
-            getLogger().error("Could not convert WITSML 1.3.1.1 response to 1.4.1.1");
-            return null;
+            queryExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            prefetched.remove(request);
+        }
+    }
+
+    @Override
+    public void fetchLogDataBatch(List<LogDataRequest> requests, ILogDataBatchHandler handler) {
+        if (queryExecutor == null) {
+            for (LogDataRequest request : requests) {
+                handler.onComplete(request, null, 0);
+            }
+            return;
+        }
+
+        // Query in parallel, but parse and hand over each response on this thread as it arrives. Responses
+        // stay in unclaimed until this thread takes them, so whichever side sees the batch abandoned first
+        // closes those that will never be read and their spool files are not left behind.
+        CompletionService<SpooledResponse> completionService = new ExecutorCompletionService<>(queryExecutor);
+        Map<Future<SpooledResponse>, LogDataRequest> pending = new HashMap<>();
+        Set<SpooledResponse> unclaimed = ConcurrentHashMap.newKeySet();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        for (LogDataRequest request : requests) {
+            pending.put(completionService.submit(() -> {
+                SpooledResponse response = executeLogDataQuery(request);
+                if (response != null) {
+                    unclaimed.add(response);
+                    if (abandoned.get() && unclaimed.remove(response))
+                        response.close();
+                }
+                return response;
+            }), request);
+        }
+
+        while (!pending.isEmpty()) {
+            Future<SpooledResponse> done;
+            try {
+                done = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandoned.set(true);
+                for (Map.Entry<Future<SpooledResponse>, LogDataRequest> entry : pending.entrySet()) {
+                    entry.getKey().cancel(true);
+                    handler.onComplete(entry.getValue(), null, 0);
+                }
+                for (SpooledResponse response : unclaimed) {
+                    if (unclaimed.remove(response))
+                        response.close();
+                }
+                return;
+            }
+            LogDataRequest request = pending.remove(done);
+
+            SpooledResponse returnedLogData = null;
+            try {
+                returnedLogData = done.get();
+                if (returnedLogData != null)
+                    unclaimed.remove(returnedLogData);
+            } catch (InterruptedException | ExecutionException e) {
+                getLogger().error("Error querying " + request + " in fetchLogDataBatch for Witsml1311Service: " + e.getMessage());
+            }
+
+            LogDataHeader header = null;
+            long queryMillis = 0;
+            if (returnedLogData != null) {
+                queryMillis = returnedLogData.getQueryMillis();
+                try {
+                    header = readLogData(returnedLogData, handler.onResponse(request));
+                } catch (XMLStreamException | IOException e) {
+                    getLogger().error("Could not parse log data response in fetchLogDataBatch for the Witsml1311Service: " + e.getMessage());
+                } finally {
+                    returnedLogData.close();
+                }
+            }
+            handler.onComplete(request, header, queryMillis);
+        }
+    }
+
+    // Reads the 1.3.1.1 response directly, handing each row to the handler as it is parsed
+    private LogDataHeader readLogData(SpooledResponse response, ILogDataHandler handler) throws XMLStreamException, IOException {
+        try (Reader reader = response.openReader()) {
+            return LogDataStreamReader.read(reader, handler);
+        }
+    }
+
+    private SpooledResponse executeLogDataQuery(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth){
+        return executeLogDataQuery(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth));
+    }
+
+    private SpooledResponse executeLogDataQuery(LogDataRequest request){
+
+        // Use the response of a prefetch for the same window if there is one, waiting for it if it is still in
+        // flight. If it has not started yet it is run here rather than waiting behind other work on the executor.
+        // A prefetch that failed, came back empty or was cancelled as it expired is queried again.
+        PrefetchedResponse response = prefetched.remove(request);
+        if (response != null) {
+            try {
+                response.task.run();
+                SpooledResponse prefetchedData = response.task.get();
+                if (prefetchedData != null)
+                    return prefetchedData;
+                getLogger().debug("Prefetch of " + request + " returned nothing, querying again");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                getLogger().warn("Prefetch of " + request + " failed, querying again: " + e.getMessage());
+            }
         }
+        return queryLogData(request);
+    }
 
-        // Deserialize the object
-        ObjLogs returnedLog = new ObjLogs();
+    // Returns null when the query failed or the server had nothing to send
+    private SpooledResponse queryLogData(LogDataRequest request){
+
+        // Create Query
+        String query = logDataTemplate.bind()
+                .set("uidWell", request.getWellId())
+                .set("uidWellbore", request.getWellboreId())
+                .set("uidLog", request.getLogId())
+                .set("startIndex", request.getStartDepth())
+                .set("startDateTimeIndex", request.getStartTime())
+                .set("endDateTimeIndex", removeTimeZone(request.getEndTime()))
+                .set("endIndex", request.getEndDepth())
+                .setXml("logCurveInfo", curveProjection.getLogCurveInfoQuery(request,
+                        curvesQuery -> clientPool.execute(client -> client.executeLogQuery(curvesQuery, "", ""))))
+                .render();
 
         try {
-            if (convertedLogData == null) return null;
-            if (convertedLogData.equals("")) return null;
-            returnedLog = WitsmlMarshal.deserialize(convertedLogData, ObjLogs.class);
-        } catch (JAXBException e) {
-            getLogger().error("Could not deserialize object in getLogData for the Witsml1311Service: " + e.getMessage());
+            querySlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
         }
+        String response;
+        long started = System.nanoTime();
+        try {
+            response = clientPool.execute(client -> client.executeLogQuery(query, "",""));
+        } catch (Exception e) {
+            getLogger().error("Error executing GetFromStoreQuery in getLogData for Witsml1311Service: " + e.getMessage());
+            return null;
+        } finally {
+            querySlots.release();
+        }
+        // Timed once a slot is held, so a batch waiting on its own other requests does not look slow
+        long queryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (response == null || response.equals(""))
+            return null;
 
-        return returnedLog;
+        try {
+            return SpooledResponse.of(response, spoolThreshold, spoolDirectory).timed(queryMillis);
+        } catch (IOException e) {
+            getLogger().warn("Could not spool log data response to " + spoolDirectory + ", keeping it in memory: " + e.getMessage());
+            return SpooledResponse.inMemory(response).timed(queryMillis);
+        }
     }
 
     private String removeTimeZone(String timeStamp){
@@ -249,38 +700,22 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
     	return "";
     }
 
-    private String getQuery(String resourcePath) throws IOException {
-        InputStream stream = getClass().getResourceAsStream(resourcePath);
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(stream));
-        return reader.lines().collect(Collectors.joining(
-                System.getProperty("line.separator")));
-    }
-
     @Override
     public ObjTrajectorys getTrajectoryData(String wellId, String wellboreId, String trajectoryId, String startDepth) {
         // Create Query
-        String query = "";
-        if (baseTrajQuery.equals("")) {
-            try {
-                baseTrajQuery = getQuery("/1311/GetTrajectoryData.xml");
-            } catch (IOException e) {
-                getLogger().error("Error reading base log query from /1311/GetLogData.xml: in GetData" + e.getMessage());
-            }
-        } else {
-            query = baseTrajQuery;
-            query = query.replace("%uidWell%", wellId);
-            query = query.replace("%uidWellbore%", wellboreId);
-            query = query.replace("%uidTrajectory%", trajectoryId);
-            query = query.replace("%mdMn%", startDepth);
-        }
+        String query = trajectoryTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uidTrajectory", trajectoryId)
+                .set("mdMn", startDepth)
+                .render();
 
         // Execute query to the server
         String returnedTrajectoryData = "";
 
         try {
-            returnedTrajectoryData = myClient.executeTrajectoryQuery(query, "","");
-        } catch (RemoteException e) {
+            returnedTrajectoryData = clientPool.execute(client -> client.executeTrajectoryQuery(query, "",""));
+        } catch (Exception e) {
             getLogger().error("Error executing GetFromStoreQuery in getTrajectoryData for Witsml1311Service: " + e.getMessage());
             return null;
         }
@@ -290,28 +725,27 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         if (returnedTrajectoryData.equals(""))
             return null;
 
-        // Convert to 1.4.1.1 to be able to use the helper methods
-        String convertedTrajectoryData = "";
+        if (directBinding) {
+            try {
+                ObjTrajectorys returnedTrajectory = VersionConversion.bindTrajectorys(marshallerPool, returnedTrajectoryData);
+                if (returnedTrajectory != null)
+                    return returnedTrajectory;
+            } catch (JAXBException | IllegalArgumentException e) {
+                getLogger().debug("Direct binding of trajectory response failed: " + e.getMessage());
+            }
+            getLogger().warn("Could not bind 1.3.1.1 trajectory response directly, falling back to XSLT conversion");
+        }
 
+        // Convert to 1.4.1.1 to be able to use the helper methods
         try {
-            WitsmlVersionTransformer transformer = new WitsmlVersionTransformer();
-            convertedTrajectoryData = transformer.convertVersion(returnedTrajectoryData);
+            return VersionConversion.convert(marshallerPool, returnedTrajectoryData, ObjTrajectorys.class);
         } catch (TransformerException e) {
             getLogger().error("Could not convert WITSML 1.3.1.1 response to 1.4.1.1");
             return null;
-        }
-
-        // Deserialize the object
-        ObjTrajectorys returnedTrajectory = new ObjTrajectorys();
-
-        try {
-            returnedTrajectory = WitsmlMarshal.deserialize(convertedTrajectoryData, ObjTrajectorys.class);
         } catch (JAXBException e) {
             getLogger().error("Could not deserialize object in getTrajectoryData for the Witsml1311Service: " + e.getMessage());
             return null;
         }
-
-        return returnedTrajectory;
     }
 
     @Override
@@ -329,51 +763,75 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         List<WitsmlObjectId> ids = new ArrayList<>();
         switch (target.getQueryLevel()){
             case Server: {
-                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells wells =
-                        getWell1311("", wellFilter);
-
-                if (wells == null)
-                    return null;
+                String key = HierarchyCache.wellsKey(wellFilter);
+                List<WitsmlObjectId> cached = hierarchyCache.getFresh(key);
+                if (cached != null)
+                    return cached;
+                HierarchyCache.Sweep sweep;
+                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells wells = queryChanged(key, "well",
+                        changedWellsTemplate.bind().set("statusWell", wellFilter),
+                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells.class);
+                if (wells != null) {
+                    sweep = hierarchyCache.update(key);
+                } else {
+                    wells = getWell1311("", wellFilter);
+                    if (wells == null)
+                        return null;
+                    sweep = hierarchyCache.sweep(key);
+                }
                 for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWell w:wells.getWell()) {
                     if (w == null)
                         continue;
                     LocalDateTime timeChanged = null;
-                    if (w.getCommonData() != null)
-                        timeChanged = w.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();
-                    ObjectMapper mapper = new ObjectMapper();
-                    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                    String data = null;
-                    try {
-                        data = mapper.writeValueAsString(w);
-                    } catch (JsonProcessingException e) {
-                        getLogger().error("Could not process well metadata");
+                    if (w.getCommonData() != null) {
+                        timeChanged = HierarchyCache.toLocalDateTime(w.getCommonData().getDTimLastChange());
+                        sweep.changedAt(w.getCommonData().getDTimLastChange());
                     }
-                    WitsmlObjectId objId = new WitsmlObjectId(w.getName(), w.getUid(), "well", "", timeChanged, data);
-
-                    ids.add(objId);
+                    WitsmlObjectId objId = sweep.unchanged(w.getUid(), timeChanged);
+                    if (objId == null) {
+                        WitsmlObjectId.ObjectData data = JsonWriters.objectData(w);
+                        objId = new WitsmlObjectId(w.getName(), w.getUid(), "well", "", timeChanged, data);
+                    }
+                    sweep.add(objId);
                 }
+                ids = sweep.commit();
                 break;
             }
             case Well: {
+                List<WitsmlObjectId> cached = hierarchyCache.getFresh(HierarchyCache.wellboresKey(target.getWell().getId()));
+                if (cached != null)
+                    return cached;
                 try {
-                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores wellbores =
-                            getWellboreData(target.getWell());
-                    if (wellbores == null)
-                        return null;
+                    String key = HierarchyCache.wellboresKey(target.getWell().getId());
+                    HierarchyCache.Sweep sweep;
+                    com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores wellbores = queryChanged(key, "wellbore",
+                            changedWellboresTemplate.bind().set("uidWell", target.getWell().getId()),
+                            com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores.class);
+                    if (wellbores != null) {
+                        sweep = hierarchyCache.update(key);
+                    } else {
+                        wellbores = getWellboreData(target.getWell());
+                        if (wellbores == null)
+                            return null;
+                        sweep = hierarchyCache.sweep(key);
+                    }
                     for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbore wb : wellbores.getWellbore()) {
                         if (wb == null)
                             continue;
 
                         LocalDateTime timeChanged = null;
-                        if (wb.getCommonData() != null)
-                            timeChanged = wb.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();
-                        ObjectMapper mapper = new ObjectMapper();
-                        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                        String data = mapper.writeValueAsString(wb);
-                        WitsmlObjectId objId = new WitsmlObjectId(wb.getName(), wb.getUid(), "wellbore", "/" + wb.getNameWell() + "(" + wb.getUidWell() + ")", timeChanged, data);
-
-                        ids.add(objId);
+                        if (wb.getCommonData() != null) {
+                            timeChanged = HierarchyCache.toLocalDateTime(wb.getCommonData().getDTimLastChange());
+                            sweep.changedAt(wb.getCommonData().getDTimLastChange());
+                        }
+                        WitsmlObjectId objId = sweep.unchanged(wb.getUid(), timeChanged);
+                        if (objId == null) {
+                            WitsmlObjectId.ObjectData data = JsonWriters.objectData(wb);
+                            objId = new WitsmlObjectId(wb.getName(), wb.getUid(), "wellbore", "/" + wb.getNameWell() + "(" + wb.getUidWell() + ")", timeChanged, data);
+                        }
+                        sweep.add(objId);
                     }
+                    ids = sweep.commit();
                 } catch (Exception ex){
                     getLogger().error("Error in getAvailableObjects: " + ex.getMessage());
                 }
@@ -386,102 +844,117 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         return ids;
     }
 
+    /**
+     * Queries the objects of a level of the hierarchy changed since the latest dTimLastChange listed
+     * in it. Returns null when the level needs a full sweep instead: it has not been swept, its full
+     * sweep interval has passed or the server rejected the query, after which the service sweeps in
+     * full until it is enabled again.
+     */
+    private <T> T queryChanged(String key, String objectType, QueryTemplate.Binding binding, Class<T> type) {
+        String since = hierarchyCache.changedSince(key);
+        if (since == null || changedQueriesRejected)
+            return null;
+        String query = binding.set("lastChange", since).render();
+        try {
+            String result = clientPool.execute(client -> client.executeObjectQuery(objectType, query, "returnElements=all", ""));
+            if (result == null || result.equals(""))
+                return null;
+            return marshallerPool.deserialize(result, type);
+        } catch (Exception e) {
+            changedQueriesRejected = true;
+            getLogger().warn("Could not query the " + objectType + "s changed since " + since +
+                    ", listing wells and wellbores in full from now on: " + e.getMessage());
+            return null;
+        }
+    }
+
     private List<WitsmlObjectId> queryForTypes(QueryTarget targetObj){
-        List<WitsmlObjectId> ids = new ArrayList<>();
         List<String> types = targetObj.getObjectsToQuery();
         String wellId = targetObj.getWell().getId();
         String wellboreId = targetObj.getWellbore().getId();
         String parentURI = "/" + targetObj.getWell().getName() + "(" + targetObj.getWell().getId() + ")/" + targetObj.getWellbore().getName() + "(" + targetObj.getWellbore().getId() + ")";
 
-        for (String type : types) {
-            try {
-                switch (type.toUpperCase()) {
-                    case "LOG":
-                        ObjLogs logs = myClient.getLogMetadataAsObj(wellId, wellboreId);
+        return ObjectTypeQueries.run(listingExecutor, types, type -> queryForType(type, wellId, wellboreId, parentURI),
+                typeQueryTimeoutMillis, getLogger());
+    }
 
-                        if (logs == null) {
-                            continue;
-                        }
-                        for (ObjLog log : logs.getLog()) {
-                            if (log == null)
-                                continue;
-                            LocalDateTime timeChanged = null;
-                            try { timeChanged=log.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();} catch (Exception npe) {}
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(log);
-                            ids.add(new WitsmlObjectId(log.getName(), log.getUid(), "log", parentURI, timeChanged, data));
-                        }
-                        break;
-                    case "MESSAGE":
-                        String messageXml = myClient.getMessages(wellId, wellboreId);
-                        if (messageXml == null) {
-                            continue;
-                        }
-                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages messages =
-                                WitsmlMarshal.deserialize(messageXml,
-                                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages.class);
-                        for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessage message : messages.getMessage()) {
-                            if (message == null)
-                                continue;
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(message);
-                            ids.add(new WitsmlObjectId(message.getName(), message.getUid(), "message", parentURI, null, data));
-                        }
-                        break;
-                    case "RIG":
-                        String rigsXml = myClient.getRigs(wellId, wellboreId);
+    private List<WitsmlObjectId> queryForType(String type, String wellId, String wellboreId, String parentURI) throws Exception {
+        List<WitsmlObjectId> ids = new ArrayList<>();
+        switch (type.toUpperCase()) {
+            case "LOG":
+                ObjLogs logs = clientPool.execute(client -> client.getLogMetadataAsObj(wellId, wellboreId));
 
-                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs rigs =
-                                WitsmlMarshal.deserialize(rigsXml,
-                                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs.class);
+                if (logs == null) {
+                    return ids;
+                }
+                for (ObjLog log : logs.getLog()) {
+                    if (log == null)
+                        continue;
+                    LocalDateTime timeChanged = null;
+                    try { timeChanged=log.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();} catch (Exception npe) {}
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(log);
+                    ids.add(new WitsmlObjectId(log.getName(), log.getUid(), "log", parentURI, timeChanged, data));
+                }
+                break;
+            case "MESSAGE":
+                String messageXml = clientPool.execute(client -> client.getMessages(wellId, wellboreId));
+                if (messageXml == null) {
+                    return ids;
+                }
+                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages messages =
+                        marshallerPool.deserialize(messageXml,
+                                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessages.class);
+                for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjMessage message : messages.getMessage()) {
+                    if (message == null)
+                        continue;
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(message);
+                    ids.add(new WitsmlObjectId(message.getName(), message.getUid(), "message", parentURI, null, data));
+                }
+                break;
+            case "RIG":
+                String rigsXml = clientPool.execute(client -> client.getRigs(wellId, wellboreId));
 
-                        if (rigs == null) {
-                            continue;
-                        }
+                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs rigs =
+                        marshallerPool.deserialize(rigsXml,
+                                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRigs.class);
 
-                        if (rigs.getRig().size() == 0) {
-                            continue;
-                        }
+                if (rigs == null) {
+                    return ids;
+                }
 
-                        for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRig rig : rigs.getRig()) {
-                            if (rig == null)
-                                continue;
-                            LocalDateTime timeChanged = rig.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(rig);
-                            ids.add(new WitsmlObjectId(rig.getName(), rig.getUid(), "rig", parentURI, timeChanged, data));
-                        }
-                        break;
-                    case "TRAJECTORY":
-                        String trajectorysXml = myClient.getTrajectorys(wellId, wellboreId);
-                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys trajectorys =
-                                WitsmlMarshal.deserialize(trajectorysXml,
-                                        com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys.class);
-                        if (trajectorys == null) {
-                            continue;
-                        }
+                if (rigs.getRig().size() == 0) {
+                    return ids;
+                }
 
-                        if (trajectorys.getTrajectory().size() == 0) {
-                            continue;
-                        }
+                for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjRig rig : rigs.getRig()) {
+                    if (rig == null)
+                        continue;
+                    LocalDateTime timeChanged = rig.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(rig);
+                    ids.add(new WitsmlObjectId(rig.getName(), rig.getUid(), "rig", parentURI, timeChanged, data));
+                }
+                break;
+            case "TRAJECTORY":
+                String trajectorysXml = clientPool.execute(client -> client.getTrajectorys(wellId, wellboreId));
+                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys trajectorys =
+                        marshallerPool.deserialize(trajectorysXml,
+                                com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectorys.class);
+                if (trajectorys == null) {
+                    return ids;
+                }
 
-                        for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectory trajectory: trajectorys.getTrajectory()) {
-                            if (trajectory == null)
-                                continue;
-                            //LocalDateTime timeChanged = trajectory.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(trajectory);
-                            ids.add(new WitsmlObjectId(trajectory.getName(), trajectory.getUid(), "trajectory", parentURI, data));
-                        }
-                        break;
+                if (trajectorys.getTrajectory().size() == 0) {
+                    return ids;
                 }
-            } catch (Exception ex) {
-                getLogger().error("Error in getting data from WITSML server (Witsml1311Service::queryForTypes): " + ex.getMessage());
-            }
+
+                for (com.hashmapinc.tempus.WitsmlObjects.v1311.ObjTrajectory trajectory: trajectorys.getTrajectory()) {
+                    if (trajectory == null)
+                        continue;
+                    //LocalDateTime timeChanged = trajectory.getCommonData().getDTimLastChange().toGregorianCalendar().toZonedDateTime().toLocalDateTime();
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(trajectory);
+                    ids.add(new WitsmlObjectId(trajectory.getName(), trajectory.getUid(), "trajectory", parentURI, data));
+                }
+                break;
         }
         return ids;
     }
@@ -490,7 +963,7 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
     public ObjWells getWell(String wellId, String status) {
         ObjWells wells = null;
         try {
-            wells = myClient.getWellsAsObj(wellId, status);
+            wells = clientPool.execute(client -> client.getWellsAsObj(wellId, status));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -499,35 +972,44 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
 
     @Override
     public LogMetadataInfo getLogMetaData(String wellId, String wellboreId, String logId) {
-        String query = "";
-        if (baseLogMetadataQuery.equals("")) {
-            try {
-                baseLogMetadataQuery = getQuery("/1311/GetLogMetadataQuery.xml");
-            } catch (IOException e) {
-                getLogger().error("Error reading base log query from /1311/GetLogMetadataQuery.xml: in getLogMetaData" + e.getMessage());
-            }
-        }
-
-        query = baseLogMetadataQuery;
-        query = query.replace("%uidWell%", wellId);
-        query = query.replace("%uidWellbore%", wellboreId);
-        query = query.replace("%uid%", logId);
-
-
-        String result = "";
         try {
-            result = myClient.executeLogQuery(query, "", "");
-        } catch (RemoteException e) {
+            return metadataCache.get(LogMetadataCache.key(wellId, wellboreId, logId),
+                    () -> queryLastChange(wellId, wellboreId, logId),
+                    () -> queryLogMetaData(wellId, wellboreId, logId));
+        } catch (Exception e) {
             getLogger().error("Error querying server for log metadata. " + e.getMessage());
+            return null;
         }
+    }
 
-        if (result.equals(""))
+    private String queryLastChange(String wellId, String wellboreId, String logId) throws Exception {
+        String query = lastChangeTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uid", logId)
+                .render();
+        String result = clientPool.execute(client -> client.executeLogQuery(query, "", ""));
+        if (result == null || result.equals(""))
+            return null;
+        LogDataHeader header = LogDataStreamReader.readHeader(new StringReader(result));
+        return header == null ? null : header.getLastChange();
+    }
+
+    private LogMetadataCache.Fetched queryLogMetaData(String wellId, String wellboreId, String logId) throws Exception {
+        String query = logMetadataTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uid", logId)
+                .render();
+
+        String result = clientPool.execute(client -> client.executeLogQuery(query, "", ""));
+        if (result == null || result.equals(""))
             return null;
 
         com.hashmapinc.tempus.WitsmlObjects.v1311.ObjLogs logs = null;
 
         try {
-            logs = WitsmlMarshal.deserialize(result, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjLogs.class);
+            logs = marshallerPool.deserialize(result, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjLogs.class);
         } catch (JAXBException e) {
             getLogger().error("Error deserialing log metadata response from server. " + e.getMessage());
             return null;
@@ -539,24 +1021,23 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         getLogger().debug(getTimeZone(zone));
         info.timeZone = getTimeZone(zone);
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        mapper.setDateFormat(WitsmlConstants.getSimpleDateTimeFormat(info.timeZone));
+        ObjectWriter writer = JsonWriters.nonNull(info.timeZone);
         String jsonResult = null;
 
         try {
-            jsonResult = mapper.writeValueAsString(logs);
+            jsonResult = writer.writeValueAsString(logs);
         } catch (JsonProcessingException e) {
             getLogger().error("Error serializing log metadata to JSON. " + e.getMessage());
         }
 
         info.metadata = jsonResult;
-        return info;
+        LogDataHeader header = LogDataStreamReader.readHeader(new StringReader(result));
+        return new LogMetadataCache.Fetched(info, header == null ? null : header.getLastChange());
     }
 
     @Override
     public String getUrl() {
-        return myClient.getUrl();
+        return endpointUrl;
     }
 
     @Override
@@ -564,8 +1045,8 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         String wellsXml = null;
         com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells wells = null;
         try {
-            wellsXml = myClient.getWells(wellId, status);
-            wells = WitsmlMarshal.deserialize(wellsXml, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells.class);
+            wellsXml = clientPool.execute(client -> client.getWells(wellId, status));
+            wells = marshallerPool.deserialize(wellsXml, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWells.class);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -592,7 +1073,7 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
     public ObjWellbores getWellbore(String wellId, String wellboreId) {
         ObjWellbores wellbores = null;
         try {
-            wellbores = myClient.getWellboresForWellAsObj(wellId, wellboreId);
+            wellbores = clientPool.execute(client -> client.getWellboresForWellAsObj(wellId, wellboreId));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -604,8 +1085,8 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
         com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores wellbores = null;
 
         try {
-            String wellboresXml = myClient.getWellboresForWell(wellId, wellboreId);
-            wellbores = WitsmlMarshal.deserialize(wellboresXml,
+            String wellboresXml = clientPool.execute(client -> client.getWellboresForWell(wellId, wellboreId));
+            wellbores = marshallerPool.deserialize(wellboresXml,
                     com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores.class);
         } catch (Exception e) {
             e.printStackTrace();
@@ -615,11 +1096,35 @@ public class Witsml1311Service extends AbstractControllerService implements IWit
 
     private com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores getWellboreData(WitsmlObjectId well){
         try {
-            String wellbores =  myClient.getWellboresForWell(well.getId());
-            return WitsmlMarshal.deserialize(wellbores, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores.class);
+            String wellbores =  clientPool.execute(client -> client.getWellboresForWell(well.getId()));
+            return marshallerPool.deserialize(wellbores, com.hashmapinc.tempus.WitsmlObjects.v1311.ObjWellbores.class);
         } catch (Exception e) {
             getLogger().error("Error in getWellbores: " + e.getMessage());
             return null;
         }
     }
+
+    private static class PrefetchedResponse {
+        private final FutureTask<SpooledResponse> task;
+        private final long created;
+
+        PrefetchedResponse(FutureTask<SpooledResponse> task, long created) {
+            this.task = task;
+            this.created = created;
+        }
+
+        // Cancels the query or removes the spooled response nobody collected, always returns true
+        boolean discard() {
+            if (!task.cancel(true)) {
+                try {
+                    SpooledResponse response = task.get();
+                    if (response != null)
+                        response.close();
+                } catch (InterruptedException | ExecutionException | CancellationException e) {
+                    // nothing was spooled
+                }
+            }
+            return true;
+        }
+    }
 }
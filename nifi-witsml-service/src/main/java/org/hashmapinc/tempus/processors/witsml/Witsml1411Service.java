@@ -1,12 +1,12 @@
 package org.hashmapinc.tempus.processors.witsml;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.hashmapinc.tempus.WitsmlObjects.v1411.*;
 import com.hashmapinc.tempus.witsml.api.*;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnDisabled;
 import org.apache.nifi.annotation.lifecycle.OnEnabled;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.controller.AbstractControllerService;
@@ -17,9 +17,19 @@ import org.apache.nifi.reporting.InitializationException;
 
 import com.hashmapinc.tempus.witsml.client.Client;
 
+import javax.xml.bind.JAXBException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Chris on 6/2/17.
@@ -30,7 +40,24 @@ import java.util.List;
 public class Witsml1411Service extends AbstractControllerService implements IWitsmlServiceApi{
 
     // Global session variables used by all processors using an instance
-    private static Client myClient = null;
+    private WitsmlClientPool<Client> clientPool = null;
+    private String endpointUrl = "";
+    private static final long CLIENT_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private QueryTemplate logDataTemplate = null;
+    private QueryTemplate logMetadataTemplate = null;
+    private QueryTemplate lastChangeTemplate = null;
+    private QueryTemplate trajectoryTemplate = null;
+    private QueryTemplate changedWellsTemplate = null;
+    private QueryTemplate changedWellboresTemplate = null;
+    private volatile boolean changedQueriesRejected = false;
+    private LogCurveProjection curveProjection = null;
+    private LogMetadataCache metadataCache = new LogMetadataCache(0, 0, null);
+    private HierarchyCache hierarchyCache = new HierarchyCache(0);
+
+    // The object types under a wellbore are listed in parallel on this executor
+    private ExecutorService listingExecutor = null;
+    private long typeQueryTimeoutMillis = TimeUnit.MINUTES.toMillis(2);
+    private WitsmlMarshallerPool marshallerPool = new WitsmlMarshallerPool();
 
 
     //Properties
@@ -56,6 +83,81 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor CLIENT_POOL_SIZE = new PropertyDescriptor
+            .Builder().name("Client Pool Size")
+            .description("The maximum number of connected clients this service keeps for the server. Each concurrent " +
+                    "request uses a client of its own, requests wait for a free client once they are all in use.")
+            .required(true)
+            .defaultValue("4")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor CLIENT_IDLE_TIMEOUT = new PropertyDescriptor
+            .Builder().name("Client Idle Timeout")
+            .description("Clients left unused for longer than this are dropped from the pool and a new one is " +
+                    "connected when it is next needed.")
+            .required(true)
+            .defaultValue("5 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor METADATA_CACHE_SIZE = new PropertyDescriptor
+            .Builder().name("Metadata Cache Size")
+            .description("The number of logs whose metadata is kept in memory. The least recently used log is dropped " +
+                    "once the cache is full. Set to 0 to query the server for metadata on every request.")
+            .required(true)
+            .defaultValue("1000")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor METADATA_CACHE_TTL = new PropertyDescriptor
+            .Builder().name("Metadata Cache TTL")
+            .description("How long cached log metadata is used without going back to the server. After that the " +
+                    "log's dTimLastChange is checked and the metadata is only queried again if the log has changed.")
+            .required(true)
+            .defaultValue("1 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TYPE_QUERY_TIMEOUT = new PropertyDescriptor
+            .Builder().name("Object Type Query Timeout")
+            .description("When the objects under a wellbore are listed, each object type is queried at the same " +
+                    "time. A type that has not answered within this time is left out of the listing so it does not " +
+                    "hold up the others.")
+            .required(true)
+            .defaultValue("2 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor HIERARCHY_REFRESH_INTERVAL = new PropertyDescriptor
+            .Builder().name("Hierarchy Refresh Interval")
+            .description("How long the wells of the server and the wellbores of each well are listed from memory " +
+                    "before they are queried again. Between full sweeps only the wells and wellbores whose " +
+                    "dTimLastChange is later than the latest one already listed are queried. Wells and wellbores " +
+                    "whose dTimLastChange has not moved since the last query are not serialized again. Set to 0 " +
+                    "sec to query on every listing.")
+            .required(true)
+            .defaultValue("1 min")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor HIERARCHY_FULL_SWEEP_INTERVAL = new PropertyDescriptor
+            .Builder().name("Hierarchy Full Sweep Interval")
+            .description("How often all wells of the server and all wellbores of each well are queried rather than " +
+                    "only the changed ones, which drops deleted wells and wellbores and picks up those without a " +
+                    "dTimLastChange. Servers that reject a query on dTimLastChange are always swept in full.")
+            .required(true)
+            .defaultValue("1 hour")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor REPORTING_SERVICE = new PropertyDescriptor
+            .Builder().name("Reporting Service")
+            .description("The controller service the metadata cache hits, misses and evictions are reported to.")
+            .required(false)
+            .identifiesControllerService(IStatsDReportingController.class)
+            .build();
+
     private static final List<PropertyDescriptor> properties;
 
     static {
@@ -63,6 +165,14 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
         props.add(ENDPOINT_URL);
         props.add(USERNAME);
         props.add(PASSWORD);
+        props.add(CLIENT_POOL_SIZE);
+        props.add(CLIENT_IDLE_TIMEOUT);
+        props.add(METADATA_CACHE_SIZE);
+        props.add(METADATA_CACHE_TTL);
+        props.add(HIERARCHY_REFRESH_INTERVAL);
+        props.add(HIERARCHY_FULL_SWEEP_INTERVAL);
+        props.add(TYPE_QUERY_TIMEOUT);
+        props.add(REPORTING_SERVICE);
         properties = Collections.unmodifiableList(props);
     }
 
@@ -76,11 +186,79 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
         final ComponentLog logger = getLogger();
         logger.info("Creating Witsml Client");
 
-        myClient = new Client(context.getProperty(ENDPOINT_URL).getValue());
-        myClient.setUserName(context.getProperty(USERNAME).getValue());
-        myClient.setPassword(context.getProperty(PASSWORD).getValue());
-        myClient.setVersion(WitsmlVersion.VERSION_1411);
-        myClient.connect();
+        endpointUrl = context.getProperty(ENDPOINT_URL).getValue();
+        final String username = context.getProperty(USERNAME).getValue();
+        final String password = context.getProperty(PASSWORD).getValue();
+        clientPool = new WitsmlClientPool<>(() -> {
+            Client client = new Client(endpointUrl);
+            client.setUserName(username);
+            client.setPassword(password);
+            client.setVersion(WitsmlVersion.VERSION_1411);
+            client.connect();
+            return client;
+        }, context.getProperty(CLIENT_POOL_SIZE).asInteger(),
+                context.getProperty(CLIENT_IDLE_TIMEOUT).asTimePeriod(TimeUnit.MILLISECONDS), CLIENT_WAIT_MILLIS);
+
+        // Connect the first client now so a bad endpoint or login fails the enable
+        try {
+            clientPool.release(clientPool.borrow());
+        } catch (Exception e) {
+            throw new InitializationException(e);
+        }
+
+        try {
+            logDataTemplate = QueryTemplate.load("/1411/GetLogDataQuery.xml");
+            logMetadataTemplate = QueryTemplate.load("/1411/GetLogMetadataQuery.xml");
+            lastChangeTemplate = QueryTemplate.load("/1411/GetLogLastChangeQuery.xml");
+            trajectoryTemplate = QueryTemplate.load("/1411/GetTrajectoryData.xml");
+            changedWellsTemplate = QueryTemplate.load("/1411/GetChangedWellsQuery.xml");
+            changedWellboresTemplate = QueryTemplate.load("/1411/GetChangedWellboresQuery.xml");
+            curveProjection = new LogCurveProjection(QueryTemplate.load("/1411/GetLogDataCurve.xml"),
+                    QueryTemplate.load("/1411/GetLogCurvesQuery.xml"), getLogger());
+        } catch (IOException e) {
+            throw new InitializationException("Could not read the 1.4.1.1 query templates: " + e.getMessage());
+        }
+
+        metadataCache = new LogMetadataCache(context.getProperty(METADATA_CACHE_SIZE).asInteger(),
+                context.getProperty(METADATA_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS),
+                context.getProperty(REPORTING_SERVICE).asControllerService(IStatsDReportingController.class));
+        hierarchyCache = new HierarchyCache(context.getProperty(HIERARCHY_REFRESH_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS),
+                context.getProperty(HIERARCHY_FULL_SWEEP_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS));
+        changedQueriesRejected = false;
+
+        typeQueryTimeoutMillis = context.getProperty(TYPE_QUERY_TIMEOUT).asTimePeriod(TimeUnit.MILLISECONDS);
+        listingExecutor = Executors.newFixedThreadPool(context.getProperty(CLIENT_POOL_SIZE).asInteger(), runnable -> {
+            Thread thread = new Thread(runnable, "Witsml1411Service listing");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Responses are bound straight into the 1.4.1.1 objects, no version conversion is needed
+        marshallerPool = new WitsmlMarshallerPool();
+        try {
+            marshallerPool.prepare(ObjLogs.class, ObjTrajectorys.class);
+        } catch (JAXBException e) {
+            logger.warn("Could not prepare JAXB contexts, they will be created on first use: " + e.getMessage());
+        }
+    }
+
+    @OnDisabled
+    public void onDisabled() {
+        if (clientPool != null) {
+            getLogger().info("Client pool statistics: " + clientPool);
+            clientPool.clear();
+        }
+        getLogger().info("Marshaller pool statistics: " + marshallerPool);
+        if (curveProjection != null)
+            curveProjection.clear();
+        getLogger().info("Metadata cache statistics: " + metadataCache);
+        metadataCache.clear();
+        getLogger().info("Hierarchy cache statistics: " + hierarchyCache);
+        hierarchyCache.clear();
+        if (listingExecutor != null) {
+            listingExecutor.shutdownNow();
+            listingExecutor = null;
+        }
     }
 
     @Override
@@ -88,49 +266,49 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
         try {
             switch (object) {
                 case "ATTACHMENT" :
-                    return myClient.getAttachmentsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getAttachmentsAsObj(wellId, wellboreId));
                 case "BHARUN":
-                    return myClient.getBhaRunsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getBhaRunsAsObj(wellId, wellboreId));
                 case "CEMENTJOB":
-                    return myClient.getCementJobsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getCementJobsAsObj(wellId, wellboreId));
                 case "CHANGELOG" :
-                    return myClient.getChangeLogsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getChangeLogsAsObj(wellId, wellboreId));
                 case "CONVCORE":
-                    return myClient.getConvCoresAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getConvCoresAsObj(wellId, wellboreId));
                 case "DRILLREPORT" :
-                    return myClient.getDrillReportsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getDrillReportsAsObj(wellId, wellboreId));
                 case "FLUIDREPORT":
-                    return myClient.getFluidsReportsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getFluidsReportsAsObj(wellId, wellboreId));
                 case "FORMATIONMARKER":
-                    return myClient.getFormationMarkersAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getFormationMarkersAsObj(wellId, wellboreId));
                 case "LOG":
-                    return myClient.getLogMetadataAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getLogMetadataAsObj(wellId, wellboreId));
                 case "MESSAGE":
-                    return myClient.getMessagesAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getMessagesAsObj(wellId, wellboreId));
                 case "MUDLOG":
-                    return myClient.getMudLogsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getMudLogsAsObj(wellId, wellboreId));
                 case "OBJECTGROUP" :
-                    return myClient.getObjectGroupsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getObjectGroupsAsObj(wellId, wellboreId));
                 case "OPSREPORT":
-                    return myClient.getOpsReportsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getOpsReportsAsObj(wellId, wellboreId));
                 case "RIG":
-                    return myClient.getRigsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getRigsAsObj(wellId, wellboreId));
                 case "RISK":
-                    return myClient.getRisksAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getRisksAsObj(wellId, wellboreId));
                 case "SIDEWALLCORE":
-                    return myClient.getSideWallCoresAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getSideWallCoresAsObj(wellId, wellboreId));
                 case "STIMJOB" :
-                    return myClient.getStimJobsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getStimJobsAsObj(wellId, wellboreId));
                 case "SURVEYPROGRAM":
-                    return myClient.getSurveyProgramsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getSurveyProgramsAsObj(wellId, wellboreId));
                 case "TARGET":
-                    return myClient.getTargetsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getTargetsAsObj(wellId, wellboreId));
                 case "TRAJECTORY":
-                    return myClient.getTrajectorysAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getTrajectorysAsObj(wellId, wellboreId));
                 case "TUBULAR":
-                    return myClient.getTubularsAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getTubularsAsObj(wellId, wellboreId));
                 case "WBGEOMETRY":
-                    return myClient.getWbGeometrysAsObj(wellId, wellboreId);
+                    return clientPool.execute(client -> client.getWbGeometrysAsObj(wellId, wellboreId));
                 default:
                     getLogger().error("The Object : " + object + " is not supported/present");
                     break;
@@ -145,17 +323,130 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
 
     @Override
     public String getUrl() {
-        return myClient.getUrl();
+        return endpointUrl;
     }
 
     @Override
     public ObjLogs getLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone) {
-        return null;
+        String returnedLogData = queryLogData(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth));
+        if (returnedLogData == null)
+            return null;
+
+        try {
+            return marshallerPool.deserialize(returnedLogData, ObjLogs.class);
+        } catch (JAXBException e) {
+            getLogger().error("Could not deserialize object in getLogData for the Witsml1411Service: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public LogDataHeader streamLogData(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone, ILogDataHandler handler) {
+        return streamLogData(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth), timeZone, handler);
+    }
+
+    @Override
+    public LogDataBlock getLogDataBlock(String wellId, String wellboreId, String logId, String startDepth, String startTime, String endTime, String endDepth, String timeZone) {
+        return getLogDataBlock(new LogDataRequest(wellId, wellboreId, logId, startDepth, startTime, endTime, endDepth), timeZone);
+    }
+
+    @Override
+    public LogDataHeader streamLogData(LogDataRequest request, String timeZone, ILogDataHandler handler) {
+        String returnedLogData = queryLogData(request);
+        if (returnedLogData == null)
+            return null;
+
+        // The response carries a mnemonicList, so rows are handed over as they are parsed
+        try {
+            return LogDataStreamReader.read(new StringReader(returnedLogData), handler);
+        } catch (XMLStreamException e) {
+            getLogger().error("Could not parse log data response in streamLogData for the Witsml1411Service: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public LogDataBlock getLogDataBlock(LogDataRequest request, String timeZone) {
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        if (streamLogData(request, timeZone, builder) == null)
+            return null;
+        return builder.build();
+    }
+
+    // Returns null when the query failed or the server had nothing to send
+    private String queryLogData(LogDataRequest request) {
+        String query = logDataTemplate.bind()
+                .set("uidWell", request.getWellId())
+                .set("uidWellbore", request.getWellboreId())
+                .set("uidLog", request.getLogId())
+                .set("startIndex", request.getStartDepth())
+                .set("startDateTimeIndex", request.getStartTime())
+                .set("endDateTimeIndex", request.getEndTime())
+                .set("endIndex", request.getEndDepth())
+                .setXml("logCurveInfo", curveProjection.getLogCurveInfoQuery(request,
+                        curvesQuery -> clientPool.execute(client -> client.executeLogQuery(curvesQuery, "", ""))))
+                .render();
+
+        String result;
+        try {
+            result = clientPool.execute(client -> client.executeLogQuery(query, "", ""));
+        } catch (Exception e) {
+            getLogger().error("Error executing GetFromStoreQuery in getLogData for Witsml1411Service: " + e.getMessage());
+            return null;
+        }
+        if (result == null || result.equals(""))
+            return null;
+        return result;
+    }
+
+    @Override
+    public void prefetchLogData(LogDataRequest request) {
+    }
+
+    @Override
+    public void fetchLogDataBatch(List<LogDataRequest> requests, ILogDataBatchHandler handler) {
+        // Queried one after the other, concurrency comes from the processor tasks sharing the client pool
+        for (LogDataRequest request : requests) {
+            LogDataHeader header = null;
+            long started = System.nanoTime();
+            String returnedLogData = queryLogData(request);
+            long queryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (returnedLogData != null) {
+                try {
+                    header = LogDataStreamReader.read(new StringReader(returnedLogData), handler.onResponse(request));
+                } catch (XMLStreamException e) {
+                    getLogger().error("Could not parse log data response in fetchLogDataBatch for the Witsml1411Service: " + e.getMessage());
+                }
+            }
+            handler.onComplete(request, header, queryMillis);
+        }
     }
 
     @Override
     public ObjTrajectorys getTrajectoryData(String wellId, String wellboreId, String trajectoryId, String startDepth) {
-        return null;
+        String query = trajectoryTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uidTrajectory", trajectoryId)
+                .set("mdMn", startDepth)
+                .render();
+
+        String returnedTrajectoryData;
+        try {
+            returnedTrajectoryData = clientPool.execute(client -> client.executeTrajectoryQuery(query, "", ""));
+        } catch (Exception e) {
+            getLogger().error("Error executing GetFromStoreQuery in getTrajectoryData for Witsml1411Service: " + e.getMessage());
+            return null;
+        }
+        if (returnedTrajectoryData == null || returnedTrajectoryData.equals(""))
+            return null;
+
+        try {
+            return marshallerPool.deserialize(returnedTrajectoryData, ObjTrajectorys.class);
+        } catch (JAXBException e) {
+            getLogger().error("Could not deserialize object in getTrajectoryData for the Witsml1411Service: " + e.getMessage());
+            return null;
+        }
     }
 
     @Override
@@ -164,44 +455,71 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
         List<WitsmlObjectId> ids = new ArrayList<>();
         switch (target.getQueryLevel()){
             case Server: {
-                ObjWells wells = getWell("", wellFilter);
-
-                if (wells == null)
-                    return null;
+                String key = HierarchyCache.wellsKey(wellFilter);
+                List<WitsmlObjectId> cached = hierarchyCache.getFresh(key);
+                if (cached != null)
+                    return cached;
+                HierarchyCache.Sweep sweep;
+                ObjWells wells = queryChanged(key, "well", changedWellsTemplate.bind().set("statusWell", wellFilter),
+                        ObjWells.class);
+                if (wells != null) {
+                    sweep = hierarchyCache.update(key);
+                } else {
+                    wells = getWell("", wellFilter);
+                    if (wells == null)
+                        return null;
+                    sweep = hierarchyCache.sweep(key);
+                }
                 for (ObjWell w:wells.getWell()) {
                     if (w == null)
                         continue;
-                    ObjectMapper mapper = new ObjectMapper();
-                    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                    String data = null;
-                    try {
-                        data = mapper.writeValueAsString(w);
-                    } catch (JsonProcessingException e) {
-                        getLogger().error("unable to parse wellbore data in getAvailable objects: " + e.getMessage());
+                    LocalDateTime timeChanged = null;
+                    if (w.getCommonData() != null) {
+                        timeChanged = HierarchyCache.toLocalDateTime(w.getCommonData().getDTimLastChange());
+                        sweep.changedAt(w.getCommonData().getDTimLastChange());
                     }
-                    WitsmlObjectId objId = new WitsmlObjectId(w.getName(), w.getUid(), "well", "", data);
-                    ids.add(objId);
+                    WitsmlObjectId objId = sweep.unchanged(w.getUid(), timeChanged);
+                    if (objId == null) {
+                        WitsmlObjectId.ObjectData data = JsonWriters.objectData(w);
+                        objId = new WitsmlObjectId(w.getName(), w.getUid(), "well", "", timeChanged, data);
+                    }
+                    sweep.add(objId);
                 }
+                ids = sweep.commit();
                 break;
             }
             case Well: {
-                ObjWellbores wellbores = getWellboreData(target.getWell());
-                if (wellbores == null)
-                    return null;
+                String key = HierarchyCache.wellboresKey(target.getWell().getId());
+                List<WitsmlObjectId> cached = hierarchyCache.getFresh(key);
+                if (cached != null)
+                    return cached;
+                HierarchyCache.Sweep sweep;
+                ObjWellbores wellbores = queryChanged(key, "wellbore",
+                        changedWellboresTemplate.bind().set("uidWell", target.getWell().getId()), ObjWellbores.class);
+                if (wellbores != null) {
+                    sweep = hierarchyCache.update(key);
+                } else {
+                    wellbores = getWellboreData(target.getWell());
+                    if (wellbores == null)
+                        return null;
+                    sweep = hierarchyCache.sweep(key);
+                }
                 for (ObjWellbore wb:wellbores.getWellbore()){
                     if (wb == null)
                         continue;
-                    ObjectMapper mapper = new ObjectMapper();
-                    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                    String data = null;
-                    try {
-                        data = mapper.writeValueAsString(wb);
-                    } catch (JsonProcessingException e) {
-                        getLogger().error("unable to parse wellbore data in getAvailable objects: " + e.getMessage());
+                    LocalDateTime timeChanged = null;
+                    if (wb.getCommonData() != null) {
+                        timeChanged = HierarchyCache.toLocalDateTime(wb.getCommonData().getDTimLastChange());
+                        sweep.changedAt(wb.getCommonData().getDTimLastChange());
+                    }
+                    WitsmlObjectId objId = sweep.unchanged(wb.getUid(), timeChanged);
+                    if (objId == null) {
+                        WitsmlObjectId.ObjectData data = JsonWriters.objectData(wb);
+                        objId = new WitsmlObjectId(wb.getName(), wb.getUid(), "wellbore", "/" + wb.getNameWell() + "(" + wb.getUidWell() + ")", timeChanged, data);
                     }
-                    WitsmlObjectId objId = new WitsmlObjectId(wb.getName(), wb.getUid(), "wellbore", "/" + wb.getNameWell() + "(" + wb.getUidWell() + ")", data);
-                    ids.add(objId);
+                    sweep.add(objId);
                 }
+                ids = sweep.commit();
                 break;
             }
             case Wellbore:
@@ -213,7 +531,7 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
 
     private ObjWells getWellData(){
         try {
-            return myClient.getWellsAsObj();
+            return clientPool.execute(client -> client.getWellsAsObj());
         } catch (Exception e) {
             getLogger().error("Error in getWells: " + e.getMessage());
             return null;
@@ -222,86 +540,101 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
 
     private ObjWellbores getWellboreData(WitsmlObjectId well){
         try {
-            return myClient.getWellboresForWellAsObj(well.getId());
+            return clientPool.execute(client -> client.getWellboresForWellAsObj(well.getId()));
         } catch (Exception e) {
             getLogger().error("Error in getWellbores: " + e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Queries the objects of a level of the hierarchy changed since the latest dTimLastChange listed
+     * in it. Returns null when the level needs a full sweep instead: it has not been swept, its full
+     * sweep interval has passed or the server rejected the query, after which the service sweeps in
+     * full until it is enabled again.
+     */
+    private <T> T queryChanged(String key, String objectType, QueryTemplate.Binding binding, Class<T> type) {
+        String since = hierarchyCache.changedSince(key);
+        if (since == null || changedQueriesRejected)
+            return null;
+        String query = binding.set("lastChange", since).render();
+        try {
+            String result = clientPool.execute(client -> client.executeObjectQuery(objectType, query, "returnElements=all", ""));
+            if (result == null || result.equals(""))
+                return null;
+            return marshallerPool.deserialize(result, type);
+        } catch (Exception e) {
+            changedQueriesRejected = true;
+            getLogger().warn("Could not query the " + objectType + "s changed since " + since +
+                    ", listing wells and wellbores in full from now on: " + e.getMessage());
+            return null;
+        }
+    }
+
     private List<WitsmlObjectId> queryForTypes(QueryTarget targetObj){
-        List<WitsmlObjectId> ids = new ArrayList<>();
         List<String> types = targetObj.getObjectsToQuery();
         String wellId = targetObj.getWell().getId();
         String wellboreId = targetObj.getWellbore().getId();
         String parentURI = "/" + targetObj.getWell().getName() + "(" + targetObj.getWell().getId() + ")/" + targetObj.getWellbore().getName() + "(" + targetObj.getWellbore().getId() + ")";
 
-        for (String type : types) {
-            try {
-                switch (type.toUpperCase()) {
-                    case "LOG":
-                        ObjLogs logs = myClient.getLogMetadataAsObj(wellId, wellboreId);
-                        if (logs == null) {
-                            continue;
-                        }
-                        for (ObjLog log : logs.getLog()) {
-                            if (log == null)
-                                continue;
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(log);
-                            ids.add(new WitsmlObjectId(log.getName(), log.getUid(), "log", parentURI, data));
-                        }
-                        break;
-                    case "MESSAGE":
-                        ObjMessages messages = myClient.getMessagesAsObj(wellId, wellboreId);
-                        if (messages == null) {
-                            continue;
-                        }
-                        for (ObjMessage message : messages.getMessage()) {
-                            if (message == null)
-                                continue;
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(message);
-                            ids.add(new WitsmlObjectId(message.getName(), message.getUid(), "message", parentURI, data));
-                        }
-                        break;
-                    case "RIG":
-                        ObjRigs rigs = myClient.getRigsAsObj(wellId, wellboreId);
-                        if (rigs == null) {
-                            continue;
-                        }
-                        for (ObjRig rig : rigs.getRig()) {
-                            if (rig == null)
-                                continue;
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(rig);
-                            ids.add(new WitsmlObjectId(rig.getName(), rig.getUid(), "rig", parentURI, data));
-                        }
-                        break;
-                    case "TRAJECTORY":
-                        ObjTrajectorys trajectorys = myClient.getTrajectorysAsObj(wellId, wellboreId);
-                        if (trajectorys == null) {
-                            continue;
-                        }
-                        for (ObjTrajectory trajectory: trajectorys.getTrajectory()) {
-                            if (trajectory == null)
-                                continue;
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-                            String data = mapper.writeValueAsString(trajectory);
-                            ids.add(new WitsmlObjectId(trajectory.getName(), trajectory.getUid(), "trajectory", parentURI, data));
-                        }
-                        break;
-                    default:
-                        getLogger().error("The Object : " + type + " is not supported/present");
-                        break;
+        return ObjectTypeQueries.run(listingExecutor, types, type -> queryForType(type, wellId, wellboreId, parentURI),
+                typeQueryTimeoutMillis, getLogger());
+    }
+
+    private List<WitsmlObjectId> queryForType(String type, String wellId, String wellboreId, String parentURI) throws Exception {
+        List<WitsmlObjectId> ids = new ArrayList<>();
+        switch (type.toUpperCase()) {
+            case "LOG":
+                ObjLogs logs = clientPool.execute(client -> client.getLogMetadataAsObj(wellId, wellboreId));
+                if (logs == null) {
+                    return ids;
                 }
-            } catch (Exception ex) {
-                getLogger().error("Error in getting data from WITSML server");
-            }
+                for (ObjLog log : logs.getLog()) {
+                    if (log == null)
+                        continue;
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(log);
+                    ids.add(new WitsmlObjectId(log.getName(), log.getUid(), "log", parentURI, data));
+                }
+                break;
+            case "MESSAGE":
+                ObjMessages messages = clientPool.execute(client -> client.getMessagesAsObj(wellId, wellboreId));
+                if (messages == null) {
+                    return ids;
+                }
+                for (ObjMessage message : messages.getMessage()) {
+                    if (message == null)
+                        continue;
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(message);
+                    ids.add(new WitsmlObjectId(message.getName(), message.getUid(), "message", parentURI, data));
+                }
+                break;
+            case "RIG":
+                ObjRigs rigs = clientPool.execute(client -> client.getRigsAsObj(wellId, wellboreId));
+                if (rigs == null) {
+                    return ids;
+                }
+                for (ObjRig rig : rigs.getRig()) {
+                    if (rig == null)
+                        continue;
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(rig);
+                    ids.add(new WitsmlObjectId(rig.getName(), rig.getUid(), "rig", parentURI, data));
+                }
+                break;
+            case "TRAJECTORY":
+                ObjTrajectorys trajectorys = clientPool.execute(client -> client.getTrajectorysAsObj(wellId, wellboreId));
+                if (trajectorys == null) {
+                    return ids;
+                }
+                for (ObjTrajectory trajectory: trajectorys.getTrajectory()) {
+                    if (trajectory == null)
+                        continue;
+                    WitsmlObjectId.ObjectData data = JsonWriters.objectData(trajectory);
+                    ids.add(new WitsmlObjectId(trajectory.getName(), trajectory.getUid(), "trajectory", parentURI, data));
+                }
+                break;
+            default:
+                getLogger().error("The Object : " + type + " is not supported/present");
+                break;
         }
         return ids;
     }
@@ -310,7 +643,7 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
     public ObjWells getWell(String wellId, String status) {
         ObjWells wells = null;
         try {
-            wells = myClient.getWellsAsObj(wellId, status);
+            wells = clientPool.execute(client -> client.getWellsAsObj(wellId, status));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -319,7 +652,65 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
 
     @Override
     public LogMetadataInfo getLogMetaData(String wellId, String wellboreId, String logId) {
-        return null;
+        try {
+            return metadataCache.get(LogMetadataCache.key(wellId, wellboreId, logId),
+                    () -> queryLastChange(wellId, wellboreId, logId),
+                    () -> queryLogMetaData(wellId, wellboreId, logId));
+        } catch (Exception e) {
+            getLogger().error("Error querying server for log metadata. " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String queryLastChange(String wellId, String wellboreId, String logId) throws Exception {
+        String query = lastChangeTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uid", logId)
+                .render();
+        String result = clientPool.execute(client -> client.executeLogQuery(query, "", ""));
+        if (result == null || result.equals(""))
+            return null;
+        LogDataHeader header = LogDataStreamReader.readHeader(new StringReader(result));
+        return header == null ? null : header.getLastChange();
+    }
+
+    private LogMetadataCache.Fetched queryLogMetaData(String wellId, String wellboreId, String logId) throws Exception {
+        String query = logMetadataTemplate.bind()
+                .set("uidWell", wellId)
+                .set("uidWellbore", wellboreId)
+                .set("uid", logId)
+                .render();
+
+        String result = clientPool.execute(client -> client.executeLogQuery(query, "", ""));
+        if (result == null || result.equals(""))
+            return null;
+
+        ObjLogs logs;
+        try {
+            logs = marshallerPool.deserialize(result, ObjLogs.class);
+        } catch (JAXBException e) {
+            getLogger().error("Error deserialing log metadata response from server. " + e.getMessage());
+            return null;
+        }
+
+        LogMetadataInfo info = new LogMetadataInfo();
+        int zone = 0;
+        try {
+            zone = logs.getLog().get(0).getStartDateTimeIndex().getTimezone();
+        } catch (Exception ignrEx) {}
+        if (zone == DatatypeConstants.FIELD_UNDEFINED)
+            zone = 0;
+        info.timeZone = ZoneOffset.ofTotalSeconds(zone * 60).getId();
+
+        ObjectWriter writer = JsonWriters.nonNull(info.timeZone);
+        try {
+            info.metadata = writer.writeValueAsString(logs);
+        } catch (JsonProcessingException e) {
+            getLogger().error("Error serializing log metadata to JSON. " + e.getMessage());
+        }
+        LogDataHeader header = LogDataStreamReader.readHeader(new StringReader(result));
+        return new LogMetadataCache.Fetched(info, header == null ? null : header.getLastChange());
     }
 
     @Override
@@ -331,7 +722,7 @@ public class Witsml1411Service extends AbstractControllerService implements IWit
     public ObjWellbores getWellbore(String wellId, String wellboreId) {
         ObjWellbores wellbores = null;
         try {
-            wellbores = myClient.getWellboresForWellAsObj(wellId, wellboreId);
+            wellbores = clientPool.execute(client -> client.getWellboresForWellAsObj(wellId, wellboreId));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -0,0 +1,156 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of connected WITSML clients. A call borrows a client, runs against it and hands it
+ * back, so concurrent processor tasks each get their own SOAP client instead of queueing on one.
+ * Clients are created on demand up to the maximum size, the most recently used idle client is handed
+ * out first and clients left idle longer than the idle timeout are closed out of the pool, as the
+ * server will usually have dropped their session by then. A client whose call fails with a
+ * {@link RemoteException} is treated as unhealthy and replaced rather than returned.
+ */
+class WitsmlClientPool<C> {
+
+    interface ClientFactory<C> {
+        C create() throws Exception;
+    }
+
+    interface ClientCall<C, T> {
+        T call(C client) throws Exception;
+    }
+
+    private static class IdleClient<C> {
+        final C client;
+        final long idleSince = System.nanoTime();
+
+        IdleClient(C client) {
+            this.client = client;
+        }
+    }
+
+    private final ClientFactory<C> factory;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final long waitMillis;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<IdleClient<C>> idle = new ConcurrentLinkedDeque<>();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+
+    WitsmlClientPool(ClientFactory<C> factory, int maxSize, long idleTimeoutMillis, long waitMillis) {
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.waitMillis = waitMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Runs the call on a pooled client and returns the client to the pool afterwards.
+     */
+    <T> T execute(ClientCall<C, T> call) throws Exception {
+        C client = borrow();
+        try {
+            T result = call.call(client);
+            release(client);
+            return result;
+        } catch (RemoteException e) {
+            invalidate(client);
+            throw e;
+        } catch (Exception | Error e) {
+            release(client);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a client out of the pool, creating one when none is idle. Waits for a client to be
+     * returned when the pool is at its maximum size.
+     */
+    C borrow() throws Exception {
+        if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS))
+            throw new TimeoutException("No WITSML client became available within " + waitMillis + " ms");
+        try {
+            evictIdle();
+            IdleClient<C> idleClient = idle.pollFirst();
+            if (idleClient != null)
+                return idleClient.client;
+            C client = factory.create();
+            created.incrementAndGet();
+            return client;
+        } catch (Exception | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(C client) {
+        idle.offerFirst(new IdleClient<>(client));
+        permits.release();
+    }
+
+    /**
+     * Drops a borrowed client that should not be used again, its place is taken by a new client on
+     * a later borrow.
+     */
+    void invalidate(C client) {
+        invalidated.incrementAndGet();
+        permits.release();
+    }
+
+    void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<IdleClient<C>> clients = idle.descendingIterator();
+        while (clients.hasNext()) {
+            IdleClient<C> idleClient = clients.next();
+            if (now - idleClient.idleSince < idleTimeoutNanos)
+                break;
+            if (idle.removeLastOccurrence(idleClient))
+                evicted.incrementAndGet();
+        }
+    }
+
+    void clear() {
+        idle.clear();
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    long getCreatedCount() {
+        return created.get();
+    }
+
+    long getEvictedCount() {
+        return evicted.get();
+    }
+
+    long getInvalidatedCount() {
+        return invalidated.get();
+    }
+
+    @Override
+    public String toString() {
+        return "clients " + getCreatedCount() + " created, " + getEvictedCount() + " evicted, " +
+                getInvalidatedCount() + " invalidated, " + getIdleCount() + " idle";
+    }
+}
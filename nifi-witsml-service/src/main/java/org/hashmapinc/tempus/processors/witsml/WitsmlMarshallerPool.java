@@ -0,0 +1,119 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.hashmapinc.tempus.WitsmlObjects.Util.WitsmlVersionTransformer;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the JAXB contexts, unmarshallers and version transformers used by a service so they are
+ * built once instead of on every request. JAXBContext is thread safe and shared; unmarshallers and
+ * transformers are not, so each call borrows one and hands it back when it is done. At most
+ * {@link #MAX_IDLE} idle instances are kept per pool, anything over that is left to the collector.
+ */
+public class WitsmlMarshallerPool {
+
+    static final int MAX_IDLE = 16;
+
+    private final ConcurrentMap<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, BlockingQueue<Unmarshaller>> unmarshallers = new ConcurrentHashMap<>();
+    private final BlockingQueue<WitsmlVersionTransformer> transformers = new ArrayBlockingQueue<>(MAX_IDLE);
+
+    private final AtomicLong unmarshallerHits = new AtomicLong();
+    private final AtomicLong unmarshallerMisses = new AtomicLong();
+    private final AtomicLong transformerHits = new AtomicLong();
+    private final AtomicLong transformerMisses = new AtomicLong();
+
+    /**
+     * Builds the contexts for the given classes up front so the first requests do not pay for it.
+     */
+    public void prepare(Class<?>... classes) throws JAXBException {
+        for (Class<?> clazz : classes) {
+            Unmarshaller unmarshaller = getContext(clazz).createUnmarshaller();
+            getQueue(clazz).offer(unmarshaller);
+        }
+    }
+
+    public <T> T deserialize(String xml, Class<T> clazz) throws JAXBException {
+        if (xml == null)
+            return null;
+        BlockingQueue<Unmarshaller> queue = getQueue(clazz);
+        Unmarshaller unmarshaller = queue.poll();
+        if (unmarshaller == null) {
+            unmarshallerMisses.incrementAndGet();
+            unmarshaller = getContext(clazz).createUnmarshaller();
+        } else {
+            unmarshallerHits.incrementAndGet();
+        }
+        try {
+            return unmarshaller.unmarshal(new StreamSource(new StringReader(xml)), clazz).getValue();
+        } finally {
+            queue.offer(unmarshaller);
+        }
+    }
+
+    /**
+     * Converts a 1.3.1.1 document to 1.4.1.1 with a pooled transformer, which holds on to its
+     * compiled stylesheet between calls.
+     */
+    public String convertVersion(String xml) throws TransformerException {
+        WitsmlVersionTransformer transformer = transformers.poll();
+        if (transformer == null) {
+            transformerMisses.incrementAndGet();
+            transformer = new WitsmlVersionTransformer();
+        } else {
+            transformerHits.incrementAndGet();
+        }
+        try {
+            return transformer.convertVersion(xml);
+        } finally {
+            transformers.offer(transformer);
+        }
+    }
+
+    public long getUnmarshallerHits() {
+        return unmarshallerHits.get();
+    }
+
+    public long getUnmarshallerMisses() {
+        return unmarshallerMisses.get();
+    }
+
+    public long getTransformerHits() {
+        return transformerHits.get();
+    }
+
+    public long getTransformerMisses() {
+        return transformerMisses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "unmarshallers " + getUnmarshallerHits() + " hits/" + getUnmarshallerMisses() + " misses, " +
+                "transformers " + getTransformerHits() + " hits/" + getTransformerMisses() + " misses";
+    }
+
+    private JAXBContext getContext(Class<?> clazz) throws JAXBException {
+        JAXBContext context = contexts.get(clazz);
+        if (context == null) {
+            context = JAXBContext.newInstance(clazz);
+            JAXBContext existing = contexts.putIfAbsent(clazz, context);
+            if (existing != null)
+                context = existing;
+        }
+        return context;
+    }
+
+    private BlockingQueue<Unmarshaller> getQueue(Class<?> clazz) {
+        return unmarshallers.computeIfAbsent(clazz, c -> new ArrayBlockingQueue<>(MAX_IDLE));
+    }
+}
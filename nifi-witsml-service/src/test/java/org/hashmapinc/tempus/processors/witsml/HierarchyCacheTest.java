@@ -0,0 +1,128 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class HierarchyCacheTest {
+
+    private static final LocalDateTime CHANGED = LocalDateTime.of(2017, 6, 2, 10, 0);
+
+    private static WitsmlObjectId well(String uid, LocalDateTime lastChange) {
+        return new WitsmlObjectId("Well " + uid, uid, "well", "", lastChange, "{}");
+    }
+
+    private static XMLGregorianCalendar calendar(String text) throws Exception {
+        return DatatypeFactory.newInstance().newXMLGregorianCalendar(text);
+    }
+
+    @Test
+    public void testServesSweepWithinRefreshInterval() {
+        HierarchyCache cache = new HierarchyCache(60000);
+        String key = HierarchyCache.wellsKey("active");
+        assertNull(cache.getFresh(key));
+
+        HierarchyCache.Sweep sweep = cache.sweep(key);
+        sweep.add(well("w1", CHANGED));
+        sweep.add(well("w2", CHANGED));
+        sweep.commit();
+
+        List<WitsmlObjectId> ids = cache.getFresh(key);
+        assertEquals(2, ids.size());
+        assertEquals("w1", ids.get(0).getId());
+        assertNull(cache.getFresh(HierarchyCache.wellsKey("inactive")));
+    }
+
+    @Test
+    public void testReusesUnchangedObjects() {
+        HierarchyCache cache = new HierarchyCache(0);
+        String key = HierarchyCache.wellboresKey("w1");
+
+        HierarchyCache.Sweep first = cache.sweep(key);
+        WitsmlObjectId unchanged = well("wb1", CHANGED);
+        first.add(unchanged);
+        first.add(well("wb2", CHANGED));
+        first.add(well("wb3", null));
+        first.commit();
+        assertNull(cache.getFresh(key));
+
+        HierarchyCache.Sweep second = cache.sweep(key);
+        assertSame(unchanged, second.unchanged("wb1", CHANGED));
+        assertNull(second.unchanged("wb2", CHANGED.plusMinutes(1)));
+        assertNull(second.unchanged("wb3", null));
+        assertNull(second.unchanged("wb4", CHANGED));
+        assertEquals(1, cache.getReusedCount());
+    }
+
+    @Test
+    public void testSweepReplacesLevel() {
+        HierarchyCache cache = new HierarchyCache(60000);
+        String key = HierarchyCache.wellsKey("");
+
+        HierarchyCache.Sweep first = cache.sweep(key);
+        first.add(well("w1", CHANGED));
+        first.add(well("w2", CHANGED));
+        first.commit();
+
+        HierarchyCache.Sweep second = cache.sweep(key);
+        second.add(well("w2", CHANGED));
+        List<WitsmlObjectId> ids = second.commit();
+        assertEquals(1, ids.size());
+        assertEquals(1, cache.getFresh(key).size());
+        assertNull(cache.sweep(key).unchanged("w1", CHANGED));
+    }
+
+    @Test
+    public void testUpdateMergesChangedObjects() throws Exception {
+        HierarchyCache cache = new HierarchyCache(0, 60000);
+        String key = HierarchyCache.wellsKey("");
+        assertNull(cache.changedSince(key));
+
+        HierarchyCache.Sweep first = cache.sweep(key);
+        first.add(well("w1", CHANGED));
+        first.changedAt(calendar("2017-06-02T10:00:00.000-05:00"));
+        first.add(well("w2", CHANGED));
+        first.changedAt(calendar("2017-06-02T14:30:00.000Z"));
+        first.commit();
+        assertEquals("2017-06-02T10:00:00.000-05:00", cache.changedSince(key));
+
+        HierarchyCache.Sweep update = cache.update(key);
+        update.add(well("w3", CHANGED.plusHours(1)));
+        update.changedAt(calendar("2017-06-02T16:00:00.000Z"));
+        WitsmlObjectId changed = well("w1", CHANGED.plusHours(1));
+        update.add(changed);
+        List<WitsmlObjectId> ids = update.commit();
+
+        assertEquals(3, ids.size());
+        assertSame(changed, ids.get(0));
+        assertEquals("w2", ids.get(1).getId());
+        assertEquals("w3", ids.get(2).getId());
+        assertEquals("2017-06-02T16:00:00.000Z", cache.changedSince(key));
+        assertEquals(1, cache.getSweepCount());
+        assertEquals(1, cache.getUpdateCount());
+    }
+
+    @Test
+    public void testFullSweepDueWithoutLastChangeOrAfterInterval() throws Exception {
+        HierarchyCache cache = new HierarchyCache(0, 60000);
+        String key = HierarchyCache.wellboresKey("w1");
+        HierarchyCache.Sweep first = cache.sweep(key);
+        first.add(well("wb1", null));
+        first.commit();
+        assertNull(cache.changedSince(key));
+
+        HierarchyCache expiring = new HierarchyCache(0, 0);
+        HierarchyCache.Sweep sweep = expiring.sweep(key);
+        sweep.add(well("wb1", CHANGED));
+        sweep.changedAt(calendar("2017-06-02T10:00:00Z"));
+        sweep.commit();
+        assertNull(expiring.changedSince(key));
+    }
+}
@@ -0,0 +1,82 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class JsonWritersTest {
+
+    public static class Sample {
+        private String name = "Well 1";
+        private String status = null;
+        private Date dTimLastChange = new Date(1496397600000L);
+
+        public String getName() {
+            return name;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Date getDTimLastChange() {
+            return dTimLastChange;
+        }
+    }
+
+    @Test
+    public void testLeavesOutNulls() throws Exception {
+        assertEquals("{\"name\":\"Well 1\",\"dtimLastChange\":1496397600000}",
+                JsonWriters.nonNull().writeValueAsString(new Sample()));
+    }
+
+    @Test
+    public void testWritesDatesInTimeZone() throws Exception {
+        assertEquals("{\"name\":\"Well 1\",\"dtimLastChange\":\"2017-06-02T05:00:00.000Z\"}",
+                JsonWriters.nonNull("-05:00").writeValueAsString(new Sample()));
+    }
+
+    @Test
+    public void testWritesDatesWithPattern() throws Exception {
+        assertEquals("{\"name\":\"Well 1\",\"dtimLastChange\":\"2017\"}",
+                JsonWriters.nonAbsent("yyyy").writeValueAsString(new Sample()));
+    }
+
+    @Test
+    public void testReusesWriters() {
+        assertSame(JsonWriters.nonNull("Z"), JsonWriters.nonNull("Z"));
+        assertSame(JsonWriters.nonAbsent("yyyy-MM-dd"), JsonWriters.nonAbsent("yyyy-MM-dd"));
+    }
+
+    @Test
+    public void testWritesObjectDataOnDemand() throws Exception {
+        Sample sample = new Sample();
+        WitsmlObjectId id = new WitsmlObjectId("Well 1", "w1", "well", "", JsonWriters.objectData(sample));
+        sample.name = "Well 2";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean[] closed = new boolean[1];
+        id.writeData(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        });
+
+        assertEquals("{\"name\":\"Well 2\",\"dtimLastChange\":1496397600000}", out.toString("UTF-8"));
+        assertEquals(out.toString("UTF-8"), id.getData());
+        assertFalse(closed[0]);
+    }
+}
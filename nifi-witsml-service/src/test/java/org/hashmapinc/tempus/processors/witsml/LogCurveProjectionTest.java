@@ -0,0 +1,55 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.util.MockComponentLog;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogCurveProjectionTest {
+
+    private static final String CURVES_1311 =
+            "<logs version=\"1.3.1.1\" xmlns=\"http://www.witsml.org/schemas/131\">" +
+            "<log uidWell=\"W1\" uidWellbore=\"WB1\" uid=\"L1\">" +
+            "<indexType>date time</indexType><indexCurve columnIndex=\"1\">TIME</indexCurve>" +
+            "<logCurveInfo uid=\"TIME\"><mnemonic>TIME</mnemonic><columnIndex>1</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"GR1\"><mnemonic>GR1</mnemonic><columnIndex>2</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"GR12\"><mnemonic>GR12</mnemonic><columnIndex>3</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"GR1234\"><mnemonic>GR1234</mnemonic><columnIndex>4</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"A,B\"><mnemonic>A,B</mnemonic><columnIndex>5</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"ROP\"><mnemonic>ROP</mnemonic><columnIndex>6</columnIndex></logCurveInfo>" +
+            "</log></logs>";
+
+    private final LogCurveProjection projection = new LogCurveProjection(
+            QueryTemplate.parse("<logCurveInfo><mnemonic>%mnemonic%</mnemonic></logCurveInfo>"),
+            QueryTemplate.parse("<log uid=\"%uid%\"/>"), new MockComponentLog("test", this));
+
+    private String project(String mnemonics) {
+        LogDataRequest request = new LogDataRequest("W1", "WB1", "L1", null, "2017-08-01T00:00:00Z", null, null, mnemonics);
+        return projection.getLogCurveInfoQuery(request, query -> CURVES_1311);
+    }
+
+    private static String curves(String... mnemonics) {
+        StringBuilder query = new StringBuilder();
+        for (String mnemonic : mnemonics)
+            query.append("<logCurveInfo><mnemonic>").append(mnemonic).append("</mnemonic></logCurveInfo>");
+        return query.toString();
+    }
+
+    @Test
+    public void testSplitsOnCommasBetweenExpressions() {
+        assertEquals(Arrays.asList("GR[0-9]{1,3}", "[,;]X", "A\\,B", "ROP"),
+                LogDataRequest.splitMnemonics(" GR[0-9]{1,3}, [,;]X ,A\\,B,,ROP"));
+    }
+
+    @Test
+    public void testQuantifierWithCommaSelectsCurves() {
+        assertEquals(curves("TIME", "GR1", "GR12", "ROP"), project("GR[0-9]{1,2},ROP"));
+    }
+
+    @Test
+    public void testEscapedCommaMatchesMnemonic() {
+        assertEquals(curves("TIME", "A,B"), project("A\\,B"));
+    }
+}
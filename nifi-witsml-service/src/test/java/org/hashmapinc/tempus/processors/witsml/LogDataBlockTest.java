@@ -0,0 +1,130 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class LogDataBlockTest {
+
+    private static final String LOG_1311 =
+            "<logs version=\"1.3.1.1\" xmlns=\"http://www.witsml.org/schemas/131\">" +
+            "<log uidWell=\"W1\" uidWellbore=\"WB1\" uid=\"L1\">" +
+            "<indexType>date time</indexType>" +
+            "<logCurveInfo uid=\"TIME\"><mnemonic>TIME</mnemonic><columnIndex>1</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"ROP\"><mnemonic>ROP</mnemonic><nullValue>-999.25</nullValue>" +
+            "<columnIndex>2</columnIndex><typeLogData>double</typeLogData></logCurveInfo>" +
+            "<logCurveInfo uid=\"ACT\"><mnemonic>ACT</mnemonic><columnIndex>3</columnIndex>" +
+            "<typeLogData>string</typeLogData></logCurveInfo>" +
+            "<logCurveInfo uid=\"HKLD\"><mnemonic>HKLD</mnemonic><columnIndex>4</columnIndex></logCurveInfo>" +
+            "<logData>" +
+            "<data>2017-08-01T00:00:01.000Z,12.5,\"Drilling, rotating\",100</data>" +
+            "<data>2017-08-01T00:00:02.000Z,-999.25,Tripping,n/a</data>" +
+            "<data>2017-08-01T00:00:03.000Z,,,</data>" +
+            "</logData></log></logs>";
+
+    @Test
+    public void testBuildsColumnsFromStream() throws Exception {
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        LogDataStreamReader.read(new StringReader(LOG_1311), builder);
+        LogDataBlock block = builder.build();
+
+        assertEquals(3, block.getRowCount());
+        assertTrue(block.isTimeIndexed());
+        assertEquals("TIME", block.getIndexMnemonic());
+        assertEquals(1501545601000L, block.getTimeIndex()[0]);
+        assertEquals(3, block.getCurveCount());
+
+        assertEquals("ROP", block.getMnemonic(0));
+        assertTrue(block.isNumeric(0));
+        assertEquals(12.5, block.getDouble(0, 0), 0.0);
+        assertTrue(block.isNull(0, 1));
+        assertTrue(block.isNull(0, 2));
+
+        assertFalse(block.isNumeric(1));
+        assertEquals("Drilling, rotating", block.getString(1, 0));
+        assertEquals("Tripping", block.getString(1, 1));
+
+        // untyped curve falls back to text once a non numeric value shows up
+        assertFalse(block.isNumeric(2));
+        assertEquals("100", block.getString(2, 0));
+        assertEquals("n/a", block.getString(2, 1));
+        assertTrue(block.isNull(2, 2));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        LogDataHeader header = new LogDataHeader();
+        header.setIndexType("measured depth");
+        header.setMnemonics(new String[]{"DEPTH", "GR"});
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        builder.onHeader(header);
+        for (int i = 0; i < 1000; i++) {
+            builder.onRow(i + "," + (i % 7 == 0 ? "" : Integer.toString(i * 2)));
+        }
+        LogDataBlock block = builder.build();
+
+        assertEquals(1000, block.getRowCount());
+        assertFalse(block.isTimeIndexed());
+        assertEquals(999.0, block.getDepthIndex()[999], 0.0);
+        assertTrue(block.isNull(0, 994));
+        assertEquals(1996.0, block.getValues(0)[998], 0.0);
+    }
+
+    @Test
+    public void testIndexCurveNamedByHeader() {
+        LogDataHeader header = new LogDataHeader();
+        header.setIndexType("measured depth");
+        header.setIndexCurve("DEPTH");
+        header.setMnemonics(new String[]{"GR", "DEPTH", "ROP"});
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        builder.onHeader(header);
+        builder.onRow("12,1000.5,7.25");
+        builder.onRow("14,1001.0,8");
+        LogDataBlock block = builder.build();
+
+        assertEquals("DEPTH", block.getIndexMnemonic());
+        assertEquals(1001.0, block.getDepthIndex()[1], 0.0);
+        assertEquals(2, block.getCurveCount());
+        assertEquals("GR", block.getMnemonic(0));
+        assertEquals(14.0, block.getDouble(0, 1), 0.0);
+        assertEquals("ROP", block.getMnemonic(1));
+        assertEquals(7.25, block.getDouble(1, 0), 0.0);
+    }
+
+    @Test
+    public void testIndexFallsBackToFirstColumn() {
+        LogDataHeader header = new LogDataHeader();
+        header.setIndexType("measured depth");
+        header.setIndexCurve("MD");
+        header.setMnemonics(new String[]{"DEPTH", "GR"});
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        builder.onHeader(header);
+        builder.onRow("1000.5,12");
+        LogDataBlock block = builder.build();
+
+        assertEquals("DEPTH", block.getIndexMnemonic());
+        assertEquals(1000.5, block.getDepthIndex()[0], 0.0);
+        assertEquals("GR", block.getMnemonic(0));
+    }
+
+    @Test
+    public void testUntypedCurveKeepsTextAsRead() {
+        LogDataHeader header = new LogDataHeader();
+        header.setIndexType("measured depth");
+        header.setMnemonics(new String[]{"DEPTH", "FLAG"});
+        LogDataBlock.Builder builder = new LogDataBlock.Builder();
+        builder.onHeader(header);
+        for (int i = 0; i < 300; i++) {
+            builder.onRow(i + ",1" + (i % 2 == 0 ? "2" : ".50"));
+        }
+        builder.onRow("300,OFF");
+        LogDataBlock block = builder.build();
+
+        assertFalse(block.isNumeric(0));
+        assertEquals("12", block.getString(0, 0));
+        assertEquals("1.50", block.getString(0, 299));
+        assertEquals("OFF", block.getString(0, 300));
+    }
+}
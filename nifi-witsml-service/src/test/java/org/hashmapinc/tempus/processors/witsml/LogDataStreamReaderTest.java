@@ -0,0 +1,81 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogDataStreamReaderTest {
+
+    private static final String LOG_1311 =
+            "<logs version=\"1.3.1.1\" xmlns=\"http://www.witsml.org/schemas/131\">" +
+            "<log uidWell=\"W1\" uidWellbore=\"WB1\" uid=\"L1\">" +
+            "<nameWell>Well 1</nameWell><name>Time Log</name><objectGrowing>true</objectGrowing>" +
+            "<indexType>date time</indexType>" +
+            "<startDateTimeIndex>2017-08-01T00:00:00.000Z</startDateTimeIndex>" +
+            "<endDateTimeIndex>2017-08-01T00:00:02.000Z</endDateTimeIndex>" +
+            "<logCurveInfo uid=\"ROP\"><mnemonic>ROP</mnemonic><unit>m/h</unit><nullValue>-999.25</nullValue>" +
+            "<minIndex uom=\"\"/><columnIndex>2</columnIndex></logCurveInfo>" +
+            "<logCurveInfo uid=\"TIME\"><mnemonic>TIME</mnemonic><columnIndex>1</columnIndex></logCurveInfo>" +
+            "<logData><data>2017-08-01T00:00:01.000Z,12.5</data><data>2017-08-01T00:00:02.000Z,-999.25</data></logData>" +
+            "</log></logs>";
+
+    @Test
+    public void testReads1311LogInColumnOrder() throws Exception {
+        List<String> rows = new ArrayList<>();
+        List<LogDataHeader> headers = new ArrayList<>();
+
+        LogDataHeader header = LogDataStreamReader.read(new StringReader(LOG_1311), new ILogDataHandler() {
+            @Override
+            public void onHeader(LogDataHeader header) {
+                assertTrue(rows.isEmpty());
+                headers.add(header);
+            }
+
+            @Override
+            public void onRow(String row) {
+                rows.add(row);
+            }
+        });
+
+        assertEquals(1, headers.size());
+        assertEquals("L1", header.getUid());
+        assertEquals("Well 1", header.getNameWell());
+        assertTrue(header.isTimeIndexed());
+        assertTrue(header.isObjectGrowing());
+        assertEquals("2017-08-01T00:00:02.000Z", header.getEndDateTimeIndex());
+        assertArrayEquals(new String[]{"TIME", "ROP"}, header.getMnemonics());
+        assertEquals("-999.25", header.getCurves().get(0).getNullValue());
+        assertEquals(2, rows.size());
+        assertEquals("2017-08-01T00:00:01.000Z,12.5", rows.get(0));
+    }
+
+    @Test
+    public void testHeaderDeliveredWithoutRows() throws Exception {
+        String log = "<logs xmlns=\"http://www.witsml.org/schemas/1series\"><log uid=\"L2\">" +
+                "<indexType>measured depth</indexType><endIndex uom=\"m\">1500.5</endIndex>" +
+                "<logData><mnemonicList>DEPTH,GR</mnemonicList></logData></log></logs>";
+        List<LogDataHeader> headers = new ArrayList<>();
+
+        LogDataHeader header = LogDataStreamReader.read(new StringReader(log), new ILogDataHandler() {
+            @Override
+            public void onHeader(LogDataHeader header) {
+                headers.add(header);
+            }
+
+            @Override
+            public void onRow(String row) {
+                fail("No rows expected");
+            }
+        });
+
+        assertEquals(1, headers.size());
+        assertFalse(header.isTimeIndexed());
+        assertEquals(1500.5, header.getEndIndex(), 0.0);
+        assertEquals("m", header.getIndexUnit());
+        assertArrayEquals(new String[]{"DEPTH", "GR"}, header.getMnemonics());
+    }
+}
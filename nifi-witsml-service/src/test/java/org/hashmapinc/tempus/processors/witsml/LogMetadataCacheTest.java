@@ -0,0 +1,107 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LogMetadataCacheTest {
+
+    private final AtomicInteger metadataQueries = new AtomicInteger();
+    private final AtomicInteger lastChangeQueries = new AtomicInteger();
+    private String lastChange = "2017-06-02T10:00:00Z";
+
+    private LogMetadataInfo get(LogMetadataCache cache, String logId) throws Exception {
+        return cache.get(LogMetadataCache.key("w1", "wb1", logId), () -> {
+            lastChangeQueries.incrementAndGet();
+            return lastChange;
+        }, () -> {
+            metadataQueries.incrementAndGet();
+            LogMetadataInfo info = new LogMetadataInfo();
+            info.timeZone = "Z";
+            info.metadata = "{\"uid\":\"" + logId + "\"}";
+            return new LogMetadataCache.Fetched(info, lastChange);
+        });
+    }
+
+    @Test
+    public void testServesFreshEntriesWithoutQuerying() throws Exception {
+        LogMetadataCache cache = new LogMetadataCache(10, 60000, null);
+
+        LogMetadataInfo first = get(cache, "log1");
+        LogMetadataInfo second = get(cache, "log1");
+        assertSame(first, second);
+        assertEquals(1, metadataQueries.get());
+        assertEquals(0, lastChangeQueries.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testRevalidatesExpiredEntriesOnLastChange() throws Exception {
+        LogMetadataCache cache = new LogMetadataCache(10, 0, null);
+
+        LogMetadataInfo first = get(cache, "log1");
+        assertSame(first, get(cache, "log1"));
+        assertEquals(1, metadataQueries.get());
+        assertEquals(1, lastChangeQueries.get());
+        assertEquals(1, cache.getRevalidatedCount());
+
+        lastChange = "2017-06-02T10:05:00Z";
+        assertNotSame(first, get(cache, "log1"));
+        assertEquals(2, metadataQueries.get());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testQueriesAgainWhenServerReportsNoLastChange() throws Exception {
+        LogMetadataCache cache = new LogMetadataCache(10, 0, null);
+        lastChange = null;
+
+        get(cache, "log1");
+        get(cache, "log1");
+        assertEquals(2, metadataQueries.get());
+        assertEquals(0, lastChangeQueries.get());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        LogMetadataCache cache = new LogMetadataCache(2, 60000, null);
+
+        get(cache, "log1");
+        get(cache, "log2");
+        get(cache, "log1");
+        get(cache, "log3");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictedCount());
+
+        // log1 was used after log2, so log2 is the one that went
+        get(cache, "log1");
+        assertEquals(3, metadataQueries.get());
+        get(cache, "log2");
+        assertEquals(4, metadataQueries.get());
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysQueries() throws Exception {
+        LogMetadataCache cache = new LogMetadataCache(0, 60000, null);
+
+        get(cache, "log1");
+        get(cache, "log1");
+        assertEquals(2, metadataQueries.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNothingCachedWhenMetadataMissing() throws Exception {
+        LogMetadataCache cache = new LogMetadataCache(10, 60000, null);
+        String key = LogMetadataCache.key("w1", "wb1", "log1");
+
+        assertNull(cache.get(key, () -> null, () -> null));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,86 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.apache.nifi.util.MockComponentLog;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectTypeQueriesTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final MockComponentLog logger = new MockComponentLog("test", this);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static List<WitsmlObjectId> objects(String type) {
+        return Collections.singletonList(new WitsmlObjectId(type + " 1", type + "1", type.toLowerCase(), "/w/wb", "{}"));
+    }
+
+    @Test
+    public void testRunsTypesConcurrentlyInOrder() {
+        CountDownLatch started = new CountDownLatch(3);
+        List<WitsmlObjectId> ids = ObjectTypeQueries.run(executor, Arrays.asList("LOG", "RIG", "TRAJECTORY"), type -> {
+            // Every type has to be running before any of them can finish
+            started.countDown();
+            started.await();
+            return objects(type);
+        }, 10000, logger);
+
+        assertEquals(3, ids.size());
+        assertEquals("log", ids.get(0).getType());
+        assertEquals("rig", ids.get(1).getType());
+        assertEquals("trajectory", ids.get(2).getType());
+    }
+
+    @Test
+    public void testSlowTypeDoesNotHoldUpOthers() {
+        long start = System.nanoTime();
+        List<WitsmlObjectId> ids = ObjectTypeQueries.run(executor, Arrays.asList("LOG", "RIG", "MESSAGE"), type -> {
+            if (type.equals("RIG"))
+                Thread.sleep(10000);
+            return objects(type);
+        }, 200, logger);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(2, ids.size());
+        assertEquals("log", ids.get(0).getType());
+        assertEquals("message", ids.get(1).getType());
+        assertEquals(1, logger.getErrorMessages().size());
+    }
+
+    @Test
+    public void testFailedTypeIsLeftOut() {
+        List<WitsmlObjectId> ids = ObjectTypeQueries.run(executor, Arrays.asList("LOG", "RIG"), type -> {
+            if (type.equals("LOG"))
+                throw new Exception("server error");
+            return objects(type);
+        }, 10000, logger);
+
+        assertEquals(1, ids.size());
+        assertEquals("rig", ids.get(0).getType());
+    }
+
+    @Test
+    public void testRunsOnCallerWithoutExecutor() {
+        Thread caller = Thread.currentThread();
+        List<WitsmlObjectId> ids = ObjectTypeQueries.run(null, Arrays.asList("LOG", "RIG"), type -> {
+            assertTrue(Thread.currentThread() == caller);
+            return objects(type);
+        }, 10000, logger);
+
+        assertEquals(2, ids.size());
+    }
+}
@@ -0,0 +1,72 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueryTemplateTest {
+
+    @Test
+    public void testRendersSlotsInOnePass() {
+        QueryTemplate template = QueryTemplate.parse("<log uidWell=\"%uidWell%\" uid=\"%uid%\"><startIndex>%startIndex%</startIndex></log>");
+
+        assertEquals("<log uidWell=\"W-1\" uid=\"L-1\"><startIndex>1000.5</startIndex></log>",
+                template.bind().set("uidWell", "W-1").set("uid", "L-1").set("startIndex", "1000.5").render());
+    }
+
+    @Test
+    public void testUnsetSlotsRenderEmpty() {
+        QueryTemplate template = QueryTemplate.parse("<a>%x%</a><b>%x%</b><c>%y%</c>");
+
+        assertEquals("<a>1</a><b>1</b><c></c>", template.bind().set("x", "1").render());
+    }
+
+    @Test
+    public void testEscapesValues() {
+        QueryTemplate template = QueryTemplate.parse("<well uid=\"%uidWell%\"/>");
+
+        assertEquals("<well uid=\"A&amp;B &quot;&lt;1&gt;&quot; O&apos;Neil\"/>",
+                template.bind().set("uidWell", "A&B \"<1>\" O'Neil").render());
+    }
+
+    @Test
+    public void testWritesXmlFragmentsUnescaped() {
+        QueryTemplate curve = QueryTemplate.parse("<logCurveInfo><mnemonic>%mnemonic%</mnemonic></logCurveInfo>");
+        QueryTemplate log = QueryTemplate.parse("<log uid=\"%uid%\">%logCurveInfo%</log>");
+
+        String curves = curve.bind().set("mnemonic", "GR").render() + curve.bind().set("mnemonic", "ROP").render();
+        assertEquals("<log uid=\"L&amp;1\"><logCurveInfo><mnemonic>GR</mnemonic></logCurveInfo>" +
+                        "<logCurveInfo><mnemonic>ROP</mnemonic></logCurveInfo></log>",
+                log.bind().set("uid", "L&1").setXml("logCurveInfo", curves).render());
+    }
+
+    @Test
+    public void testKeepsStrayPercentSigns() {
+        QueryTemplate template = QueryTemplate.parse("<a>100%</a><b>%v%</b><c>% %</c>");
+
+        assertEquals("<a>100%</a><b>2</b><c>% %</c>", template.bind().set("v", "2").render());
+    }
+
+    @Test
+    public void testLoadsQueryResources() throws Exception {
+        String query = QueryTemplate.load("/1311/GetLogDataQuery.xml").bind().set("uidLog", "L-1").render();
+
+        assertTrue(query.contains("uid=\"L-1\""));
+        assertTrue(query.contains("<startIndex uom=\"\"></startIndex>"));
+        assertFalse(query.contains("%logCurveInfo%"));
+    }
+
+    @Test
+    public void testLoads1411QueryResources() throws Exception {
+        String query = QueryTemplate.load("/1411/GetLogDataQuery.xml").bind()
+                .set("uidLog", "L-1")
+                .setXml("logCurveInfo", QueryTemplate.load("/1411/GetLogDataCurve.xml").bind().set("mnemonic", "GR").render())
+                .render();
+
+        assertTrue(query.contains("version=\"1.4.1.1\""));
+        assertTrue(query.contains("<mnemonic>GR</mnemonic>"));
+        assertTrue(query.contains("<mnemonicList />"));
+    }
+}
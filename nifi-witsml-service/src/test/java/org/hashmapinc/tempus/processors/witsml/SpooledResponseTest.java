@@ -0,0 +1,86 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpooledResponseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String readAll(SpooledResponse response) throws Exception {
+        StringWriter out = new StringWriter();
+        try (Reader reader = response.openReader()) {
+            char[] buffer = new char[7];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void testKeepsSmallResponsesInMemory() throws Exception {
+        SpooledResponse response = SpooledResponse.of("<logs/>", 100, folder.getRoot());
+
+        assertFalse(response.isSpooled());
+        assertEquals("<logs/>", readAll(response));
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testSpoolsLargeResponsesAndRemovesThemOnClose() throws Exception {
+        String xml = "<logs><log uid=\"Ä-1\"><logData><data>1,2,3</data></logData></log></logs>";
+        SpooledResponse response = SpooledResponse.of(xml, 10, folder.getRoot());
+
+        assertTrue(response.isSpooled());
+        assertEquals(1, folder.getRoot().list().length);
+        assertEquals(xml, readAll(response));
+        assertEquals(xml, response.getText());
+
+        response.close();
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testPurgesLeftoverFiles() throws Exception {
+        SpooledResponse.of("<logs></logs>", 1, folder.getRoot());
+        File other = folder.newFile("other.xml");
+
+        SpooledResponse.purge(folder.getRoot());
+        assertEquals(1, folder.getRoot().list().length);
+        assertTrue(other.exists());
+    }
+
+    @Test
+    public void testComparesThresholdWithEncodedSize() throws Exception {
+        // Four characters but eight UTF-8 bytes
+        assertFalse(SpooledResponse.of("ÄÖÜß", 8, folder.getRoot()).isSpooled());
+        assertTrue(SpooledResponse.of("ÄÖÜß", 7, folder.getRoot()).isSpooled());
+        assertTrue(SpooledResponse.isLarger("\uD83D\uDE00", 3));
+        assertFalse(SpooledResponse.isLarger("\uD83D\uDE00", 4));
+    }
+
+    @Test
+    public void testPurgeLeavesOtherServicesAlone() throws Exception {
+        File mine = SpooledResponse.directoryFor(folder.getRoot(), "service-1");
+        File theirs = SpooledResponse.directoryFor(folder.getRoot(), "service-2");
+        SpooledResponse.of("<logs></logs>", 1, mine);
+        SpooledResponse live = SpooledResponse.of("<logs></logs>", 1, theirs);
+
+        SpooledResponse.purge(mine);
+        assertEquals(0, mine.list().length);
+        assertEquals(1, theirs.list().length);
+        assertEquals("<logs></logs>", live.getText());
+    }
+}
@@ -0,0 +1,88 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hashmapinc.tempus.WitsmlObjects.Util.log.LogDataHelper;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjLog;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjLogs;
+import com.hashmapinc.tempus.WitsmlObjects.v1411.ObjTrajectorys;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Direct binding has to give the processors the same objects the XSLT conversion does. Trajectories
+ * are compared through the JSON the processors write them as, logs through the parts of the log
+ * GetData reads: the curve metadata Direct leaves out is never written by the processors.
+ */
+public class VersionConversionTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final WitsmlMarshallerPool marshallerPool = new WitsmlMarshallerPool();
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = VersionConversionTest.class.getResourceAsStream("/1311/" + name);
+             Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private static JsonNode json(Object value) throws IOException {
+        return mapper.readTree(JsonWriters.nonNull().writeValueAsString(value));
+    }
+
+    private static JsonNode logView(ObjLogs logs) throws IOException {
+        ObjLog log = logs.getLog().get(0);
+        ObjectNode view = mapper.createObjectNode();
+        view.put("indexType", log.getIndexType().value());
+        view.put("indexCurve", log.getIndexCurve());
+        view.put("objectGrowing", log.isObjectGrowing());
+        view.set("startIndex", json(log.getStartIndex()));
+        view.set("endIndex", json(log.getEndIndex()));
+        view.put("startDateTimeIndex", String.valueOf(log.getStartDateTimeIndex()));
+        view.put("endDateTimeIndex", String.valueOf(log.getEndDateTimeIndex()));
+        view.put("curves", log.getLogCurveInfo().size());
+        view.put("csv", LogDataHelper.getCSV(log, true));
+        return view;
+    }
+
+    private void assertLogMatches(String name) throws Exception {
+        String response = resource(name);
+        ObjLogs direct = VersionConversion.bindLogs(new StringReader(response));
+        ObjLogs converted = VersionConversion.convert(marshallerPool, response, ObjLogs.class);
+        assertEquals(logView(converted), logView(direct));
+    }
+
+    @Test
+    public void testDirectTimeLogMatchesXslt() throws Exception {
+        assertLogMatches("TimeLogResponse.xml");
+    }
+
+    @Test
+    public void testDirectDepthLogMatchesXslt() throws Exception {
+        assertLogMatches("DepthLogResponse.xml");
+    }
+
+    @Test
+    public void testDirectTrajectoryMatchesXslt() throws Exception {
+        String response = resource("TrajectoryResponse.xml");
+        ObjTrajectorys direct = VersionConversion.bindTrajectorys(marshallerPool, response);
+        ObjTrajectorys converted = VersionConversion.convert(marshallerPool, response, ObjTrajectorys.class);
+        assertEquals(json(converted), json(direct));
+    }
+
+    @Test
+    public void testDirectTrajectoryKeepsOffsets() throws Exception {
+        ObjTrajectorys direct = VersionConversion.bindTrajectorys(marshallerPool, resource("TrajectoryResponse.xml"));
+        assertEquals("2017-06-02T08:00:00.000-05:00",
+                direct.getTrajectory().get(0).getTrajectoryStation().get(0).getDTimStn().toXMLFormat());
+    }
+}
@@ -0,0 +1,78 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class WitsmlClientPoolTest {
+
+    private final AtomicInteger connects = new AtomicInteger();
+
+    private WitsmlClientPool<Object> createPool(int maxSize, long idleTimeoutMillis) {
+        return new WitsmlClientPool<>(() -> {
+            connects.incrementAndGet();
+            return new Object();
+        }, maxSize, idleTimeoutMillis, 50);
+    }
+
+    @Test
+    public void testReusesReturnedClients() throws Exception {
+        WitsmlClientPool<Object> pool = createPool(2, 60000);
+
+        Object first = pool.execute(client -> client);
+        Object second = pool.execute(client -> client);
+        assertSame(first, second);
+        assertEquals(1, connects.get());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void testWaitsWhenAllClientsAreBorrowed() throws Exception {
+        WitsmlClientPool<Object> pool = createPool(1, 60000);
+
+        Object client = pool.borrow();
+        try {
+            pool.borrow();
+            fail("borrowed more clients than the pool allows");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        pool.release(client);
+        assertSame(client, pool.borrow());
+    }
+
+    @Test
+    public void testReplacesClientsAfterRemoteFailure() throws Exception {
+        WitsmlClientPool<Object> pool = createPool(1, 60000);
+
+        Object first = pool.execute(client -> client);
+        try {
+            pool.execute(client -> {
+                throw new RemoteException("connection reset");
+            });
+            fail("the remote failure was swallowed");
+        } catch (RemoteException e) {
+            // expected
+        }
+        assertEquals(1, pool.getInvalidatedCount());
+        assertNotSame(first, pool.execute(client -> client));
+    }
+
+    @Test
+    public void testEvictsIdleClients() throws Exception {
+        WitsmlClientPool<Object> pool = createPool(1, 0);
+
+        Object first = pool.execute(client -> client);
+        assertNotSame(first, pool.execute(client -> client));
+        assertEquals(1, pool.getEvictedCount());
+        assertEquals(2, connects.get());
+    }
+}
@@ -0,0 +1,37 @@
+package org.hashmapinc.tempus.processors.witsml;
+
+import org.junit.Test;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import static org.junit.Assert.assertEquals;
+
+public class WitsmlMarshallerPoolTest {
+
+    @XmlRootElement(name = "well")
+    public static class Well {
+        @XmlAttribute
+        public String uid;
+    }
+
+    @Test
+    public void testReusesUnmarshallers() throws Exception {
+        WitsmlMarshallerPool pool = new WitsmlMarshallerPool();
+
+        assertEquals("W1", pool.deserialize("<well uid=\"W1\"/>", Well.class).uid);
+        assertEquals("W2", pool.deserialize("<well uid=\"W2\"/>", Well.class).uid);
+        assertEquals(1, pool.getUnmarshallerMisses());
+        assertEquals(1, pool.getUnmarshallerHits());
+    }
+
+    @Test
+    public void testPreparedContextsCountAsHits() throws Exception {
+        WitsmlMarshallerPool pool = new WitsmlMarshallerPool();
+        pool.prepare(Well.class);
+
+        pool.deserialize("<well uid=\"W1\"/>", Well.class);
+        assertEquals(0, pool.getUnmarshallerMisses());
+        assertEquals(1, pool.getUnmarshallerHits());
+    }
+}